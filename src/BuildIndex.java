@@ -0,0 +1,119 @@
+/*
+  builds the B+-tree index file <tablename>.<columnname>.idx on one
+  attribute of a table from its <tablename>.tbl file, which has to be
+  in the binary page format. the index has to be built again whenever
+  the table file is rewritten, an index that does not match the length
+  and the stamp in the header of the table file is not used.
+*/
+
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.IndexWriter;
+import qp.utils.PageFormat;
+import qp.utils.PageReader;
+import qp.utils.Schema;
+import qp.utils.Tuple;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class BuildIndex {
+
+    public static void main(String[] args) throws IOException {
+        // check the arguments
+        if (args.length < 2 || args.length > 3) {
+            System.out.println("usage: java BuildIndex <tablename> <columnname> [pagesize] \n creates <tablename>.<columnname>.idx file"
+                    + "\n pagesize defaults to the page size of the table file");
+            System.exit(1);
+        }
+        String tblname = args[0];
+        String mdfile = tblname + ".md";
+        String tblfile = tblname + ".tbl";
+
+        Schema schema = null;
+        try {
+            ObjectInputStream ins = new ObjectInputStream(new FileInputStream(mdfile));
+            schema = (Schema) ins.readObject();
+            ins.close();
+        } catch (ClassNotFoundException ce) {
+            System.out.println("class not found exception --- error in schema object file");
+            System.exit(1);
+        }
+
+        Attribute attr = null;
+        for (Attribute candidate : schema.getAttList()) {
+            if (candidate.getColName().equals(args[1])) {
+                attr = candidate;
+            }
+        }
+        if (attr == null) {
+            System.out.println("table " + tblname + " has no column " + args[1]);
+            System.exit(1);
+        }
+        int index = schema.indexOf(attr);
+
+        if (!PageFormat.isPageFile(tblfile)) {
+            System.out.println(tblfile + " is not in the binary page format, convert it again with ConvertTxtToTbl");
+            System.exit(1);
+        }
+        PageReader intbl = new PageReader(tblfile, schema);
+        if (!intbl.open()) {
+            System.exit(1);
+        }
+        int pagesize = args.length == 3 ? Integer.parseInt(args[2]) : intbl.getPageSize();
+
+        /** the key of every tuple with its rid, the page number and slot in the table file **/
+        ArrayList<Object> keys = new ArrayList<>();
+        ArrayList<Long> rids = new ArrayList<>();
+        int keysize = 0;
+        Batch page;
+        for (int pageno = 0; (page = intbl.nextPage()) != null; ++pageno) {
+            for (int slot = 0; slot < page.size(); ++slot) {
+                Tuple tuple = page.get(slot);
+                Object key = tuple.dataAt(index);
+                if (attr.getType() == Attribute.STRING) {
+                    keysize = Math.max(keysize, IndexWriter.encodedSize((String) key));
+                }
+                keys.add(key);
+                rids.add(((long) pageno << 32) | slot);
+            }
+        }
+        intbl.close();
+
+        /** bulk loading takes the entries in key order, ties in table order **/
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Comparator<Integer> bykey = (a, b) -> compareKeys(keys.get(a), keys.get(b));
+        Arrays.sort(order, bykey.thenComparing(i -> rids.get(i)));
+
+        IndexWriter outidx = new IndexWriter(IndexWriter.fileName(tblname, attr), attr.getType(), keysize,
+                pagesize, new File(tblfile).length(), PageFormat.readStamp(tblfile));
+        if (!outidx.open()) {
+            System.exit(1);
+        }
+        for (int i : order) {
+            long rid = rids.get(i);
+            if (!outidx.next(keys.get(i), (int) (rid >>> 32), (int) rid)) {
+                System.exit(1);
+            }
+        }
+        if (!outidx.close()) {
+            System.exit(1);
+        }
+        System.out.println(outidx.getNumEntry() + " entries written to " + outidx.getFileName());
+    }
+
+    /** keys compare the way the index reader compares them **/
+    @SuppressWarnings("unchecked")
+    private static int compareKeys(Object a, Object b) {
+        if (a instanceof Float) {
+            return Float.compare((Float) a, (Float) b);
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+}
@@ -6,6 +6,9 @@
 */
 
 import qp.utils.Attribute;
+import qp.utils.BitmapWriter;
+import qp.utils.ColumnWriter;
+import qp.utils.PageWriter;
 import qp.utils.Schema;
 import qp.utils.Tuple;
 
@@ -15,19 +18,33 @@ import java.util.StringTokenizer;
 
 public class ConvertTxtToTbl {
 
+    static final int DEFAULT_PAGE_SIZE = 4096;  // Number of bytes per page of the table file
+    static final int BITMAP_MAX_DISTINCT = 64;  // Most distinct values of a column that gets a bitmap index
+
     public static void main(String[] args) throws IOException {
         // check the arguments
-        if (args.length != 1) {
-            System.out.println("usage: java ConvertTxtToTbl <tablename> \n creats <tablename>.tbl files");
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("usage: java ConvertTxtToTbl <tablename> [pagesize] [-columnar] \n creats <tablename>.tbl files"
+                    + "\n -columnar also creates a <tablename>.<column>.col file for every column"
+                    + "\n a <tablename>.<column>.bmp bitmap index is created for every column with at most "
+                    + BITMAP_MAX_DISTINCT + " distinct values in <tablename>.stat");
             System.exit(1);
         }
         String tblname = args[0];
         String mdfile = tblname + ".md";
         String tblfile = tblname + ".tbl";
+        int pagesize = DEFAULT_PAGE_SIZE;
+        boolean columnar = false;
+        for (int i = 1; i < args.length; ++i) {
+            if (args[i].equals("-columnar")) {
+                columnar = true;
+            } else {
+                pagesize = Integer.parseInt(args[i]);
+            }
+        }
 
-        /** open the input and output streams **/
+        /** open the input stream **/
         BufferedReader in = new BufferedReader(new FileReader(tblname + ".txt"));
-        ObjectOutputStream outtbl = new ObjectOutputStream(new FileOutputStream(tblfile));
 
         /** First Line is METADATA **/
         int linenum = 0;
@@ -41,6 +58,39 @@ public class ConvertTxtToTbl {
             System.exit(1);
         }
 
+        /** the table is written in the binary page format **/
+        if (pagesize < schema.getTupleSize()) {
+            System.out.println("Page size should be larger than tuple size!");
+            System.exit(1);
+        }
+        PageWriter outtbl = new PageWriter(tblfile, schema, pagesize);
+        if (!outtbl.open()) {
+            System.exit(1);
+        }
+
+        /** columnar copy of the table, one file per attribute **/
+        ColumnWriter[] outcols = new ColumnWriter[0];
+        if (columnar) {
+            outcols = new ColumnWriter[schema.getNumCols()];
+            for (int i = 0; i < outcols.length; ++i) {
+                Attribute attr = schema.getAttribute(i);
+                outcols[i] = new ColumnWriter(ColumnWriter.fileName(tblname, attr), attr.getType());
+                if (!outcols[i].open()) {
+                    System.exit(1);
+                }
+            }
+        }
+
+        /** bitmap indexes of the columns with few distinct values **/
+        long[] numdistinct = readDistinctCounts(tblname + ".stat", schema.getNumCols());
+        BitmapWriter[] outbmps = new BitmapWriter[schema.getNumCols()];
+        for (int i = 0; i < outbmps.length; ++i) {
+            if (numdistinct != null && numdistinct[i] <= BITMAP_MAX_DISTINCT) {
+                Attribute attr = schema.getAttribute(i);
+                outbmps[i] = new BitmapWriter(BitmapWriter.fileName(tblname, attr), attr.getType());
+            }
+        }
+
         boolean flag = false;
         StringTokenizer tokenizer;
         while ((line = in.readLine()) != null) {
@@ -66,10 +116,63 @@ public class ConvertTxtToTbl {
                 attrIndex++;
             }
             Tuple tuple = new Tuple(data);
-            outtbl.writeObject(tuple);
+            if (!outtbl.next(tuple)) {
+                System.exit(1);
+            }
+            for (int i = 0; i < outcols.length; ++i) {
+                if (!outcols[i].next(tuple.dataAt(i))) {
+                    System.exit(1);
+                }
+            }
+            /** the tuple is on the page after the pages written so far **/
+            for (int i = 0; i < outbmps.length; ++i) {
+                if (outbmps[i] != null) {
+                    outbmps[i].next(tuple.dataAt(i), outtbl.getNumPage());
+                }
+            }
         }
         outtbl.close();
+        /** the bitmaps record the length and stamp of the table file, they are not used once it changes **/
+        long tablelength = new File(tblfile).length();
+        for (BitmapWriter outbmp : outbmps) {
+            if (outbmp != null) {
+                if (!outbmp.close(tablelength, outtbl.getStamp())) {
+                    System.exit(1);
+                }
+                System.out.println(outbmp.getNumValues() + " bitmaps written to " + outbmp.getFileName());
+            }
+        }
+        /** the column files record them too **/
+        for (ColumnWriter outcol : outcols) {
+            if (!outcol.close(tablelength, outtbl.getStamp())) {
+                System.exit(1);
+            }
+        }
+        in.close();
+    }
+
+    /**
+     * The number of distinct values of each column from the second line of the
+     * * statistics file, null if there is no statistics file for the table
+     **/
+    private static long[] readDistinctCounts(String statfile, int numCols) throws IOException {
+        if (!new File(statfile).isFile()) {
+            return null;
+        }
+        BufferedReader in = new BufferedReader(new FileReader(statfile));
+        in.readLine();
+        String line = in.readLine();
         in.close();
+        StringTokenizer tokenizer = new StringTokenizer(line == null ? "" : line);
+        if (tokenizer.countTokens() != numCols) {
+            System.out.println("incorrect format of statistics file " + statfile + ", no bitmap index is created");
+            return null;
+        }
+        long[] numdistinct = new long[numCols];
+        for (int i = 0; i < numCols; ++i) {
+            numdistinct[i] = Long.parseLong(tokenizer.nextToken());
+        }
+        return numdistinct;
     }
 
 }
@@ -3,7 +3,9 @@
  **/
 
 import qp.operators.Debug;
+import qp.operators.ExternalSort;
 import qp.operators.Operator;
+import qp.operators.RuntimeFilter;
 import qp.optimizer.BufferManager;
 import qp.optimizer.PlanCost;
 import qp.optimizer.RandomOptimizer;
@@ -26,13 +28,21 @@ public class QueryMain {
 
         BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
         Batch.setPageSize(getPageSize(args, in));
+        /** java -Dmmap=true QueryMain ... reads the table and temporary files through memory maps **/
+        PageReader.setMemoryMapped(Boolean.getBoolean("mmap"));
+        /** java -Dreplacementselection=true QueryMain ... generates the sorted runs of ExternalSort by replacement selection **/
+        ExternalSort.setReplacementSelection(Boolean.getBoolean("replacementselection"));
+        /** java -Dparallelsort=true QueryMain ... sorts and merges the runs of ExternalSort on several threads **/
+        ExternalSort.setParallel(Boolean.getBoolean("parallelsort"));
+        /** java -Dnoruntimefilters=true QueryMain ... stops hash and sort-merge joins from filtering their right input **/
+        RuntimeFilter.setEnabled(!Boolean.getBoolean("noruntimefilters"));
 
         SQLQuery sqlquery = getSQLQuery(args[0]);
         configureBufferManager(sqlquery, args, in);
 
         Operator root = getQueryPlan(sqlquery);
         printFinalPlan(root, args, in);
-        executeQuery(root, args[1]);
+        executeQuery(root, args[1], sqlquery.getLimit());
         cleanFiles();
     }
 
@@ -89,7 +99,7 @@ public class QueryMain {
      **/
     private static void configureBufferManager(SQLQuery sqlquery, String[] args, BufferedReader in) {
         int numJoin = sqlquery.getNumJoin();
-        if (numJoin != 0 || sqlquery.isDistinct() || sqlquery.isGroupBy() || sqlquery.isOrderBy()) {    //distinct & groupby uses ext sort which requires buffers
+        if (numJoin != 0 || sqlquery.isDistinct() || sqlquery.isGroupBy() || sqlquery.isOrderBy() || sqlquery.hasAggregates()) {    //distinct & groupby uses ext sort which requires buffers
             int numBuff = 1000;
             if (args.length < 4) {
                 System.out.println("enter the number of buffers available");
@@ -157,6 +167,15 @@ public class QueryMain {
      * Execute query and print run statistics
      **/
     public static double executeQuery(Operator root, String resultfile) {
+        return executeQuery(root, resultfile, -1);
+    }
+
+    /**
+     * Execute query and print run statistics, stops pulling tuples from the
+     * * root once limit tuples are printed, a negative limit prints all of them
+     **/
+    public static double executeQuery(Operator root, String resultfile, int limit) {
+        RuntimeFilter.clearBuiltFilters();
         long starttime = System.currentTimeMillis();
         if (root.open() == false) {
             System.out.println("Root: Error in opening of root");
@@ -176,13 +195,18 @@ public class QueryMain {
 
         /** Print each tuple in the result **/
         Batch resultbatch;
-        resultbatch = root.next();
+        long numprinted = 0;
+        resultbatch = limit == 0 ? null : root.next();
         while (resultbatch != null && resultbatch.size() > 0) {    //if operators pepetually return batch of size 0 instead of null, will have infinite loop
             // System.out.println("current result batch size : " + resultbatch.size());
             if (resultbatch.size() <= 0) { System.out.println("result size LEQ 0. Might be an operator is not returning null when complete.");} 
             
-            for (int i = 0; i < resultbatch.size(); ++i) {
+            for (int i = 0; i < resultbatch.size() && (limit < 0 || numprinted < limit); ++i) {
                 printTuple(resultbatch.get(i));
+                numprinted++;
+            }
+            if (limit >= 0 && numprinted >= limit) {
+                break;
             }
             resultbatch = root.next();
         }
@@ -192,6 +216,10 @@ public class QueryMain {
         long endtime = System.currentTimeMillis();
         double executiontime = (endtime - starttime) / 1000.0;
         System.out.println("Execution time = " + executiontime);
+        System.out.printf("Buffer pool: %d hits, %d misses\n", BufferManager.getNumHits(), BufferManager.getNumMisses());
+        for (RuntimeFilter filter : RuntimeFilter.getBuiltFilters()) {
+            System.out.println(filter);
+        }
         return executiontime;
     }
 
@@ -232,7 +260,7 @@ public class QueryMain {
         for (File f : directory.listFiles()) {
             // System.out.println("Clearing temp files...");
             String fileName = f.getName();
-            if (fileName.startsWith("sort_") || fileName.startsWith("BNJtemp-") || fileName.startsWith("NJtemp-")) {
+            if (fileName.startsWith("sort_") || fileName.startsWith("BNJtemp-") || fileName.startsWith("NJtemp-") || fileName.startsWith("HJtemp-") || fileName.startsWith("HDtemp-") || fileName.startsWith("HAtemp-")) {
                 f.delete();
             }
         }
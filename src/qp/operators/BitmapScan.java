@@ -0,0 +1,171 @@
+/**
+ * Scans the tuples of a base table that satisfy selection conditions through bitmap indexes
+ **/
+
+package qp.operators;
+
+import qp.utils.Batch;
+import qp.utils.Bitmap;
+import qp.utils.BitmapReader;
+import qp.utils.BitmapWriter;
+import qp.utils.Condition;
+import qp.utils.PageReader;
+import qp.utils.Schema;
+import qp.utils.Tuple;
+
+import java.util.ArrayList;
+
+/**
+ * BitmapScan operator - every condition comparing an attribute that has a bitmap index with
+ * a constant is turned into the bitmap of the rows that satisfy it, and the bitmaps of all
+ * the conditions are intersected with a bitwise and, 64 rows at a time. Only the table
+ * pages holding a row of the result are read, each once; the tuples come out in table
+ * order, like a Scan and Selects. Each tuple is checked against the conditions, so that
+ * a table rewritten behind its bitmaps cannot give wrong tuples.
+ */
+public class BitmapScan extends Scan {
+
+    ArrayList<Condition> conditions;  // Selection conditions answered by the bitmaps
+    Object[] keys;                    // Constant of each condition as a key
+    int[] keyindex;                   // Index of the attribute of each condition in the schema
+    Bitmap rows;                      // Rows that satisfy all the conditions
+    BitmapReader directory;           // Bitmap file that maps the rows to the table pages
+    int rowcurs;                      // Next row to output, -1 when there is none
+    Batch tablepage;                  // Page of the table file holding the row at rowcurs
+    int tablepageno;                  // Page number of tablepage, -1 if none is read yet
+    int tablepageend;                 // First row after tablepage
+
+    /**
+     * Constructor - the schema of the operator is the whole table
+     */
+    public BitmapScan(String tabname, Schema tableschema, ArrayList<Condition> conditions, int type) {
+        super(tabname, type);
+        this.conditions = conditions;
+        setSchema(tableschema);
+    }
+
+    public ArrayList<Condition> getScanConditions() {
+        return conditions;
+    }
+
+    /**
+     * Name of the bitmap file a condition is answered from
+     **/
+    public String getBitmapFileName(Condition con) {
+        return BitmapWriter.fileName(tabname, con.getLhs());
+    }
+
+    /**
+     * Whether a BitmapScan can answer the condition on the table: a comparison between
+     * * an attribute and a constant, with an up to date bitmap index on the attribute
+     **/
+    public static boolean canAnswer(String tabname, Condition con) {
+        return con.getOpType() == Condition.SELECT && con.getRhs() instanceof String
+                && BitmapReader.hasBitmap(tabname, con.getLhs());
+    }
+
+    /**
+     * Intersects the bitmaps of the conditions and opens the table file
+     */
+    public boolean open() {
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tuplesize;
+
+        if (batchsize < 1) {
+            System.err.println("Page size should be larger than tuple size!");
+            System.exit(1);
+        }
+
+        eos = false;
+        rows = null;
+        directory = null;
+        keys = new Object[conditions.size()];
+        keyindex = new int[conditions.size()];
+        for (int i = 0; i < conditions.size(); ++i) {
+            Condition con = conditions.get(i);
+            BitmapReader bitmaps = new BitmapReader(getBitmapFileName(con));
+            if (!bitmaps.open()) {
+                System.err.println(" Error reading " + bitmaps.getFileName());
+                return false;
+            }
+            keys[i] = IndexScan.parseKey((String) con.getRhs(), schema.typeOf(con.getLhs()));
+            keyindex[i] = schema.indexOf(con.getLhs());
+            Bitmap selected = bitmaps.select(con.getExprType(), keys[i]);
+            rows = rows == null ? selected : rows.and(selected);
+            if (directory == null) {
+                directory = bitmaps;
+            }
+        }
+        rowcurs = rows.nextSetRow(0);
+        tablepage = null;
+        tablepageno = -1;
+        tablepageend = 0;
+
+        reader = new PageReader(filename, schema);
+        if (!reader.open()) {
+            System.err.println(" Error reading " + filename);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the next page of selected tuples
+     **/
+    protected Batch readNext() {
+        if (eos) {
+            close();
+            return null;
+        }
+        Batch tuples = new Batch(batchsize);
+        while (!tuples.isFull() && rowcurs >= 0) {
+            if (tablepageno < 0 || rowcurs >= tablepageend) {
+                tablepageno = directory.pageOf(rowcurs);
+                tablepage = reader.getPage(tablepageno);
+                if (tablepage == null) {
+                    System.err.println("BitmapScan: " + directory.getFileName() + " does not match " + filename);
+                    System.exit(1);
+                }
+                tablepageend = directory.firstRowOf(tablepageno) + tablepage.size();
+            }
+            int slot = rowcurs - directory.firstRowOf(tablepageno);
+            if (slot < tablepage.size() && satisfiesAll(tablepage.get(slot))) {
+                tuples.add(tablepage.get(slot));
+            }
+            rowcurs = rows.nextSetRow(rowcurs + 1);
+        }
+        if (rowcurs < 0) {
+            eos = true;
+        }
+        return tuples;
+    }
+
+    private boolean satisfiesAll(Tuple tuple) {
+        for (int i = 0; i < keys.length; ++i) {
+            if (!satisfies(tuple, keyindex[i], conditions.get(i).getExprType(), keys[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Close the table file
+     **/
+    public boolean close() {
+        tablepage = null;
+        if (reader != null) {
+            return reader.close();
+        }
+        return true;
+    }
+
+    public Object clone() {
+        ArrayList<Condition> newconditions = new ArrayList<>();
+        for (Condition con : conditions) {
+            newconditions.add((Condition) con.clone());
+        }
+        return new BitmapScan(tabname, (Schema) schema.clone(), newconditions, optype);
+    }
+
+}
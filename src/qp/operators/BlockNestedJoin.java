@@ -9,8 +9,9 @@ import qp.utils.Batch;
 import qp.utils.Condition;
 import qp.utils.Tuple;
 
-import java.io.*;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class BlockNestedJoin extends Join {
 
@@ -22,9 +23,15 @@ public class BlockNestedJoin extends Join {
     Batch outbatch;                 // Buffer page for output
     Batch leftbatch;                // Buffer page for left input stream
     Batch rightbatch;               // Buffer page for right input stream
-    ObjectInputStream in;           // File pointer to the right hand materialized file
     ArrayList<Batch> leftBlock;    // Buffer pages used for input in the block
     ArrayList<Tuple> leftBlockTuples;
+    int blockPages;                 // Number of pages of the left input in a block
+    boolean isEquiJoin;             // Whether every join condition is an equality, the block is then hashed
+    int[] buckets;                  // First tuple of the block in each bucket of the hash table, -1 if none
+    int[] chain;                    // Next tuple of the block in the same bucket, -1 at the end
+    int[] blockHashes;              // Hash of the join attributes of each tuple of the block
+    int mcurs;                      // Next tuple of the block to compare with the probing right tuple
+    boolean probed;                 // Whether the right tuple at rcurs has looked up its bucket
 
     int lcurs;                      // Cursor for left side buffer
     int rcurs;                      // Cursor for right side buffer
@@ -45,6 +52,9 @@ public class BlockNestedJoin extends Join {
      * * Opens the connections
      **/
     public boolean open() {
+        /** the block of left pages, the right page and the output page fill all the buffers **/
+        reserveBuffers(numBuff);
+
         int tuplesize = schema.getTupleSize();
         /** Number of pages requires for tuples **/
         batchsize = Batch.getPageSize() / tuplesize;
@@ -63,7 +73,10 @@ public class BlockNestedJoin extends Join {
             leftindex.add(left.getSchema().indexOf(leftattr));
             rightindex.add(right.getSchema().indexOf(rightattr));
         }
-        Batch rightpage;
+        isEquiJoin = true;
+        for (Condition con : conditionList) {
+            isEquiJoin = isEquiJoin && con.getExprType() == Condition.EQUAL;
+        }
 
         /** initialize the cursors of input buffers **/
         lcurs = 0;
@@ -87,18 +100,13 @@ public class BlockNestedJoin extends Join {
             filenum++;
             // to be deleted when calling close
             rfname = "BNJtemp-" + String.valueOf(filenum);
-            try {
-                ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(rfname));
-                // write right page to temporary file
-                while ((rightpage = right.next()) != null) {
-                    out.writeObject(rightpage);
-                }
-                out.close();
-            } catch (IOException io) {
+            int numHeld = materializeRight(rfname);
+            if (numHeld < 0) {
                 System.out.println("BlockNestedJoin: Error writing to temporary file");
                 return false;
             }
-            // need to close actual right file
+            /** a right input held in memory takes buffers of the left block, it is only read once then **/
+            blockPages = Math.max(1, numBuff - 2 - numHeld);
             if (!right.close())
                 return false;
         }
@@ -126,7 +134,7 @@ public class BlockNestedJoin extends Join {
 
                 leftBlock = new ArrayList<>();
 
-                for (int k = 0; k < numBuff - 2; k++) {
+                for (int k = 0; k < blockPages; k++) {
                     Batch leftBatch = (Batch) left.next();
                     if (leftBatch == null || leftBatch.isEmpty()) {
                         break;
@@ -150,73 +158,138 @@ public class BlockNestedJoin extends Join {
                 /** Whenever a new left page came, we have to start the
                  ** scanning of right table
                  **/
-                try {
-                    in = new ObjectInputStream(new FileInputStream(rfname));
-                    eosr = false;
-                } catch (IOException io) {
+                if (!rescanRight(rfname)) {
                     System.err.println("BlockNestedJoin:error in reading the file");
                     System.exit(1);
                 }
+                eosr = false;
 
+                if (isEquiJoin) {
+                    buildBlockTable();
+                }
+            }
+            if (isEquiJoin) {
+                probeBlockTable();
+                continue;
             }
             while (eosr == false) {
-                try {
-                    if (rcurs == 0 && lcurs == 0) {
-                        rightbatch = (Batch) in.readObject();
+                if (rcurs == 0 && lcurs == 0) {
+                    rightbatch = nextRightPage();
+                    if (rightbatch == null) {
+                        /** end of the materialized file, the reader has closed it **/
+                        eosr = true;
+                        break;
                     }
-                    for (i = lcurs; i < leftBlockTuples.size(); ++i) {
-                        for (j = rcurs; j < rightbatch.size(); ++j) {
-                            Tuple lefttuple = leftBlockTuples.get(i);
-                            Tuple righttuple = rightbatch.get(j);
-                            if (lefttuple.checkJoin(righttuple, leftindex, rightindex)) {
-                                Tuple outtuple = lefttuple.joinWith(righttuple);
-                                outbatch.add(outtuple);
-                                if (outbatch.isFull()) {
-                                    if (i == leftBlockTuples.size() - 1 && j == rightbatch.size() - 1) {  //case 1
-                                        lcurs = 0;
-                                        rcurs = 0;
-                                    } else if (i != leftBlockTuples.size() - 1 && j == rightbatch.size() - 1) {  //case 2
-                                        lcurs = i + 1;
-                                        rcurs = 0;
-                                    } else if (i == leftBlockTuples.size() - 1 && j != rightbatch.size() - 1) {  //case 3
-                                        lcurs = i;
-                                        rcurs = j + 1;
-                                    } else {
-                                        lcurs = i;
-                                        rcurs = j + 1;
-                                    }
-                                    return outbatch;
+                }
+                for (i = lcurs; i < leftBlockTuples.size(); ++i) {
+                    for (j = rcurs; j < rightbatch.size(); ++j) {
+                        Tuple lefttuple = leftBlockTuples.get(i);
+                        Tuple righttuple = rightbatch.get(j);
+                        if (lefttuple.checkJoin(righttuple, leftindex, rightindex)) {
+                            Tuple outtuple = lefttuple.joinWith(righttuple);
+                            outbatch.add(outtuple);
+                            if (outbatch.isFull()) {
+                                if (i == leftBlockTuples.size() - 1 && j == rightbatch.size() - 1) {  //case 1
+                                    lcurs = 0;
+                                    rcurs = 0;
+                                } else if (i != leftBlockTuples.size() - 1 && j == rightbatch.size() - 1) {  //case 2
+                                    lcurs = i + 1;
+                                    rcurs = 0;
+                                } else if (i == leftBlockTuples.size() - 1 && j != rightbatch.size() - 1) {  //case 3
+                                    lcurs = i;
+                                    rcurs = j + 1;
+                                } else {
+                                    lcurs = i;
+                                    rcurs = j + 1;
                                 }
+                                return outbatch;
                             }
                         }
-                        rcurs = 0;
-                    }
-                    lcurs = 0;
-                } catch (EOFException e) {
-                    try {
-                        in.close();
-                    } catch (IOException io) {
-                        System.out.println("BlockNestedJoin: Error in reading temporary file");
                     }
-                    eosr = true;
-                } catch (ClassNotFoundException c) {
-                    System.out.println("BlockNestedJoin: Error in deserialising temporary file ");
-                    System.exit(1);
-                } catch (IOException io) {
-                    System.out.println("BlockNestedJoin: Error in reading temporary file");
-                    System.exit(1);
+                    rcurs = 0;
                 }
+                lcurs = 0;
             }
         }
         return outbatch;
     }
 
+    /**
+     * Builds a hash table on the join attributes over the tuples of the left block.
+     * * Each bucket is a chain of block tuples linked through the chain array, in block order
+     **/
+    private void buildBlockTable() {
+        int numTuples = leftBlockTuples.size();
+        buckets = new int[Integer.highestOneBit(Math.max(1, 2 * numTuples - 1)) << 1];
+        Arrays.fill(buckets, -1);
+        chain = new int[numTuples];
+        blockHashes = new int[numTuples];
+        int mask = buckets.length - 1;
+        for (int i = numTuples - 1; i >= 0; --i) {
+            int h = hashOf(leftBlockTuples.get(i), leftindex);
+            blockHashes[i] = h;
+            chain[i] = buckets[h & mask];
+            buckets[h & mask] = i;
+        }
+        rightbatch = null;
+        rcurs = 0;
+        probed = false;
+    }
+
+    /**
+     * Probes the hash table of the left block with the tuples of the right table
+     * * until the output page is full or the right table ends
+     **/
+    private void probeBlockTable() {
+        while (!outbatch.isFull()) {
+            if (rightbatch == null || rcurs >= rightbatch.size()) {
+                rightbatch = nextRightPage();
+                rcurs = 0;
+                probed = false;
+                if (rightbatch == null) {
+                    /** end of the materialized file, the reader has closed it **/
+                    eosr = true;
+                    return;
+                }
+                continue;
+            }
+            Tuple righttuple = rightbatch.get(rcurs);
+            int h = hashOf(righttuple, rightindex);
+            if (!probed) {
+                mcurs = buckets[h & (buckets.length - 1)];
+                probed = true;
+            }
+            while (mcurs != -1 && !outbatch.isFull()) {
+                int i = mcurs;
+                mcurs = chain[i];
+                Tuple lefttuple = leftBlockTuples.get(i);
+                if (blockHashes[i] == h && lefttuple.checkJoin(righttuple, leftindex, rightindex)) {
+                    outbatch.add(lefttuple.joinWith(righttuple));
+                }
+            }
+            if (mcurs == -1) {
+                rcurs++;
+                probed = false;
+            }
+        }
+    }
+
+    private static int hashOf(Tuple tuple, ArrayList<Integer> index) {
+        int h = 1;
+        for (int i : index) {
+            h = 31 * h + tuple.hashCodeAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
     /**
      * Close the operator
      */
     public boolean close() {
         File f = new File(rfname);
         f.delete();
+        rightPages = null;
+        releaseBuffers();
         return true;
     }
 } 
\ No newline at end of file
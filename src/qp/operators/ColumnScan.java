@@ -0,0 +1,115 @@
+/**
+ * Scans only the required columns of a base table from its column files
+ **/
+
+package qp.operators;
+
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.ColumnBatch;
+import qp.utils.ColumnReader;
+import qp.utils.ColumnWriter;
+import qp.utils.Schema;
+import qp.utils.Tuple;
+
+import java.util.ArrayList;
+
+/**
+ * ColumnScan operator - reads the columnar copy of a table.
+ * Its schema only has the attributes that the plan above it refers to,
+ * so the other columns of the table are never read.
+ */
+public class ColumnScan extends Scan {
+
+    Schema tableschema;         // Schema of the whole table
+    ColumnReader[] readers;     // One reader per scanned column
+
+    /**
+     * Constructor - the schema of the operator is the part of
+     * * the table schema made of the given columns
+     */
+    public ColumnScan(String tabname, Schema tableschema, ArrayList<Attribute> columns, int type) {
+        super(tabname, type);
+        this.tableschema = tableschema;
+        setSchema(tableschema.subSchema(columns));
+    }
+
+    public Schema getTableSchema() {
+        return tableschema;
+    }
+
+    /**
+     * Opens one reader for each of the scanned columns
+     */
+    public boolean open() {
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tuplesize;
+
+        if (batchsize < 1) {
+            System.err.println("Page size should be larger than tuple size!");
+            System.exit(1);
+        }
+
+        eos = false;
+        readers = new ColumnReader[schema.getNumCols()];
+        for (int i = 0; i < readers.length; ++i) {
+            Attribute attr = schema.getAttribute(i);
+            readers[i] = new ColumnReader(ColumnWriter.fileName(tabname, attr), attr.getType());
+            if (!readers[i].open()) {
+                System.err.println(" Error reading " + readers[i].getFileName());
+                return false;
+            }
+            if (readers[i].getNumRow() != readers[0].getNumRow()) {
+                System.err.println("ColumnScan: column files of " + tabname + " have different number of rows");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Assembles a batch of tuples from the column files
+     **/
+    protected Batch readNext() {
+        if (eos) {
+            close();
+            return null;
+        }
+        Batch tuples = new ColumnBatch(schema, batchsize);
+        while (!tuples.isFull() && !readers[0].isEOF()) {
+            ArrayList<Object> data = new ArrayList<>(readers.length);
+            for (ColumnReader reader : readers) {
+                data.add(reader.next());
+            }
+            tuples.add(new Tuple(data));
+        }
+        if (readers[0].isEOF()) {
+            eos = true;
+        }
+        return tuples;
+    }
+
+    /**
+     * Close the column files
+     **/
+    public boolean close() {
+        boolean closed = true;
+        if (readers != null) {
+            for (ColumnReader reader : readers) {
+                if (reader != null && !reader.close())
+                    closed = false;
+            }
+        }
+        return closed;
+    }
+
+    public Object clone() {
+        ArrayList<Attribute> newcolumns = new ArrayList<>();
+        for (Attribute attr : schema.getAttList()) {
+            newcolumns.add((Attribute) attr.clone());
+        }
+        ColumnScan newscan = new ColumnScan(tabname, (Schema) tableschema.clone(), newcolumns, optype);
+        return newscan;
+    }
+
+}
@@ -95,6 +95,12 @@ public class Debug {
                 case JoinType.HASHJOIN:
                     System.out.print("HashJoin(");
                     break;
+                case JoinType.HYBRIDHASH:
+                    System.out.print("HybridHash(");
+                    break;
+                case JoinType.INDEXNESTED:
+                    System.out.print("IndexNested(");
+                    break;
             }
             PPrint(((Join) node).getLeft());
             System.out.print("  [");
@@ -116,17 +122,37 @@ public class Debug {
             System.out.print(")");
             
         } else if (optype == OpType.SCAN) {
-            System.out.print(((Scan) node).getTabName());
+            if (node instanceof IndexScan) {
+                System.out.print("IndexScan(" + ((Scan) node).getTabName() + "  '");
+                PPrint(((IndexScan) node).getCondition());
+                System.out.print(")");
+            } else if (node instanceof BitmapScan) {
+                System.out.print("BitmapScan(" + ((Scan) node).getTabName());
+                for (Condition con : ((BitmapScan) node).getScanConditions()) {
+                    System.out.print("  '");
+                    PPrint(con);
+                }
+                System.out.print(")");
+            } else if (node instanceof ColumnScan) {
+                System.out.print("ColumnScan(" + ((Scan) node).getTabName() + ")");
+            } else {
+                System.out.print(((Scan) node).getTabName());
+            }
         } else if (optype == OpType.DISTINCT) {
-            System.out.print("Distinct(");
+            System.out.print(((Distinct) node).isHashBased() ? "HashDistinct(" : "Distinct(");
             PPrint(((Distinct) node).getBase());
             System.out.print(")");
         } else if (optype == OpType.GROUPBY) {
-            System.out.print("GroupBy(");
+            GroupBy groupby = (GroupBy) node;
+            if (!groupby.isAggregate()) {
+                System.out.print("GroupBy(");
+            } else {
+                System.out.print(groupby.isSortBased() ? "SortAggregate(" : "HashAggregate(");
+            }
             PPrint(((GroupBy) node).getBase());
             System.out.print(")");
         } else if (optype == OpType.ORDERBY) {
-            System.out.print("OrderBy(");
+            System.out.print(((OrderBy) node).hasLimit() ? "TopN(" : "OrderBy(");
             PPrint(((OrderBy) node).getBase());
             System.out.print(")");
         }
@@ -137,7 +163,7 @@ public class Debug {
      * print a tuple
      **/
     public static void PPrint(Tuple t) {
-        for (int i = 0; i < t.data().size(); i++) {
+        for (int i = 0; i < t.getNumCols(); i++) {
             Object data = t.dataAt(i);
             if (data instanceof Integer) {
                 System.out.print((Integer) data + "\t");
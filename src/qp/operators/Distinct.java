@@ -25,6 +25,7 @@ public class Distinct extends Operator {
 	int inputindex = 0;
 	int batchsize;
 	Tuple lastseentuple = null;
+	boolean hashbased = false;	//true if the duplicates are removed with a hash set instead, see HashDistinct
 	
 	public Distinct(Operator base, int optype) {
 		super(optype);
@@ -43,6 +44,14 @@ public class Distinct extends Operator {
 		return sortedbase;
 	}
 
+	public void setHashBased(boolean hashbased) {
+		this.hashbased = hashbased;
+	}
+
+	public boolean isHashBased() {
+		return hashbased;
+	}
+
 	/**
 	 * what am i supposed to do in open()?
 	 * get Distinct ready for others to call next() on it??
@@ -125,11 +134,11 @@ public class Distinct extends Operator {
 				//only add if it's different from lastseentup
 				ArrayList<Integer> lastseenindex = new ArrayList<>();
 				ArrayList<Integer> nexttupleindex = new ArrayList<>();
-				if (lastseentuple.data().size() != nexttuple.data().size()) {
+				if (lastseentuple.getNumCols() != nexttuple.getNumCols()) {
 					System.out.println("ERROR! tuples should not have different sizes");
 					System.exit(1);
 				}
-				for (int i = 0; i < lastseentuple.data().size(); ++i) {
+				for (int i = 0; i < lastseentuple.getNumCols(); ++i) {
 					lastseenindex.add(i);
 					nexttupleindex.add(i);
 				}
@@ -161,6 +170,7 @@ public class Distinct extends Operator {
 		
         Distinct newD = new Distinct(newbase, this.optype);
 		newD.setSchema(newschema);
+		newD.setHashBased(this.hashbased);
         return newD;
     }
 }
@@ -4,30 +4,101 @@
 package qp.operators;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 
+import qp.optimizer.BufferManager;
 import qp.utils.Attribute;
 import qp.utils.Batch;
+import qp.utils.PageReader;
 import qp.utils.Schema;
 import qp.utils.Tuple;
+import qp.utils.TupleComparator;
+import qp.utils.TupleWriter;
 
 public class ExternalSort extends Operator {
+    static boolean replacementSelection = false;  // Whether sorted runs are generated by replacement selection
+    static boolean parallel = false;              // Whether runs are sorted and merged on the ForkJoinPool
+
     Operator base;      // base table to sort
     Schema schema;      // base table schema
     int tuplesPerBatch; // max number of tuples per batch
     int numBuffer;      // total number of buffer available
     ArrayList<Integer> attributeIndices = new ArrayList<>(); // index of attributes to sort on
-    ObjectInputStream finalSortedStream;    // final sorted stream to read
+    RunMerger finalMerge;          // merge of the last sorted runs, read by next()
+    int finalMergeFanIn = Integer.MAX_VALUE;  // most runs the final merge may read at once
+    ArrayList<Tuple> inMemoryRun;  // sorted input when it fits in the buffers, null if it is sorted on disk
+    int inMemoryCursor;            // next tuple of inMemoryRun to output
     boolean isEos = false;  // tracks whether final sorted output stream has reached eos
     boolean isDesc; // sort by descending order
+    TupleComparator comparator; // typed comparator on the sort attributes
+    BinaryOperator<Tuple> combiner;  // combines two tuples with equal sort keys into one, null keeps both
+    Consumer<Tuple> inputListener;   // called with every tuple read from the base operator, null if none
+    Tuple lookahead;            // tuple read past the last combined output tuple, null if none
+    int limit = Integer.MAX_VALUE;  // number of tuples to output, every run is cut to this length
+    int numOutput;              // number of tuples output so far
+    int numReserved;    // number of frames reserved in the buffer pool
     private final String uuid = UUID.randomUUID().toString();
 
+    /** Selects replacement selection or sorting numBuffer pages at a time to generate the sorted runs **/
+    public static void setReplacementSelection(boolean flag) {
+        replacementSelection = flag;
+    }
+
+    public static boolean isReplacementSelection() {
+        return replacementSelection;
+    }
+
+    /** Selects whether the runs are sorted and merged on the threads of the common ForkJoinPool **/
+    public static void setParallel(boolean flag) {
+        parallel = flag;
+    }
+
+    public static boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Limits the number of runs the final merge reads at once, so that it needs at most
+     * * that many buffers while the output is consumed. Sorts that are read together, like
+     * * the two inputs of a SortMergeJoin, share their buffers this way
+     **/
+    public void setFinalMergeFanIn(int numRuns) {
+        finalMergeFanIn = numRuns;
+    }
+
+    /**
+     * Sets a function that combines two tuples with equal sort keys into one, like the partial
+     * * aggregates of a group. Tuples with equal keys are then combined as soon as they meet:
+     * * when each run is generated, at every merge and in the output of the final merge
+     **/
+    public void setCombiner(BinaryOperator<Tuple> combiner) {
+        this.combiner = combiner;
+    }
+
+    /**
+     * Sets a function that is called with every input tuple as it is read from the base
+     * * operator, like a join collecting the keys of its build input. The whole input is
+     * * read by open()
+     **/
+    public void setInputListener(Consumer<Tuple> listener) {
+        this.inputListener = listener;
+    }
+
+    /**
+     * Outputs only the first limit tuples. No run needs more than that many, so each run is
+     * * cut to limit tuples when it is generated and when it is merged
+     **/
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
     public ExternalSort(Operator base, ArrayList<Attribute> attributeList, int numBuffer) {
         super(OpType.SORT);
 
@@ -40,6 +111,7 @@ public class ExternalSort extends Operator {
             Attribute attribute = attributeList.get(i);
             attributeIndices.add(schema.indexOf(attribute));
         }
+        comparator = new TupleComparator(schema, attributeIndices, isDesc);
     }
 
     public ExternalSort(Operator base, ArrayList<Attribute> attributeList, int numBuffer, boolean isDesc) {
@@ -54,26 +126,58 @@ public class ExternalSort extends Operator {
             Attribute attribute = attributeList.get(i);
             attributeIndices.add(schema.indexOf(attribute));
         }
+        comparator = new TupleComparator(schema, attributeIndices, isDesc);
     }
 
     public boolean open() {
         if (!base.open()) {
             return false;
         }
+        numReserved = BufferManager.reserve(numBuffer);
 
         // find number of tuples per batch
         int tupleSize = schema.getTupleSize();
         tuplesPerBatch = Batch.getPageSize() / tupleSize;
 
+        inMemoryRun = null;
+        inMemoryCursor = 0;
+        lookahead = null;
+        numOutput = 0;
         int numSortedRun = createSortedRuns();
-        mergeSortedRuns(numSortedRun);
+        if (inMemoryRun == null) {
+            mergeSortedRuns(numSortedRun);
+
+            // only the buffers reading the runs of the final merge are still needed
+            int numKept = Math.min(numReserved, finalMerge.getNumRuns());
+            BufferManager.release(numReserved - numKept);
+            numReserved = numKept;
+        }
 
         return true;
     }
 
+    /**
+     * Reads the next batch of the base operator and passes its tuples to the input listener
+     **/
+    private Batch nextInput() {
+        Batch batch = base.next();
+        if (batch != null && inputListener != null) {
+            for (int i = 0; i < batch.size(); ++i) {
+                inputListener.accept(batch.get(i));
+            }
+        }
+        return batch;
+    }
+
     public int createSortedRuns() {
+        if (replacementSelection) {
+            return createRunsByReplacementSelection();
+        }
+        if (parallel) {
+            return createSortedRunsInParallel();
+        }
 
-        Batch inputBatch = base.next();
+        Batch inputBatch = nextInput();
         int numSortedRun = 0; // sorted run id starts at 0
 
         // while the table is not empty
@@ -88,193 +192,452 @@ public class ExternalSort extends Operator {
                 tuplesInSortedRun.addAll(inputBatch.getTuples());
 
                 if (i != numBuffer - 1) {
-                    inputBatch = base.next();
+                    inputBatch = nextInput();
+                } else if (combiner != null) {
+                    // combining frees the pages of the tuples it merges, they take more input while half are free
+                    comparator.sort(tuplesInSortedRun);
+                    combineSorted(tuplesInSortedRun);
+                    int numPagesUsed = (int) Math.ceil(tuplesInSortedRun.size() / (double) tuplesPerBatch);
+                    if (numPagesUsed <= numBuffer / 2) {
+                        i = numPagesUsed - 1;
+                        inputBatch = nextInput();
+                    }
                 }
             }
             
 
             // sort tuples
-            tuplesInSortedRun.sort(this::tupleComparator);
-            
+            comparator.sort(tuplesInSortedRun);
+            combineSorted(tuplesInSortedRun);
+            truncate(tuplesInSortedRun);
+
+            if (inputBatch != null) {
+                inputBatch = nextInput();
+            }
+
+            // the whole input fits in the buffers, it is served from memory without writing a run
+            if (numSortedRun == 0 && inputBatch == null) {
+                inMemoryRun = tuplesInSortedRun;
+                return 1;
+            }
+
             // generating of sorted runs => considered as pass 0
             writeTuplesToFile(tuplesInSortedRun, numSortedRun, 0);
             numSortedRun++;
+        }
+
+        // an empty input is an empty sorted run in memory
+        if (numSortedRun == 0) {
+            inMemoryRun = new ArrayList<Tuple>();
+            numSortedRun++;
+        }
+        return numSortedRun;
+    }
+
+    /**
+     * Parallel run generation: each chunk of the input is sorted and written out as a run
+     * on the ForkJoinPool while the next chunk is read. The first chunk takes all buffers,
+     * so an input that fits is still sorted in memory. After that the buffers are split in
+     * two halves, one holds the run being sorted and written while the other is filled.
+     */
+    private int createSortedRunsInParallel() {
+        int chunkPages = numBuffer;
+        ForkJoinTask<?> writing = null;
+        int numSortedRun = 0;
+
+        Batch inputBatch = nextInput();
+        while (inputBatch != null) {
+            ArrayList<Tuple> chunk = new ArrayList<Tuple>();
+            for (int i = 0; i < chunkPages && inputBatch != null; i++) {
+                chunk.addAll(inputBatch.getTuples());
+                inputBatch = nextInput();
+            }
+
+            // the whole input fits in the buffers, it is served from memory without writing a run
+            if (numSortedRun == 0 && inputBatch == null) {
+                inMemoryRun = sortInParallel(chunk);
+                return 1;
+            }
+
+            // the buffers of the previous run are needed for the next chunk
+            if (writing != null) {
+                writing.join();
+            }
+            final int sortedRunId = numSortedRun++;
+            writing = ForkJoinPool.commonPool().submit(() -> writeTuplesToFile(sortInParallel(chunk), sortedRunId, 0));
+            if (sortedRunId == 0) {
+                writing.join();
+                chunkPages = Math.max(1, numBuffer / 2);
+            }
+        }
+        if (writing != null) {
+            writing.join();
+        }
 
-            inputBatch = base.next();
+        // an empty input is an empty sorted run in memory
+        if (numSortedRun == 0) {
+            inMemoryRun = new ArrayList<Tuple>();
+            numSortedRun++;
         }
         return numSortedRun;
     }
 
+    /**
+     * @return the tuples sorted by a parallel merge sort, which is stable like ArrayList.sort
+     */
+    private ArrayList<Tuple> sortInParallel(ArrayList<Tuple> tuples) {
+        Tuple[] sorted = tuples.toArray(new Tuple[0]);
+        Arrays.parallelSort(sorted, comparator);
+        return truncate(combineSorted(new ArrayList<Tuple>(Arrays.asList(sorted))));
+    }
+
+    /**
+     * Cuts a sorted list down to the first limit tuples
+     * @return the list
+     */
+    private ArrayList<Tuple> truncate(ArrayList<Tuple> sorted) {
+        if (sorted.size() > limit) {
+            sorted.subList(limit, sorted.size()).clear();
+        }
+        return sorted;
+    }
+
+    /**
+     * Combines the neighbouring tuples with equal keys of a sorted list in place, if there is a combiner
+     * @return the list
+     */
+    private ArrayList<Tuple> combineSorted(ArrayList<Tuple> sorted) {
+        if (combiner == null || sorted.isEmpty()) {
+            return sorted;
+        }
+        int last = 0;
+        for (int i = 1; i < sorted.size(); i++) {
+            Tuple tuple = sorted.get(i);
+            if (comparator.compare(sorted.get(last), tuple) == 0) {
+                sorted.set(last, combiner.apply(sorted.get(last), tuple));
+            } else {
+                sorted.set(++last, tuple);
+            }
+        }
+        sorted.subList(last + 1, sorted.size()).clear();
+        return sorted;
+    }
+
+    /**
+     * Replacement selection: one buffer holds the input page and one the output page of the
+     * current run, the others hold a heap of numBuffer - 2 pages of tuples and the
+     * smallest one is always written out to the current run. Each tuple read in its place
+     * joins the current run if it does not come before the last tuple written, otherwise
+     * it waits in the heap for the next run. Runs are about twice the heap long on
+     * random input and much longer on input that is already partly sorted.
+     */
+    private int createRunsByReplacementSelection() {
+        int capacity = Math.max(1, (numBuffer - 2) * tuplesPerBatch);
+        PriorityQueue<Tuple> currentRun = new PriorityQueue<>(capacity, comparator);
+        PriorityQueue<Tuple> nextRun = new PriorityQueue<>(capacity, comparator);
+
+        // 1. fill the heap from the input
+        Batch inputBatch = nextInput();
+        int inputCursor = 0;
+        while (inputBatch != null && currentRun.size() < capacity) {
+            if (inputCursor < inputBatch.size()) {
+                currentRun.add(inputBatch.get(inputCursor++));
+            } else {
+                inputBatch = nextInput();
+                inputCursor = 0;
+            }
+        }
+
+        // the whole input fits in the heap, it is served from memory without writing a run
+        if (inputBatch == null) {
+            inMemoryRun = new ArrayList<Tuple>(currentRun);
+            comparator.sort(inMemoryRun);
+            truncate(combineSorted(inMemoryRun));
+            return 1;
+        }
+
+        int numSortedRun = 0;
+        RunWriter writer = new RunWriter(openRun(0, numSortedRun));
+        while (!currentRun.isEmpty()) {
+            // 2. write out the smallest tuple of the current run
+            Tuple lastTuple = currentRun.poll();
+            writer.next(lastTuple);
+
+            // 3. replace it with the next input tuple
+            while (inputBatch != null && inputCursor == inputBatch.size()) {
+                inputBatch = nextInput();
+                inputCursor = 0;
+            }
+            if (inputBatch != null) {
+                Tuple tuple = inputBatch.get(inputCursor++);
+                if (tupleComparator(tuple, lastTuple) >= 0) {
+                    currentRun.add(tuple);
+                } else {
+                    nextRun.add(tuple);
+                }
+            }
+
+            // 4. the current run ends when no tuple in the heap can follow the last one written
+            if (currentRun.isEmpty() && !nextRun.isEmpty()) {
+                writer.close();
+                numSortedRun++;
+                writer = new RunWriter(openRun(0, numSortedRun));
+                PriorityQueue<Tuple> swap = currentRun;
+                currentRun = nextRun;
+                nextRun = swap;
+            }
+        }
+        writer.close();
+        return numSortedRun + 1;
+    }
+
     public void mergeSortedRuns(int numSortedRun) {
         int numInputBuffer = numBuffer - 1;
+        int numFinalRuns = Math.max(1, Math.min(numInputBuffer, finalMergeFanIn));
         int numRunsToMerge = numSortedRun;
         int passId = 0;
 
-        while (numRunsToMerge > 1) {
-            // k way merge
+        // merge passes that write their output, until the last merge can feed next() directly
+        while (numRunsToMerge > numFinalRuns) {
+            // k way merge, several merges of the pass at a time when the buffers are split between them
+            int numMerges = parallel ? numConcurrentMerges(numRunsToMerge, numFinalRuns) : 1;
+            int fanIn = numMerges == 1 ? numInputBuffer : numBuffer / numMerges - 1;
+            ArrayList<ForkJoinTask<?>> merging = new ArrayList<>();
             int outputRunId = 0;
-            for (int start = 0; start < numRunsToMerge; start = start + numInputBuffer) {
-                int end = Math.min(start + numInputBuffer, numRunsToMerge) - 1;
-                mergeRunsBetween(start, end, passId, numInputBuffer, outputRunId);
+            for (int start = 0; start < numRunsToMerge; start = start + fanIn) {
+                final int first = start;
+                final int end = Math.min(start + fanIn, numRunsToMerge) - 1;
+                final int pass = passId;
+                final int runId = outputRunId;
+                if (numMerges == 1) {
+                    mergeRunsBetween(first, end, pass, fanIn, runId);
+                } else {
+                    if (merging.size() == numMerges) {
+                        merging.remove(0).join();
+                    }
+                    merging.add(ForkJoinPool.commonPool().submit(() -> mergeRunsBetween(first, end, pass, fanIn, runId)));
+                }
                 outputRunId++;
             }
-            numRunsToMerge = (int) Math.ceil(numRunsToMerge / (double) numInputBuffer);
+            for (ForkJoinTask<?> merge : merging) {
+                merge.join();
+            }
+            numRunsToMerge = (int) Math.ceil(numRunsToMerge / (double) fanIn);
             passId++;
         }
         clearFiles(passId);
-        try {
-            FileInputStream finalSortedFile = new FileInputStream("sort_" + uuid + "_pass_" + passId + "_sorted_run_0");
-            finalSortedStream = new ObjectInputStream(finalSortedFile);
-        } catch (Exception e) {
-            e.printStackTrace();
+        finalMerge = new RunMerger(0, numRunsToMerge - 1, passId, numFinalRuns);
+    }
+
+    /**
+     * Number of merges of a pass to run at once. Each merge gets numBuffer / n buffers, one
+     * of them for its output, so n is only raised as long as the smaller fan in does not add
+     * a merge pass before the runs are down to numFinalRuns.
+     */
+    private int numConcurrentMerges(int numRuns, int numFinalRuns) {
+        int maxMerges = Math.min(ForkJoinPool.getCommonPoolParallelism(), numBuffer / 3);
+        int numPasses = numMergePasses(numRuns, numFinalRuns, numBuffer - 1);
+        int numMerges = 1;
+        for (int n = 2; n <= maxMerges; n++) {
+            int fanIn = numBuffer / n - 1;
+            if (numMergePasses(numRuns, numFinalRuns, fanIn) > numPasses) {
+                break;
+            }
+            numMerges = n;
+        }
+        return Math.min(numMerges, (int) Math.ceil(numRuns / (double) (numBuffer / Math.max(1, numMerges) - 1)));
+    }
+
+    /**
+     * @return the number of merge passes with the given fan in to get numRuns runs down to numFinalRuns
+     */
+    private static int numMergePasses(int numRuns, int numFinalRuns, int fanIn) {
+        int numPasses = 0;
+        while (numRuns > numFinalRuns) {
+            numRuns = (int) Math.ceil(numRuns / (double) fanIn);
+            numPasses++;
         }
-        
+        return numPasses;
     }
 
     public void mergeRunsBetween(int start, int end, int passId, int numInputBuffer, int outputRunId) {
-        // number of runs to merge
-        int numRuns = end - start + 1;
-        // tracks input streams of Tuple objects from file
-        ObjectInputStream[] inputStreams = new ObjectInputStream[numRuns];
-        // tracks if stream has ended
-        boolean[] inputEos = new boolean[numRuns];
-        // tracks buffer pages read in from input stream
-        Batch[] inputBatches = new Batch[numRuns];
-
-        // initial population of buffers(batches)
-        for (int i = start; i <= end; i++) {
-            int arrIndex = i % numRuns;
-            Batch inputBatch = new Batch(tuplesPerBatch);
-            // 1. set up ObjectInputStreams to read from file
-            try {
-                FileInputStream fileIn = new FileInputStream("sort_" + uuid + "_pass_" + passId + "_sorted_run_" + i);
-                ObjectInputStream inStream = new ObjectInputStream(fileIn);
-                inputStreams[arrIndex] = inStream;
-                inputEos[arrIndex] = false;
-                
-                // 2. put as many tuples as possible into batch
-                while (!inputBatch.isFull()) {
-                    inputBatch.add((Tuple) inStream.readObject());
+        RunMerger merger = new RunMerger(start, end, passId, numInputBuffer);
+
+        int outputPassId = passId + 1;
+        RunWriter output = new RunWriter(openRun(outputPassId, outputRunId));
+
+        // add smallest to output buffer, the writer writes it out once the page is full
+        for (Tuple minTuple = merger.next(); minTuple != null && !output.isFull(); minTuple = merger.next()) {
+            output.next(minTuple);
+        }
+        output.close();
+        merger.close();
+    }
+
+    /**
+     * Writes out a sorted run, at most limit tuples of it. With a combiner the last tuple is
+     * held back until the next one is known, so that tuples with equal keys are written out as one.
+     */
+    class RunWriter {
+        TupleWriter writer;     // writer of the run file
+        Tuple pending;          // last tuple, not written out yet
+
+        RunWriter(TupleWriter writer) {
+            this.writer = writer;
+        }
+
+        /** Whether the run has its limit of tuples, the ones after it are dropped **/
+        boolean isFull() {
+            return writer.getNumTuple() >= limit;
+        }
+
+        void next(Tuple tuple) {
+            if (isFull()) {
+                return;
+            } else if (combiner == null) {
+                writer.next(tuple);
+            } else if (pending != null && tupleComparator(pending, tuple) == 0) {
+                pending = combiner.apply(pending, tuple);
+            } else {
+                if (pending != null) {
+                    writer.next(pending);
                 }
-                inputBatches[arrIndex] = inputBatch;
-            
-            } catch (Exception e) {
-                // catch here if sorted run size < batch size 
-                inputBatches[arrIndex] = inputBatch;
-                continue;
+                pending = tuple;
             }
         }
-        
-        Batch outputBatch = new Batch(tuplesPerBatch);
-        int outputPassId = passId + 1;
-        // while there is still a stream that has not reached eos
-        while (!reachedEndOfStreams(inputEos)) {
-            // 3. compare across the first tuple of all batch
 
-            Tuple minTuple = null;
-            int minPtr = 0;   // points to the first non empty tuple
-            int minBatch = 0; // points to the current batch that minTuple belongs to
-            
-            // sets the first tuple of the first non empty batch as minTuple
-            for (int i = 0; i < numRuns; i++) {
-                if (!inputBatches[i].isEmpty()) {
-                    minTuple = inputBatches[i].get(0); 
-                    minPtr = i;
-                    minBatch = i; 
-                    break;
+        void close() {
+            if (pending != null && !isFull()) {
+                writer.next(pending);
+                pending = null;
+            }
+            writer.close();
+        }
+    }
+
+    /**
+     * Merges the sorted runs start..end of a pass one tuple at a time, with one buffer page
+     * per run. The final merge is read by next(), the others are written out by mergeRunsBetween.
+     */
+    class RunMerger {
+        PageReader[] inputReaders;  // page readers of the sorted run files
+        boolean[] inputEos;         // tracks if stream has ended
+        Batch[] inputBatches;       // tracks buffer pages read in from input stream
+        int[] inputCursors;         // tracks the next tuple of each buffer page
+        Tuple[] heads;              // current tuple of each run, null once the run has ended
+        LoserTree tree;             // gives the run with the smallest current tuple
+        int numForecast;            // number of pages to keep in flight
+
+        RunMerger(int start, int end, int passId, int numInputBuffer) {
+            // number of runs to merge
+            int numRuns = end - start + 1;
+            inputReaders = new PageReader[numRuns];
+            inputEos = new boolean[numRuns];
+            inputBatches = new Batch[numRuns];
+            inputCursors = new int[numRuns];
+            heads = new Tuple[numRuns];
+
+            // initial population of buffers(batches)
+            for (int i = start; i <= end; i++) {
+                int arrIndex = i - start;
+                // 1. set up PageReaders to read from file and read in the first page
+                inputReaders[arrIndex] = new PageReader(runFileName(passId, i), schema);
+                if (!inputReaders[arrIndex].open()) {
+                    System.err.println("ExternalSort: Error in reading sorted run " + i);
+                    System.exit(1);
                 }
+                inputBatches[arrIndex] = nextNonEmptyPage(inputReaders[arrIndex]);
+                inputEos[arrIndex] = inputBatches[arrIndex] == null;
+                heads[arrIndex] = inputEos[arrIndex] ? null : inputBatches[arrIndex].get(0);
             }
 
+            // 2. the input buffers of the runs that are not merged now are used to read ahead
+            numForecast = Math.max(1, numInputBuffer - numRuns + BufferManager.getNumCacheFrames());
+            forecast();
+
+            // 3. the loser tree holds the current tuple of every run and gives the smallest one
+            tree = new LoserTree(heads, comparator);
+        }
+
+        int getNumRuns() {
+            return heads.length;
+        }
+
+        /**
+         * @return the smallest tuple not yet returned, null when all runs have ended
+         */
+        Tuple next() {
+            int minBatch = tree.winner();
+            Tuple minTuple = heads[minBatch];
             if (minTuple == null) {
-                inputEos[minBatch] = true;
-                break;
+                return null;
             }
 
-            // looks through the rest of the batches
-            for (int i = minPtr + 1; i < numRuns; i++) {
-                Batch currBatch = inputBatches[i];
-                
-                // cannot get from buffers that are empty
-                if (currBatch.isEmpty()) {
-                    continue;
-                }
-
-                Tuple currTuple = currBatch.get(0);
-                
-                if (tupleComparator(currTuple, minTuple) < 0) {
-                    minTuple = currTuple;
-                    minBatch = i;
+            // move past min Tuple and read a new page into the buffer once it is used up
+            inputCursors[minBatch]++;
+            if (inputCursors[minBatch] == inputBatches[minBatch].size()) {
+                inputBatches[minBatch] = nextNonEmptyPage(inputReaders[minBatch]);
+                inputCursors[minBatch] = 0;
+                if (inputBatches[minBatch] == null) {
+                    inputEos[minBatch] = true;
                 }
+                forecast();
             }
-            
-            // 4. add smallest to output buffer
-            outputBatch.add(minTuple);
-
-            // if buffer is full OR it is the last nonempty buffer, write to file then clear the buffer
-            if (outputBatch.isFull() || allOtherBatchesEmpty(inputBatches, minBatch)) {
+            heads[minBatch] = inputEos[minBatch] ? null : inputBatches[minBatch].get(inputCursors[minBatch]);
+            tree.replay(minBatch);
+            return minTuple;
+        }
 
-                ArrayList<Tuple> TuplesToWrite = outputBatch.getTuples();
-                
-                File tempFile = new File("sort_" + uuid + "_pass_" + outputPassId + "_sorted_run_" + outputRunId);
-                if (tempFile.exists()) {
-                    writeTuplesToExistingFile(TuplesToWrite, outputRunId, outputPassId);
-                } else {
-                    writeTuplesToFile(TuplesToWrite, outputRunId, outputPassId);
-                }
-                outputBatch.clear();
+        /**
+         * Forecasting for the k way merge: the run whose buffer page ends with the smallest
+         * tuple is the one that runs out first, so its next page is the first one needed.
+         * Requests the next page of the runs in that order until numForecast pages are in flight,
+         * at most one page per run as the key of a page still in flight is not known yet.
+         */
+        private void forecast() {
+            int numInFlight = 0;
+            for (PageReader reader : inputReaders) {
+                numInFlight += reader.getNumInFlight();
             }
-            
-            // 5. remove min Tuple and read a new Tuple into batch
-            try {    
-                inputBatches[minBatch].remove(0);
-                ObjectInputStream stream = inputStreams[minBatch];
-                Tuple newTuple = (Tuple) stream.readObject();
-                inputBatches[minBatch].add(newTuple);
-                
-            } catch (Exception e) {
-                try {
-                    // close the stream if size is 0
-                    // otherwise have to continue
-                    if (inputBatches[minBatch].size() == 0) {
-                        inputStreams[minBatch].close();
-                        inputEos[minBatch] = true;
+            while (numInFlight < numForecast) {
+                int nextRun = -1;
+                Tuple nextLast = null;
+                for (int i = 0; i < inputReaders.length; i++) {
+                    if (inputEos[i] || inputReaders[i].getNumInFlight() > 0 || inputReaders[i].isFullyRequested()) {
+                        continue;
                     }
-                } catch (IOException io) {
-                    continue;
+                    Tuple lastTuple = inputBatches[i].get(inputBatches[i].size() - 1);
+                    if (nextLast == null || tupleComparator(lastTuple, nextLast) < 0) {
+                        nextLast = lastTuple;
+                        nextRun = i;
+                    }
+                }
+                if (nextRun == -1) {
+                    return;
                 }
-                continue;
+                inputReaders[nextRun].prefetch();
+                numInFlight++;
             }
         }
-    }
 
-    /**
-     * 
-     * @param inputBatches array of all batches
-     * @param currBatch current batch index
-     * @return true if all batches other than currBatch are empty
-     */
-    private boolean allOtherBatchesEmpty(Batch[] inputBatches, int currBatch) {
-        boolean result = true;
-        for (int i = 0; i < inputBatches.length; i++) {
-            if (i == currBatch) {
-                continue;
+        void close() {
+            for (int i = 0; i < inputReaders.length; i++) {
+                inputReaders[i].close();
+                inputBatches[i] = null;
+                heads[i] = null;
             }
-            result = result && inputBatches[i].isEmpty();
         }
-        return result;
     }
 
     /**
-     * 
-     * @param inputEos array that tracks whether end of streams are reached
-     * @return true if has reached end of streams for all streams, false if there are streams that have not ended
+     * @return the next page of the run with at least one tuple, null at the end of the run
      */
-    private boolean reachedEndOfStreams(boolean[] inputEos) {
-        boolean result = true;
-        for (boolean x : inputEos) {
-            result = result && x;
+    private Batch nextNonEmptyPage(PageReader reader) {
+        Batch page = reader.nextPage();
+        while (page != null && page.isEmpty()) {
+            page = reader.nextPage();
         }
-        return result;
+        return page;
     }
 
     /**
@@ -284,18 +647,7 @@ public class ExternalSort extends Operator {
      * @return -1 if t1 comes before t2, 0 if they are equal, 1 if t2 comes before t1
      */
     private int tupleComparator(Tuple t1, Tuple t2) {
-        int result = 0;
-        for (int i = 0; i < attributeIndices.size(); i++) {
-            result = Tuple.compareTuples(t1, t2, attributeIndices.get(i));
-            if (result != 0) {
-                if (isDesc) {
-                    return result * -1;
-                } else {
-                    return result;
-                }
-            }
-        }
-        return result;
+        return comparator.compare(t1, t2);
     }
 
     /**
@@ -312,34 +664,28 @@ public class ExternalSort extends Operator {
         }
     }
 
-    private void writeTuplesToExistingFile(ArrayList<Tuple> sortedTuples, int sortedRunId, int passId) {
-        try {
-            // add to file
-            FileOutputStream fileOut = new FileOutputStream("sort_" + uuid + "_pass_" + passId + "_sorted_run_" + sortedRunId, true);
-            ObjectOutputStream objectOut = new AppendableObjectOutputStream(fileOut);
-            for (Tuple Tuple : sortedTuples) {
-                objectOut.writeObject(Tuple);
-            }
-            objectOut.close();
-            fileOut.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+    private void writeTuplesToFile(ArrayList<Tuple> sortedTuples, int sortedRunId, int passId) {
+        TupleWriter writer = openRun(passId, sortedRunId);
+        for (Tuple tuple : sortedTuples) {
+            writer.next(tuple);
         }
+        writer.close();
     }
 
-    private void writeTuplesToFile(ArrayList<Tuple> sortedTuples, int sortedRunId, int passId) {
-        try {
-            // add to file
-            FileOutputStream fileOut = new FileOutputStream("sort_" + uuid + "_pass_" + passId + "_sorted_run_" + sortedRunId);
-            ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
-            for (Tuple tuple : sortedTuples) {
-                objectOut.writeObject(tuple);
-            }
-            objectOut.close();
-            fileOut.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Opens the writer of a sorted run
+     */
+    private TupleWriter openRun(int passId, int sortedRunId) {
+        TupleWriter writer = new TupleWriter(runFileName(passId, sortedRunId), schema, tuplesPerBatch);
+        if (!writer.open()) {
+            System.err.println("ExternalSort: Error in writing sorted run " + sortedRunId);
+            System.exit(1);
         }
+        return writer;
+    }
+
+    private String runFileName(int passId, int sortedRunId) {
+        return "sort_" + uuid + "_pass_" + passId + "_sorted_run_" + sortedRunId;
     }
 
     public Batch next() {
@@ -350,37 +696,127 @@ public class ExternalSort extends Operator {
         }
         Batch outputBatch = new Batch(tuplesPerBatch);
         while (!outputBatch.isFull()) {
-            try {
-                Tuple tuple = (Tuple) finalSortedStream.readObject();
-                outputBatch.add(tuple);
-            } catch (Exception e) {
+            Tuple tuple = numOutput < limit ? nextCombined() : null;
+            if (tuple == null) {
                 isEos = true;
-                // System.out.println("FYI: External sort " + e.toString() + " in next().");
                 break;
-            } 
+            }
+            numOutput++;
+            outputBatch.add(tuple);
         }
         return outputBatch;
     }
 
+    /**
+     * @return the next sorted tuple, combined with the tuples with equal keys after it if there is a combiner
+     */
+    private Tuple nextCombined() {
+        Tuple tuple = lookahead != null ? lookahead : nextSorted();
+        lookahead = null;
+        if (combiner == null || tuple == null) {
+            return tuple;
+        }
+        for (Tuple next = nextSorted(); next != null; next = nextSorted()) {
+            if (tupleComparator(tuple, next) != 0) {
+                lookahead = next;
+                break;
+            }
+            tuple = combiner.apply(tuple, next);
+        }
+        return tuple;
+    }
+
+    private Tuple nextSorted() {
+        return inMemoryRun != null ? nextInMemory() : finalMerge.next();
+    }
+
+    /**
+     * @return the next tuple of the sorted input kept in memory, null once all are output
+     */
+    private Tuple nextInMemory() {
+        if (inMemoryCursor == inMemoryRun.size()) {
+            return null;
+        }
+        return inMemoryRun.get(inMemoryCursor++);
+    }
+
     public boolean close() {
-        try {
-            finalSortedStream.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (inMemoryRun != null) {
+            inMemoryRun.clear();
+            inMemoryCursor = 0;
+        }
+        BufferManager.release(numReserved);
+        numReserved = 0;
+        if (finalMerge != null) {
+            finalMerge.close();
         }
-        
         return super.close();
     }
 
-    static class AppendableObjectOutputStream extends ObjectOutputStream {
-        public AppendableObjectOutputStream(FileOutputStream out) throws IOException {
-          super(out);
+    /**
+     * Tournament tree of losers over the current tuples of k runs. Every inner node keeps
+     * the run that lost the match played there and node 0 keeps the overall winner, so after
+     * the head of the winning run changes only the matches on its path to the root are
+     * replayed: log k comparisons per output tuple instead of k. A run whose head is null
+     * has ended and loses every match. The heads are compared on their normalized keys first.
+     */
+    static class LoserTree {
+        final Tuple[] heads;                // Current tuple of each run, null once the run has ended
+        final long[] keys;                  // Normalized key of the head of each run
+        final TupleComparator comparator;   // Order of the tuples
+        final int[] tree;                   // Loser of each inner node 1..k-1, winner at 0
+
+        LoserTree(Tuple[] heads, TupleComparator comparator) {
+            this.heads = heads;
+            this.comparator = comparator;
+            keys = new long[heads.length];
+            for (int i = 0; i < heads.length; i++) {
+                keys[i] = heads[i] == null ? 0 : comparator.normalizedKey(heads[i]);
+            }
+            tree = new int[Math.max(1, heads.length)];
+            tree[0] = heads.length > 1 ? build(1) : 0;
+        }
+
+        /** Plays the matches below the node, returns the winner **/
+        private int build(int node) {
+            if (node >= heads.length) {
+                return node - heads.length;
+            }
+            int left = build(2 * node);
+            int right = build(2 * node + 1);
+            if (beats(left, right)) {
+                tree[node] = right;
+                return left;
+            }
+            tree[node] = left;
+            return right;
+        }
+
+        /** Whether the head of run a comes before the head of run b, ties go to the earlier run **/
+        private boolean beats(int a, int b) {
+            if (heads[a] == null) return false;
+            if (heads[b] == null) return true;
+            int result = comparator.compare(keys[a], heads[a], keys[b], heads[b]);
+            return result < 0 || (result == 0 && a < b);
+        }
+
+        /** Run with the smallest head **/
+        int winner() {
+            return tree[0];
         }
-      
-        @Override
-        protected void writeStreamHeader() throws IOException {
-          reset();
+
+        /** Replays the matches from the leaf of the run up to the root after its head changed **/
+        void replay(int run) {
+            keys[run] = heads[run] == null ? 0 : comparator.normalizedKey(heads[run]);
+            int winner = run;
+            for (int node = (run + heads.length) / 2; node >= 1; node /= 2) {
+                if (beats(tree[node], winner)) {
+                    int loser = winner;
+                    winner = tree[node];
+                    tree[node] = loser;
+                }
+            }
+            tree[0] = winner;
         }
     }
-   
-}
\ No newline at end of file
+}
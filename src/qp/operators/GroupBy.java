@@ -15,10 +15,17 @@ import qp.utils.Tuple;
  * Hence groupby will just sort its base on the groupby attrlist.
  * 
  * Internally uses an external sort
+ * 
+ * When the select list has aggregates, the groupby has an outputlist and outputs one tuple
+ * per group with the projected attributes and aggregates instead, see HashAggregate and SortAggregate
  */
 public class GroupBy extends Operator {
 	Operator base;					//underlying unsorted base
 	ArrayList<Attribute> groupbylist;
+	ArrayList<Attribute> outputlist = null;	//projected attributes and aggregates of each group, null if not aggregating
+	boolean sortbased = false;		//whether the groups are aggregated while sorting instead of in a hash table
+	ArrayList<Attribute> orderlist = null;	//groupby attributes the sorted groups are output in order of, null for the groupby order
+	boolean orderdesc = false;		//whether the sorted groups are output in descending order
 
 	Operator groupedbase;			//base will have to be sorted on grouped attrs
 	int batchsize;
@@ -29,6 +36,13 @@ public class GroupBy extends Operator {
 		this.groupbylist = groupbylist;
 	}
 
+	public GroupBy(Operator base, ArrayList<Attribute> groupbylist, ArrayList<Attribute> outputlist, int optype) {
+		super(optype);
+		this.base = base;
+		this.groupbylist = groupbylist;
+		this.outputlist = outputlist;
+	}
+
 	/**
 	 * what am i supposed to do in open()?
 	 * get Distinct ready for others to call next() on it??
@@ -70,8 +84,25 @@ public class GroupBy extends Operator {
 			newgroupbylist.add((Attribute) a.clone());
 		}
 
-        GroupBy newgb = new GroupBy(newbase, newgroupbylist, this.optype);
+		ArrayList<Attribute> newoutputlist = null;
+		if (this.outputlist != null) {
+			newoutputlist = new ArrayList<>();
+			for (Attribute a : this.outputlist) {
+				newoutputlist.add((Attribute) a.clone());
+			}
+			newschema = newschema.subSchema(newoutputlist);
+		}
+
+        GroupBy newgb = new GroupBy(newbase, newgroupbylist, newoutputlist, this.optype);
 		newgb.setSchema(newschema);
+		newgb.setSortBased(this.sortbased);
+		if (this.orderlist != null) {
+			ArrayList<Attribute> neworderlist = new ArrayList<>();
+			for (Attribute a : this.orderlist) {
+				neworderlist.add((Attribute) a.clone());
+			}
+			newgb.setOutputOrder(neworderlist, this.orderdesc);
+		}
         return newgb;
     }
 		
@@ -86,4 +117,96 @@ public class GroupBy extends Operator {
 	public Operator getGroupedBase() {
 		return groupedbase;
 	}
+
+	public ArrayList<Attribute> getGroupByList() {
+		return groupbylist;
+	}
+
+	public ArrayList<Attribute> getOutputList() {
+		return outputlist;
+	}
+
+	/**
+	 * true if the groups are aggregated into one tuple each
+	 */
+	public boolean isAggregate() {
+		return outputlist != null;
+	}
+
+	public void setSortBased(boolean sortbased) {
+		this.sortbased = sortbased;
+	}
+
+	public boolean isSortBased() {
+		return sortbased;
+	}
+
+	/**
+	 * true if a sort based aggregation can output its groups ordered on the given attributes,
+	 * which it can when they are all groupby attributes
+	 */
+	public boolean canOutputInOrder(ArrayList<Attribute> attrs) {
+		return isAggregate() && groupbylist != null && !groupbylist.isEmpty() && !attrs.isEmpty() && groupbylist.containsAll(attrs);
+	}
+
+	/**
+	 * Sets the order a sort based aggregation outputs its groups in, for an orderby on
+	 * groupby attributes that then need not sort them again
+	 */
+	public void setOutputOrder(ArrayList<Attribute> orderlist, boolean desc) {
+		this.orderlist = orderlist;
+		this.orderdesc = desc;
+	}
+
+	public ArrayList<Attribute> getOutputOrder() {
+		return orderlist;
+	}
+
+	public boolean isOutputDesc() {
+		return orderdesc;
+	}
+
+	/**
+	 * The groupby attributes in the order the groups are sorted on, the attributes
+	 * of the output order first
+	 */
+	protected ArrayList<Attribute> getSortList() {
+		ArrayList<Attribute> sortlist = new ArrayList<>();
+		if (orderlist != null) {
+			sortlist.addAll(orderlist);
+		}
+		if (groupbylist != null) {
+			for (Attribute attr : groupbylist) {
+				if (!sortlist.contains(attr)) {
+					sortlist.add(attr);
+				}
+			}
+		}
+		return sortlist;
+	}
+
+	/**
+	 * The output tuple of the single group of an aggregation without groupby over an
+	 * empty input, a COUNT is 0 and every other value NULL
+	 */
+	protected Tuple emptyGroupTuple() {
+		ArrayList<Object> values = new ArrayList<>(outputlist.size());
+		for (Attribute attr : outputlist) {
+			values.add(attr.getAggType() == Attribute.COUNT ? (Object) 0 : null);
+		}
+		return new Tuple(values);
+	}
+
+	/**
+	 * The INT value of the output attribute at the given index, a COUNT or a SUM of INT,
+	 * from its long accumulator. A value out of the range of an INT stops the query
+	 * rather than being output wrapped around
+	 */
+	protected int intValue(int index, long value) {
+		if (value != (int) value) {
+			System.err.println(getClass().getSimpleName() + ": " + outputlist.get(index) + " = " + value + " does not fit in an INT");
+			System.exit(1);
+		}
+		return (int) value;
+	}
 }
@@ -0,0 +1,339 @@
+/**
+ * Hash based grouping and aggregation
+ **/
+
+package qp.operators;
+
+import qp.optimizer.BufferManager;
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.Schema;
+import qp.utils.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * HashAggregate computes the MAX, MIN, SUM, COUNT and AVG of each group in one pass over
+ * the input. The groups are kept in an open addressing hash table with linear probing, the
+ * accumulators of each aggregate are primitive arrays indexed by the number of the group.
+ * The first tuple of a group is kept for the values of its non aggregated attributes.
+ *
+ * The hash table holds as many groups as fit in the buffers, with one buffer for the input,
+ * one for the output and one for each partition. Once it is full, tuples of groups that are
+ * not in it are hashed into partitions on disk, which are aggregated one after the other
+ * after the groups in the table are output.
+ *
+ * Without GROUPBY the whole input is a single group, which is output even for an empty
+ * input, with a COUNT of 0 and the other aggregates NULL.
+ */
+public class HashAggregate extends GroupBy {
+
+    static int filenum = 0;         // To get unique filenum for this operation
+    int numBuff;                    // Number of buffers available to the operator
+    int numReserved;                // Number of frames reserved in the buffer pool
+    int numPartitions;              // Number of partitions the overflow is hashed into
+    int maxGroups;                  // Number of groups the hash table holds
+    Schema baseschema;              // Schema of the input tuples
+    int basebatchsize;              // Number of tuples per page of the partitions
+    ArrayList<Integer> groupindex;  // Indices of the groupby attributes in the input
+    int[] outindex;                 // Index in the input of the attribute of each output column
+    int[] aggtypes;                 // Aggregate of each output column, Attribute.NONE for a plain attribute
+
+    int[] table;                    // Open addressing hash table, group number + 1 or 0 for an empty slot
+    int[] grouphash;                // Hash of the groupby values of each group
+    Tuple[] firsttuples;            // First tuple of each group
+    long[][] longacc;               // Per column: SUM of INT, MIN/MAX of INT, COUNT
+    double[][] doubleacc;           // Per column: SUM of REAL, sum for AVG, MIN/MAX of REAL
+    Object[][] objectacc;           // Per column: MIN/MAX of STRING
+    long[][] counts;                // Per column: number of values for AVG
+    int numGroups;                  // Number of groups in the hash table
+
+    SpillPartitions input;          // The base, then the partitions the groups that do not fit are spilled to
+    int outcurs;                    // Next group of the hash table to output, -1 while aggregating
+    boolean eos;                    // Whether all groups have been output
+
+    public HashAggregate(GroupBy groupby) {
+        super(groupby.getBase(), groupby.getGroupByList(), groupby.getOutputList(), groupby.getOpType());
+        schema = groupby.getSchema();
+    }
+
+    /**
+     * Number of groups the hash table holds with the given number of buffers,
+     * * at the size of the output tuples
+     **/
+    public static int numTableGroups(int numBuff, int tuplesize) {
+        int pages = Math.max(1, numBuff - 2 - SpillPartitions.numPartitions(numBuff));
+        return Math.max(1, pages * Math.max(1, Batch.getPageSize() / tuplesize));
+    }
+
+    @Override
+    public boolean open() {
+        int tupleSize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tupleSize;
+        if (batchsize < 1) {
+            System.err.println("Page size should be larger than tuple size!");
+        }
+
+        baseschema = base.getSchema();
+        basebatchsize = Math.max(1, Batch.getPageSize() / baseschema.getTupleSize());
+        groupindex = new ArrayList<>();
+        if (groupbylist != null) {
+            for (Attribute attr : groupbylist) {
+                groupindex.add(baseschema.indexOf(attr));
+            }
+        }
+        outindex = new int[outputlist.size()];
+        aggtypes = new int[outputlist.size()];
+        for (int i = 0; i < outputlist.size(); ++i) {
+            Attribute attr = outputlist.get(i);
+            outindex[i] = baseschema.indexOf(attr.getBaseAttribute());
+            aggtypes[i] = attr.getAggType();
+            int type = baseschema.getAttribute(outindex[i]).getType();
+            if (type == Attribute.STRING && (aggtypes[i] == Attribute.SUM || aggtypes[i] == Attribute.AVG)) {
+                System.err.println("HashAggregate: " + attr + " is not defined on a STRING attribute");
+                System.exit(1);
+            }
+        }
+
+        numBuff = BufferManager.getNumBuffer();
+        numReserved = BufferManager.reserve(numBuff);
+        numPartitions = SpillPartitions.numPartitions(numBuff);
+        maxGroups = numTableGroups(numBuff, tupleSize);
+
+        int tablesize = Integer.highestOneBit(Math.max(1, 2 * maxGroups - 1)) << 1;
+        table = new int[tablesize];
+        grouphash = new int[maxGroups];
+        firsttuples = new Tuple[maxGroups];
+        longacc = new long[aggtypes.length][];
+        doubleacc = new double[aggtypes.length][];
+        objectacc = new Object[aggtypes.length][];
+        counts = new long[aggtypes.length][];
+        for (int i = 0; i < aggtypes.length; ++i) {
+            if (aggtypes[i] == Attribute.NONE) continue;
+            int type = baseschema.getAttribute(outindex[i]).getType();
+            if (aggtypes[i] == Attribute.COUNT || type == Attribute.INT && aggtypes[i] != Attribute.AVG) {
+                longacc[i] = new long[maxGroups];
+            } else if (type == Attribute.STRING) {
+                objectacc[i] = new Object[maxGroups];
+            } else {
+                doubleacc[i] = new double[maxGroups];
+            }
+            if (aggtypes[i] == Attribute.AVG) {
+                counts[i] = new long[maxGroups];
+            }
+        }
+
+        filenum++;
+        input = new SpillPartitions(base, baseschema, basebatchsize, numPartitions, groupindex,
+                "HAtemp-" + String.valueOf(filenum), "HashAggregate");
+        outcurs = -1;
+        eos = false;
+        clearTable();
+        return base.open();
+    }
+
+    /**
+     * Returns the next page of aggregated groups
+     **/
+    @Override
+    public Batch next() {
+        if (eos) {
+            close();
+            return null;
+        }
+        Batch outbatch = new Batch(batchsize);
+        while (!outbatch.isFull()) {
+            if (outcurs >= 0) {
+                /** output the groups of the hash table, then go on with the next partition **/
+                if (outcurs < numGroups) {
+                    outbatch.add(outputTuple(outcurs++));
+                    continue;
+                }
+                clearTable();
+                if (!input.nextPartition()) {
+                    eos = true;
+                    break;
+                }
+                outcurs = -1;
+                continue;
+            }
+            Tuple tuple = input.nextInput();
+            if (tuple == null) {
+                /** the current input is aggregated, start to output its groups **/
+                input.finishInput();
+                outcurs = 0;
+                if (groupindex.isEmpty() && numGroups == 0) {
+                    /** an empty input still forms the single group of a query without GROUPBY **/
+                    outbatch.add(emptyGroupTuple());
+                }
+                continue;
+            }
+            int h = hashOf(tuple);
+            int group = findGroup(tuple, h);
+            if (group < 0) {
+                if (numGroups < maxGroups) {
+                    group = addGroup(tuple, h);
+                } else {
+                    input.spill(tuple);
+                    continue;
+                }
+            }
+            accumulate(group, tuple);
+        }
+        return outbatch;
+    }
+
+    /**
+     * Number of the group of the tuple in the hash table, -1 if it is not there
+     **/
+    private int findGroup(Tuple tuple, int h) {
+        int mask = table.length - 1;
+        for (int slot = h & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int group = table[slot] - 1;
+            if (grouphash[group] == h && tuple.checkJoin(firsttuples[group], groupindex, groupindex)) {
+                return group;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a new group starting with the tuple, sets the MIN/MAX accumulators to its values
+     **/
+    private int addGroup(Tuple tuple, int h) {
+        int mask = table.length - 1;
+        int slot = h & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        int group = numGroups++;
+        table[slot] = group + 1;
+        grouphash[group] = h;
+        firsttuples[group] = tuple;
+        for (int i = 0; i < aggtypes.length; ++i) {
+            int index = outindex[i];
+            if (longacc[i] != null) {
+                longacc[i][group] = aggtypes[i] == Attribute.MAX || aggtypes[i] == Attribute.MIN ? tuple.getInt(index) : 0;
+            } else if (doubleacc[i] != null) {
+                doubleacc[i][group] = aggtypes[i] == Attribute.MAX || aggtypes[i] == Attribute.MIN ? tuple.getFloat(index) : 0;
+            } else if (objectacc[i] != null) {
+                objectacc[i][group] = tuple.getString(index);
+            }
+            if (counts[i] != null) {
+                counts[i][group] = 0;
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Adds the values of the tuple to the accumulators of its group
+     **/
+    private void accumulate(int group, Tuple tuple) {
+        for (int i = 0; i < aggtypes.length; ++i) {
+            int index = outindex[i];
+            switch (aggtypes[i]) {
+                case Attribute.COUNT:
+                    longacc[i][group]++;
+                    break;
+                case Attribute.SUM:
+                    if (longacc[i] != null) {
+                        longacc[i][group] += tuple.getInt(index);
+                    } else {
+                        doubleacc[i][group] += tuple.getFloat(index);
+                    }
+                    break;
+                case Attribute.AVG:
+                    doubleacc[i][group] += isInt(index) ? tuple.getInt(index) : tuple.getFloat(index);
+                    counts[i][group]++;
+                    break;
+                case Attribute.MAX:
+                case Attribute.MIN:
+                    boolean max = aggtypes[i] == Attribute.MAX;
+                    if (longacc[i] != null) {
+                        int value = tuple.getInt(index);
+                        if (max ? value > longacc[i][group] : value < longacc[i][group]) longacc[i][group] = value;
+                    } else if (doubleacc[i] != null) {
+                        float value = tuple.getFloat(index);
+                        if (max ? value > doubleacc[i][group] : value < doubleacc[i][group]) doubleacc[i][group] = value;
+                    } else {
+                        String value = tuple.getString(index);
+                        int result = value.compareTo((String) objectacc[i][group]);
+                        if (max ? result > 0 : result < 0) objectacc[i][group] = value;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private boolean isInt(int index) {
+        return baseschema.getAttribute(index).getType() == Attribute.INT;
+    }
+
+    /**
+     * The output tuple of a group, with the types given by Attribute.getProjectedType
+     **/
+    private Tuple outputTuple(int group) {
+        ArrayList<Object> values = new ArrayList<>(aggtypes.length);
+        for (int i = 0; i < aggtypes.length; ++i) {
+            switch (aggtypes[i]) {
+                case Attribute.NONE:
+                    values.add(firsttuples[group].dataAt(outindex[i]));
+                    break;
+                case Attribute.COUNT:
+                    values.add(intValue(i, longacc[i][group]));
+                    break;
+                case Attribute.AVG:
+                    values.add((float) (doubleacc[i][group] / counts[i][group]));
+                    break;
+                default:
+                    if (longacc[i] != null) {
+                        values.add(intValue(i, longacc[i][group]));
+                    } else if (doubleacc[i] != null) {
+                        values.add((float) doubleacc[i][group]);
+                    } else {
+                        values.add(objectacc[i][group]);
+                    }
+            }
+        }
+        return new Tuple(values);
+    }
+
+    private void clearTable() {
+        Arrays.fill(table, 0);
+        Arrays.fill(firsttuples, null);
+        numGroups = 0;
+    }
+
+    /**
+     * Hash of the groupby values, used for the hash table
+     **/
+    private int hashOf(Tuple tuple) {
+        int h = 1;
+        for (int i : groupindex) {
+            h = 31 * h + tuple.hashCodeAt(i);
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public boolean close() {
+        if (input != null) {
+            input.close();
+        }
+        table = null;
+        firsttuples = null;
+        BufferManager.release(numReserved);
+        numReserved = 0;
+        return true;
+    }
+
+    @Override
+    public Object clone() {
+        return new HashAggregate((GroupBy) super.clone());
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Hash based duplicate elimination
+ **/
+
+package qp.operators;
+
+import qp.optimizer.BufferManager;
+import qp.utils.Batch;
+import qp.utils.Tuple;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * HashDistinct removes duplicates with an in-memory hash set of the tuples seen so far.
+ * A tuple that is not in the set is added to it and output right away, so results come
+ * out while the input is still being read. Once the set is full, tuples that are not in
+ * it are hashed into partitions on disk instead. Each partition is then deduplicated in
+ * the same way, with a fresh set and a different partitioning hash.
+ *
+ * Out of the numBuff buffers one is the input buffer, one the output buffer and one is
+ * the output buffer of each partition, the rest hold the hash set.
+ */
+public class HashDistinct extends Distinct {
+
+    static int filenum = 0;         // To get unique filenum for this operation
+    int numBuff;                    // Number of buffers available to the operator
+    int numReserved;                // Number of frames reserved in the buffer pool
+    int numPartitions;              // Number of partitions the overflow is hashed into
+    int capacity;                   // Number of tuples the hash set holds
+    ArrayList<Integer> allindex;    // Indices of all the attributes, tuples are compared on all of them
+    SpillPartitions input;          // The base, then the partitions the tuples that do not fit are spilled to
+    HashSet<DistinctKey> seen;      // Tuples of the current input output so far
+    boolean eos;                    // Whether all input has been deduplicated
+
+    public HashDistinct(Distinct distinct) {
+        super(distinct.getBase(), distinct.getOpType());
+        schema = distinct.getSchema();
+        setHashBased(true);
+    }
+
+    /**
+     * Number of pages of tuples the hash set holds with the given number of buffers
+     **/
+    public static int numTablePages(int numBuff) {
+        return Math.max(1, numBuff - 2 - SpillPartitions.numPartitions(numBuff));
+    }
+
+    /**
+     * Whether the given number of buffers leaves at least one page for the hash set
+     **/
+    public static boolean hasEnoughBuffers(int numBuff) {
+        return numBuff - 2 - SpillPartitions.numPartitions(numBuff) >= 1;
+    }
+
+    @Override
+    public boolean open() {
+        int tupleSize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tupleSize;
+        if (batchsize < 1) {
+            System.err.println("Page size should be larger than tuple size!");
+        }
+
+        numBuff = BufferManager.getNumBuffer();
+        numReserved = BufferManager.reserve(numBuff);
+        numPartitions = SpillPartitions.numPartitions(numBuff);
+        capacity = Math.max(1, numTablePages(numBuff) * batchsize);
+
+        allindex = new ArrayList<>();
+        for (int i = 0; i < schema.getNumCols(); ++i) {
+            allindex.add(i);
+        }
+        filenum++;
+        input = new SpillPartitions(base, schema, batchsize, numPartitions, allindex,
+                "HDtemp-" + String.valueOf(filenum), "HashDistinct");
+        seen = new HashSet<>();
+        eos = false;
+        return base.open();
+    }
+
+    /**
+     * Returns the next page of tuples not output before
+     **/
+    @Override
+    public Batch next() {
+        if (eos) {
+            close();
+            return null;
+        }
+        Batch outbatch = new Batch(batchsize);
+        while (!outbatch.isFull()) {
+            Tuple tuple = input.nextInput();
+            if (tuple == null) {
+                /** current input is done, go on with the next partition with a fresh set **/
+                input.finishInput();
+                seen = new HashSet<>();
+                if (!input.nextPartition()) {
+                    eos = true;
+                    break;
+                }
+                continue;
+            }
+            DistinctKey key = new DistinctKey(tuple);
+            if (seen.contains(key)) {
+                continue;
+            }
+            if (seen.size() < capacity) {
+                seen.add(key);
+                outbatch.add(tuple);
+            } else {
+                input.spill(tuple);
+            }
+        }
+        return outbatch;
+    }
+
+    @Override
+    public boolean close() {
+        if (input != null) {
+            input.close();
+        }
+        seen = null;
+        BufferManager.release(numReserved);
+        numReserved = 0;
+        return true;
+    }
+
+    @Override
+    public Object clone() {
+        Operator newbase = (Operator) base.clone();
+        Distinct newD = new Distinct(newbase, optype);
+        newD.setSchema(newbase.getSchema());
+        newD.setHashBased(true);
+        return new HashDistinct(newD);
+    }
+
+    /**
+     * A tuple as a key of the hash set, equal to the tuples with the same value in every column
+     **/
+    class DistinctKey {
+        final Tuple tuple;
+        final int hash;
+
+        DistinctKey(Tuple tuple) {
+            this.tuple = tuple;
+            int h = 1;
+            for (int i : allindex) {
+                h = 31 * h + tuple.hashCodeAt(i);
+            }
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DistinctKey && tuple.checkJoin(((DistinctKey) o).tuple, allindex, allindex);
+        }
+    }
+}
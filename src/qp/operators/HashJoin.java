@@ -0,0 +1,254 @@
+/**
+ * Grace Hash Join algorithm
+ **/
+
+package qp.operators;
+
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.Condition;
+import qp.utils.Tuple;
+import qp.utils.TupleReader;
+import qp.utils.TupleWriter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class HashJoin extends Join {
+
+    static int filenum = 0;         // To get unique filenum for this operation
+    int batchsize;                  // Number of tuples per out batch
+    int leftbatchsize;              // Number of tuples per page of the left partitions
+    int rightbatchsize;             // Number of tuples per page of the right partitions
+    ArrayList<Integer> leftindex;   // Indices of the join attributes in left table
+    ArrayList<Integer> rightindex;  // Indices of the join attributes in right table
+    String fileprefix;              // Prefix of the files the partitions are written to
+    int numPartitions;              // Number of partitions each input is hashed into
+    Batch outbatch;                 // Buffer page for output
+
+    int partcurs;                   // Partition currently being joined
+    HashMap<ArrayList<Object>, ArrayList<Tuple>> hashtable;  // In-memory hash table on the left partition
+    TupleReader probereader;        // Reads the right partition that probes the hash table
+    Tuple probetuple;               // Right tuple currently being joined
+    ArrayList<Tuple> matches;       // Left tuples matching the current right tuple
+    int mcurs;                      // Cursor for the matching left tuples
+    boolean eos;                    // Whether all partitions have been joined
+
+    public HashJoin(Join jn) {
+        super(jn.getLeft(), jn.getRight(), jn.getConditionList(), jn.getOpType());
+        schema = jn.getSchema();
+        jointype = jn.getJoinType();
+        numBuff = jn.getNumBuff();
+    }
+
+    /**
+     * During open finds the index of the join attributes
+     * * Partitions both inputs into numBuff - 1 partitions on disk
+     **/
+    public boolean open() {
+        setUp();
+
+        /** one buffer is kept for reading the input, the rest are output buffers for the partitions **/
+        numPartitions = Math.max(1, numBuff - 1);
+
+        /** the left input is the build input, its keys filter the right input before it is partitioned **/
+        createRuntimeFilters();
+        if (!partition(left, leftindex, "left", leftbatchsize))
+            return false;
+        pushRuntimeFilters();
+        if (!partition(right, rightindex, "right", rightbatchsize))
+            return false;
+        return true;
+    }
+
+    /**
+     * Reserves the buffers of the join, computes the page sizes and the indices
+     * * of the join attributes and resets the cursors used while joining the partitions
+     **/
+    void setUp() {
+        reserveBuffers(numBuff);
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tuplesize;
+        leftbatchsize = Math.max(1, Batch.getPageSize() / left.getSchema().getTupleSize());
+        rightbatchsize = Math.max(1, Batch.getPageSize() / right.getSchema().getTupleSize());
+
+        if (batchsize < 1) {
+            System.err.println("Page size should be larger than tuple size!");
+        }
+
+        /** find indices attributes of join conditions **/
+        leftindex = new ArrayList<>();
+        rightindex = new ArrayList<>();
+        for (Condition con : conditionList) {
+            Attribute leftattr = con.getLhs();
+            Attribute rightattr = (Attribute) con.getRhs();
+            leftindex.add(left.getSchema().indexOf(leftattr));
+            rightindex.add(right.getSchema().indexOf(rightattr));
+        }
+        filenum++;
+        fileprefix = "HJtemp-" + String.valueOf(filenum);
+
+        partcurs = -1;
+        hashtable = null;
+        probereader = null;
+        probetuple = null;
+        matches = null;
+        mcurs = 0;
+        eos = false;
+    }
+
+    /**
+     * Reads the whole input and writes every tuple to the partition
+     * * file selected by hashing its join attributes
+     **/
+    private boolean partition(Operator input, ArrayList<Integer> index, String side, int pagesize) {
+        if (!input.open())
+            return false;
+
+        TupleWriter[] writers = new TupleWriter[numPartitions];
+        for (int i = 0; i < numPartitions; ++i) {
+            writers[i] = new TupleWriter(partitionFileName(side, i), input.getSchema(), pagesize);
+            if (!writers[i].open())
+                return false;
+        }
+
+        Batch inbatch;
+        while ((inbatch = input.next()) != null) {
+            for (int i = 0; i < inbatch.size(); ++i) {
+                Tuple tuple = inbatch.get(i);
+                if (input == left) {
+                    collectBuildKeys(tuple);
+                }
+                writers[partitionOf(tuple, index)].next(tuple);
+            }
+        }
+
+        for (TupleWriter writer : writers) {
+            writer.close();
+        }
+        return input.close();
+    }
+
+    /**
+     * from the partitions selects the tuples satisfying join condition
+     * * And returns a page of output tuples
+     **/
+    public Batch next() {
+        if (eos) {
+            close();
+            return null;
+        }
+        outbatch = new Batch(batchsize);
+        while (!outbatch.isFull()) {
+            /** emit the remaining matches of the current probe tuple first **/
+            if (matches != null && mcurs < matches.size()) {
+                outbatch.add(matches.get(mcurs).joinWith(probetuple));
+                mcurs++;
+                continue;
+            }
+
+            /** current partition is exhausted, build the hash table of the next one **/
+            if (probereader == null || probereader.isEOF()) {
+                if (probereader != null) {
+                    probereader.close();
+                    probereader = null;
+                }
+                partcurs++;
+                if (partcurs >= numPartitions) {
+                    eos = true;
+                    return outbatch;
+                }
+                if (buildHashTable(partcurs)) {
+                    probereader = new TupleReader(partitionFileName("right", partcurs), right.getSchema(), rightbatchsize);
+                    if (!probereader.open()) {
+                        System.err.println("HashJoin: Error in reading temporary file");
+                        System.exit(1);
+                    }
+                }
+                continue;
+            }
+
+            probetuple = probereader.next();
+            matches = hashtable.get(keyOf(probetuple, rightindex));
+            mcurs = 0;
+        }
+        return outbatch;
+    }
+
+    /**
+     * Loads the given left partition into the in-memory hash table
+     * * Returns false if the partition is empty and can be skipped
+     **/
+    boolean buildHashTable(int partno) {
+        hashtable = new HashMap<>();
+        TupleReader buildreader = new TupleReader(partitionFileName("left", partno), left.getSchema(), leftbatchsize);
+        if (!buildreader.open()) {
+            System.err.println("HashJoin: Error in reading temporary file");
+            System.exit(1);
+        }
+        Tuple tuple;
+        while ((tuple = buildreader.next()) != null) {
+            ArrayList<Object> key = keyOf(tuple, leftindex);
+            ArrayList<Tuple> bucket = hashtable.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                hashtable.put(key, bucket);
+            }
+            bucket.add(tuple);
+        }
+        buildreader.close();
+        return !hashtable.isEmpty();
+    }
+
+    /**
+     * Values of the join attributes, used as the key of the hash table
+     **/
+    ArrayList<Object> keyOf(Tuple tuple, ArrayList<Integer> index) {
+        ArrayList<Object> key = new ArrayList<>(index.size());
+        for (int i : index) {
+            key.add(tuple.dataAt(i));
+        }
+        return key;
+    }
+
+    /**
+     * Partitioning hash function, kept different from the one of the
+     * * in-memory hash table so that a partition still spreads over its buckets
+     **/
+    int partitionOf(Tuple tuple, ArrayList<Integer> index) {
+        return Math.floorMod(hashOf(tuple, index), numPartitions);
+    }
+
+    int hashOf(Tuple tuple, ArrayList<Integer> index) {
+        int h = 17;
+        for (int i : index) {
+            h = 31 * h + tuple.hashCodeAt(i);
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+
+    String partitionFileName(String side, int partno) {
+        return fileprefix + "-" + side + "-" + partno;
+    }
+
+    /**
+     * Close the operator
+     */
+    public boolean close() {
+        if (probereader != null) {
+            probereader.close();
+            probereader = null;
+        }
+        hashtable = null;
+        removeRuntimeFilters();
+        for (int i = 0; i < numPartitions; ++i) {
+            new File(partitionFileName("left", i)).delete();
+            new File(partitionFileName("right", i)).delete();
+        }
+        releaseBuffers();
+        return true;
+    }
+
+}
@@ -0,0 +1,266 @@
+/**
+ * Hybrid Hash Join algorithm
+ **/
+
+package qp.operators;
+
+import qp.utils.Batch;
+import qp.utils.Tuple;
+import qp.utils.TupleWriter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Like the Grace hash join, but the buffers that are not needed as output
+ * buffers for the spilled partitions hold partition 0 of the left input in an
+ * in-memory hash table. Right tuples of partition 0 probe it directly while the
+ * right input is being partitioned, so that part of both inputs never goes to disk.
+ * The remaining partitions are then joined exactly as in the Grace hash join.
+ */
+public class HybridHashJoin extends HashJoin {
+
+    long buildpages;                // Estimated number of pages of the left input
+    int residentpages;              // Buffer pages available to partition 0
+    double residentfraction;        // Fraction of the hash values that fall into partition 0
+    HashMap<ArrayList<Object>, ArrayList<Tuple>> residenttable;  // In-memory hash table on partition 0
+    int residenttuples;             // Number of tuples in the in-memory hash table
+    boolean residentspilled;        // Whether partition 0 overflowed and was written to disk
+    TupleWriter[] rightwriters;     // Output buffers of the spilled right partitions
+    Batch rightbatch;               // Buffer page for right input stream
+    int rcurs;                      // Cursor for right side buffer
+    boolean probing;                // Whether the right input is still being partitioned
+
+    public HybridHashJoin(Join jn) {
+        super(jn);
+    }
+
+    public long getBuildPages() {
+        return buildpages;
+    }
+
+    public void setBuildPages(long pages) {
+        this.buildpages = pages;
+    }
+
+    /**
+     * Number of partitions that have to be written to disk so that every one of them
+     * * fits in memory when it is joined, and partition 0 fits in the buffers left over
+     * * after one input, one output and one buffer per spilled partition
+     **/
+    public static int numSpillPartitions(long buildpages, int numbuff) {
+        long avail = numbuff - 2;
+        if (buildpages <= avail) {
+            return 0;
+        }
+        if (avail <= 1) {
+            return Math.max(1, numbuff - 1);
+        }
+        long numspill = (long) Math.ceil((double) (buildpages - avail) / (double) (avail - 1));
+        return (int) Math.min(numspill, numbuff - 1);
+    }
+
+    /**
+     * Number of pages of partition 0 that stay in memory
+     **/
+    public static int numResidentPages(long buildpages, int numbuff) {
+        int numspill = numSpillPartitions(buildpages, numbuff);
+        return (int) Math.min(buildpages, Math.max(0, numbuff - 2 - numspill));
+    }
+
+    /**
+     * During open finds the index of the join attributes
+     * * Builds the in-memory hash table on partition 0 and spills the other
+     * * partitions of the left input, the right input is partitioned in next()
+     **/
+    public boolean open() {
+        setUp();
+
+        int numspill = numSpillPartitions(buildpages, numBuff);
+        numPartitions = numspill + 1;
+        residentpages = Math.max(0, numBuff - 2 - numspill);
+        if (numspill == 0) {
+            residentfraction = 1.0;
+        } else {
+            residentfraction = Math.min(1.0, residentpages / (double) buildpages);
+        }
+        residenttable = new HashMap<>();
+        residenttuples = 0;
+        residentspilled = false;
+
+        createRuntimeFilters();
+        if (!left.open())
+            return false;
+
+        TupleWriter[] leftwriters = new TupleWriter[numPartitions];
+        for (int i = 1; i < numPartitions; ++i) {
+            leftwriters[i] = new TupleWriter(partitionFileName("left", i), left.getSchema(), leftbatchsize);
+            if (!leftwriters[i].open())
+                return false;
+        }
+
+        Batch inbatch;
+        while ((inbatch = left.next()) != null) {
+            for (int i = 0; i < inbatch.size(); ++i) {
+                Tuple tuple = inbatch.get(i);
+                collectBuildKeys(tuple);
+                int partno = partitionOf(tuple, leftindex);
+                if (partno == 0 && !residentspilled) {
+                    addToResidentTable(tuple);
+                    /** the estimate was too small, fall back to spilling partition 0 as well **/
+                    if (residenttuples > residentpages * leftbatchsize) {
+                        leftwriters[0] = spillResidentTable();
+                    }
+                } else {
+                    leftwriters[partno].next(tuple);
+                }
+            }
+        }
+        for (TupleWriter writer : leftwriters) {
+            if (writer != null)
+                writer.close();
+        }
+        if (!left.close())
+            return false;
+        pushRuntimeFilters();
+
+        rightwriters = new TupleWriter[numPartitions];
+        for (int i = 0; i < numPartitions; ++i) {
+            if (i == 0 && !residentspilled)
+                continue;
+            rightwriters[i] = new TupleWriter(partitionFileName("right", i), right.getSchema(), rightbatchsize);
+            if (!rightwriters[i].open())
+                return false;
+        }
+
+        rightbatch = null;
+        rcurs = 0;
+        probing = true;
+        return right.open();
+    }
+
+    private void addToResidentTable(Tuple tuple) {
+        ArrayList<Object> key = keyOf(tuple, leftindex);
+        ArrayList<Tuple> bucket = residenttable.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            residenttable.put(key, bucket);
+        }
+        bucket.add(tuple);
+        residenttuples++;
+    }
+
+    /**
+     * Writes the in-memory partition 0 out to disk, and returns the
+     * * writer that the rest of partition 0 has to be written to
+     **/
+    private TupleWriter spillResidentTable() {
+        TupleWriter writer = new TupleWriter(partitionFileName("left", 0), left.getSchema(), leftbatchsize);
+        if (!writer.open()) {
+            System.err.println("HybridHashJoin: Error writing to temporary file");
+            System.exit(1);
+        }
+        for (ArrayList<Tuple> bucket : residenttable.values()) {
+            for (Tuple tuple : bucket) {
+                writer.next(tuple);
+            }
+        }
+        residenttable = null;
+        residentspilled = true;
+        return writer;
+    }
+
+    /**
+     * While the right input is being partitioned, joins the tuples of partition 0
+     * * against the in-memory hash table and returns a page of output tuples
+     * * Afterwards the spilled partitions are joined by the Grace hash join
+     **/
+    public Batch next() {
+        if (!probing) {
+            return super.next();
+        }
+        outbatch = new Batch(batchsize);
+        while (!outbatch.isFull()) {
+            if (matches != null && mcurs < matches.size()) {
+                outbatch.add(matches.get(mcurs).joinWith(probetuple));
+                mcurs++;
+                continue;
+            }
+
+            if (rightbatch == null || rcurs >= rightbatch.size()) {
+                rightbatch = right.next();
+                rcurs = 0;
+                if (rightbatch == null) {
+                    finishProbing();
+                    break;
+                }
+                continue;
+            }
+
+            Tuple tuple = rightbatch.get(rcurs);
+            rcurs++;
+            int partno = partitionOf(tuple, rightindex);
+            if (partno == 0 && !residentspilled) {
+                probetuple = tuple;
+                matches = residenttable.get(keyOf(tuple, rightindex));
+                mcurs = 0;
+            } else {
+                rightwriters[partno].next(tuple);
+            }
+        }
+        if (outbatch.isEmpty()) {
+            return super.next();
+        }
+        return outbatch;
+    }
+
+    /**
+     * The right input is exhausted, release the in-memory partition
+     **/
+    private void finishProbing() {
+        for (TupleWriter writer : rightwriters) {
+            if (writer != null)
+                writer.close();
+        }
+        right.close();
+        residenttable = null;
+        rightbatch = null;
+        probing = false;
+    }
+
+    /**
+     * Partition 0 has already been joined in memory unless it was spilled
+     **/
+    boolean buildHashTable(int partno) {
+        if (partno == 0 && !residentspilled) {
+            hashtable = new HashMap<>();
+            return false;
+        }
+        return super.buildHashTable(partno);
+    }
+
+    /**
+     * Partition 0 receives the share of hash values that fits in its buffers,
+     * * the rest of the hash values are spread evenly over the spilled partitions
+     **/
+    int partitionOf(Tuple tuple, ArrayList<Integer> index) {
+        if (numPartitions == 1) {
+            return 0;
+        }
+        double position = (hashOf(tuple, index) & 0xFFFFFFFFL) / 4294967296.0;
+        if (position < residentfraction) {
+            return 0;
+        }
+        int spillno = (int) ((position - residentfraction) / (1.0 - residentfraction) * (numPartitions - 1));
+        return 1 + Math.min(spillno, numPartitions - 2);
+    }
+
+    /**
+     * Close the operator
+     */
+    public boolean close() {
+        residenttable = null;
+        return super.close();
+    }
+
+}
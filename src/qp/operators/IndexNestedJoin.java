@@ -0,0 +1,240 @@
+/**
+ * Index Nested Join algorithm
+ **/
+
+package qp.operators;
+
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.Condition;
+import qp.utils.IndexReader;
+import qp.utils.IndexWriter;
+import qp.utils.PageReader;
+import qp.utils.Schema;
+import qp.utils.Tuple;
+
+import java.util.ArrayList;
+
+/**
+ * IndexNestedJoin never scans its right input. The right input is a base table, possibly
+ * under selections, with an index on the attribute of one of the equality join conditions.
+ * For each left tuple the index is probed with its value of that attribute, and only the
+ * table pages holding the matching tuples are read, through the buffer pool so that pages
+ * probed again are often still cached. The selections of the right input and the other
+ * join conditions are checked on each matching tuple.
+ */
+public class IndexNestedJoin extends Join {
+
+    int batchsize;                  // Number of tuples per out batch
+    ArrayList<Integer> leftindex;   // Indices of the join attributes in left table
+    ArrayList<Integer> rightindex;  // Indices of the join attributes in right table
+    int probeindex;                 // Index in the left table of the attribute the index is probed with
+    Scan innerscan;                 // Scan of the base table under the right input
+    ArrayList<Select> innerselects; // Selections of the right input, checked on each matching tuple
+    int[] innercols;                // Index in the table of each attribute of the right input, null if they are the same
+    IndexReader index;              // Index on the probed attribute of the right table
+    PageReader table;               // Table file of the right input
+    Batch outbatch;                 // Buffer page for output
+    Batch leftbatch;                // Buffer page for left input stream
+    ArrayList<Tuple> matches;       // Output tuples of the left tuple at lcurs - 1 not yet output
+    int mcurs;                      // Next tuple of matches to output
+
+    int lcurs;                      // Cursor for left side buffer
+    boolean eosl;                   // Whether end of stream (left table) is reached
+
+    public IndexNestedJoin(Join jn) {
+        super(jn.getLeft(), jn.getRight(), jn.getConditionList(), jn.getOpType());
+        schema = jn.getSchema();
+        jointype = jn.getJoinType();
+        numBuff = jn.getNumBuff();
+    }
+
+    /**
+     * The scan of the base table under the right input of the join when the right input
+     * * only selects from it, null otherwise
+     **/
+    public static Scan getInnerScan(Operator right) {
+        while (right.getOpType() == OpType.SELECT) {
+            right = ((Select) right).getBase();
+        }
+        return right.getOpType() == OpType.SCAN ? (Scan) right : null;
+    }
+
+    /**
+     * The equality join condition whose right attribute has an index the join can probe,
+     * * null if the join cannot be done as an index nested join
+     **/
+    public static Condition getProbeCondition(Join jn) {
+        Scan scan = getInnerScan(jn.getRight());
+        if (scan == null) {
+            return null;
+        }
+        Schema leftschema = jn.getLeft().getSchema();
+        Schema tableschema = scan.getTableSchema();
+        for (Condition con : jn.getConditionList()) {
+            Attribute rightattr = (Attribute) con.getRhs();
+            if (con.getExprType() == Condition.EQUAL && tableschema.contains(rightattr)
+                    && leftschema.typeOf(con.getLhs()) == tableschema.typeOf(rightattr)
+                    && IndexReader.hasIndex(scan.getTabName(), rightattr)) {
+                return con;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * During open finds the index of the join attributes
+     * * Opens the index of the right table and the left input
+     **/
+    public boolean open() {
+        /** one page of the left input, the probed page and the output page are held in memory,
+         ** the other buffers of the join are left to cache the index and table pages
+         **/
+        reserveBuffers(Math.min(3, numBuff));
+
+        /** select number of tuples per batch **/
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tuplesize;
+
+        if (batchsize < 1) {
+            System.err.println("Page size should be larger than tuple size!");
+        }
+
+        Condition probe = getProbeCondition(this);
+        if (probe == null) {
+            System.err.println("IndexNestedJoin: the right input has no index on a join attribute");
+            return false;
+        }
+        /** find indices attributes of join conditions **/
+        leftindex = new ArrayList<>();
+        rightindex = new ArrayList<>();
+        for (Condition con : conditionList) {
+            Attribute leftattr = con.getLhs();
+            Attribute rightattr = (Attribute) con.getRhs();
+            leftindex.add(left.getSchema().indexOf(leftattr));
+            rightindex.add(right.getSchema().indexOf(rightattr));
+        }
+        probeindex = left.getSchema().indexOf(probe.getLhs());
+
+        innerscan = getInnerScan(right);
+        innerselects = new ArrayList<>();
+        for (Operator op = right; op != innerscan; op = ((Select) op).getBase()) {
+            innerselects.add((Select) op);
+        }
+        /** the conditions an index or bitmap scan answers are checked like selections **/
+        for (Condition con : innerscan.getScanConditions()) {
+            Select select = new Select(innerscan, con, OpType.SELECT);
+            select.setSchema(innerscan.getSchema());
+            innerselects.add(select);
+        }
+        Schema tableschema = innerscan.getTableSchema();
+        Schema rightschema = innerscan.getSchema();
+        innercols = null;
+        if (rightschema.getNumCols() != tableschema.getNumCols()) {
+            innercols = new int[rightschema.getNumCols()];
+            for (int i = 0; i < innercols.length; ++i) {
+                innercols[i] = tableschema.indexOf(rightschema.getAttribute(i));
+            }
+        }
+
+        index = new IndexReader(IndexWriter.fileName(innerscan.getTabName(), (Attribute) probe.getRhs()));
+        if (!index.open()) {
+            return false;
+        }
+        table = new PageReader(innerscan.getTabName() + ".tbl", tableschema);
+        if (!table.open()) {
+            return false;
+        }
+
+        /** initialize the cursors of input buffers **/
+        lcurs = 0;
+        eosl = false;
+        leftbatch = null;
+        matches = new ArrayList<>();
+        mcurs = 0;
+        return left.open();
+    }
+
+    /**
+     * from input buffers selects the tuples satisfying join condition
+     * * And returns a page of output tuples
+     **/
+    public Batch next() {
+        if (eosl) {
+            return null;
+        }
+        outbatch = new Batch(batchsize);
+        while (!outbatch.isFull()) {
+            if (mcurs < matches.size()) {
+                outbatch.add(matches.get(mcurs++));
+                continue;
+            }
+            if (leftbatch == null || lcurs >= leftbatch.size()) {
+                leftbatch = left.next();
+                lcurs = 0;
+                if (leftbatch == null || leftbatch.isEmpty()) {
+                    eosl = true;
+                    return outbatch;
+                }
+            }
+            probe(leftbatch.get(lcurs++));
+        }
+        return outbatch;
+    }
+
+    /**
+     * Looks up the tuples of the right table that join with the left tuple into matches
+     **/
+    private void probe(Tuple lefttuple) {
+        matches.clear();
+        mcurs = 0;
+        Object key = lefttuple.dataAt(probeindex);
+        long[] rids = index.search(key, true, key, true);
+        for (long rid : rids) {
+            Batch page = table.getPage((int) (rid >>> 32));
+            if (page == null) {
+                System.err.println("IndexNestedJoin: " + index.getFileName() + " does not match " + innerscan.getTabName() + ".tbl");
+                System.exit(1);
+            }
+            Tuple righttuple = innerTuple(page.get((int) rid));
+            if (righttuple != null && lefttuple.checkJoin(righttuple, leftindex, rightindex)) {
+                matches.add(lefttuple.joinWith(righttuple));
+            }
+        }
+    }
+
+    /**
+     * The tuple of the right input for a tuple of the table, null if a selection drops it
+     **/
+    private Tuple innerTuple(Tuple tabletuple) {
+        Tuple tuple = tabletuple;
+        if (innercols != null) {
+            ArrayList<Object> values = new ArrayList<>(innercols.length);
+            for (int col : innercols) {
+                values.add(tabletuple.dataAt(col));
+            }
+            tuple = new Tuple(values);
+        }
+        for (Select select : innerselects) {
+            if (!select.checkCondition(tuple)) {
+                return null;
+            }
+        }
+        return tuple;
+    }
+
+    /**
+     * Close the operator
+     */
+    public boolean close() {
+        if (index != null) {
+            index.close();
+        }
+        if (table != null) {
+            table.close();
+        }
+        matches = null;
+        releaseBuffers();
+        return true;
+    }
+}
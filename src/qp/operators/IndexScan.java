@@ -0,0 +1,167 @@
+/**
+ * Scans the tuples of a base table that satisfy a selection condition through a B+-tree index
+ **/
+
+package qp.operators;
+
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.Condition;
+import qp.utils.IndexReader;
+import qp.utils.IndexWriter;
+import qp.utils.PageReader;
+import qp.utils.Schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * IndexScan operator - looks up the rids of the tuples that satisfy an equality or range
+ * condition between an indexed attribute and a constant in the index file of the attribute,
+ * and reads only the table pages that hold them. The rids are sorted by page so that each
+ * of those pages is read once; the tuples come out in table order, like a Scan and Select.
+ */
+public class IndexScan extends Scan {
+
+    Condition con;         // Selection condition answered by the index
+    Object key;            // Constant of the condition as a key
+    int keyindex;          // Index of the attribute of the condition in the schema
+    long[] rids;           // Rids of the selected tuples, in table order
+    int ridcurs;           // Next rid to output
+    Batch tablepage;       // Page of the table file holding the tuple of the rid at ridcurs
+    int tablepageno;       // Page number of tablepage, -1 if none is read yet
+
+    /**
+     * Constructor - the schema of the operator is the whole table
+     */
+    public IndexScan(String tabname, Schema tableschema, Condition con, int type) {
+        super(tabname, type);
+        this.con = con;
+        setSchema(tableschema);
+    }
+
+    public Condition getCondition() {
+        return con;
+    }
+
+    public ArrayList<Condition> getScanConditions() {
+        ArrayList<Condition> conditions = new ArrayList<>();
+        conditions.add(con);
+        return conditions;
+    }
+
+    /**
+     * Name of the index file the condition is looked up in
+     **/
+    public String getIndexFileName() {
+        return IndexWriter.fileName(tabname, con.getLhs());
+    }
+
+    /**
+     * Whether an IndexScan can answer the condition on the table: a comparison other than
+     * * not equal between an attribute and a constant, with an up to date index on the attribute
+     **/
+    public static boolean canAnswer(String tabname, Condition con) {
+        return con.getOpType() == Condition.SELECT && con.getRhs() instanceof String
+                && con.getExprType() != Condition.NOTEQUAL && IndexReader.hasIndex(tabname, con.getLhs());
+    }
+
+    /**
+     * Looks up the rids of the selected tuples and opens the table file
+     */
+    public boolean open() {
+        int tuplesize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tuplesize;
+
+        if (batchsize < 1) {
+            System.err.println("Page size should be larger than tuple size!");
+            System.exit(1);
+        }
+
+        eos = false;
+        ridcurs = 0;
+        tablepage = null;
+        tablepageno = -1;
+
+        IndexReader index = new IndexReader(getIndexFileName());
+        if (!index.open()) {
+            System.err.println(" Error reading " + index.getFileName());
+            return false;
+        }
+        key = parseKey((String) con.getRhs(), schema.typeOf(con.getLhs()));
+        keyindex = schema.indexOf(con.getLhs());
+        int exprtype = con.getExprType();
+        boolean fromlo = exprtype == Condition.EQUAL || exprtype == Condition.GREATERTHAN || exprtype == Condition.GTOE;
+        boolean tohi = exprtype == Condition.EQUAL || exprtype == Condition.LESSTHAN || exprtype == Condition.LTOE;
+        rids = index.search(fromlo ? key : null, exprtype != Condition.GREATERTHAN,
+                tohi ? key : null, exprtype != Condition.LESSTHAN);
+        index.close();
+        Arrays.sort(rids);
+
+        reader = new PageReader(filename, schema);
+        if (!reader.open()) {
+            System.err.println(" Error reading " + filename);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The constant of a condition as a key of the given attribute type
+     **/
+    public static Object parseKey(String value, int type) {
+        if (type == Attribute.INT) {
+            return Integer.parseInt(value);
+        } else if (type == Attribute.REAL) {
+            return Float.parseFloat(value);
+        }
+        return value;
+    }
+
+    /**
+     * Get the next page of selected tuples, the tuple of each rid is checked against the condition
+     **/
+    protected Batch readNext() {
+        if (eos) {
+            close();
+            return null;
+        }
+        Batch tuples = new Batch(batchsize);
+        while (!tuples.isFull() && ridcurs < rids.length) {
+            int pageno = (int) (rids[ridcurs] >>> 32);
+            int slot = (int) rids[ridcurs];
+            if (pageno != tablepageno) {
+                tablepage = reader.getPage(pageno);
+                tablepageno = pageno;
+                if (tablepage == null) {
+                    System.err.println("IndexScan: " + getIndexFileName() + " does not match " + filename);
+                    System.exit(1);
+                }
+            }
+            if (slot < tablepage.size() && satisfies(tablepage.get(slot), keyindex, con.getExprType(), key)) {
+                tuples.add(tablepage.get(slot));
+            }
+            ridcurs++;
+        }
+        if (ridcurs == rids.length) {
+            eos = true;
+        }
+        return tuples;
+    }
+
+    /**
+     * Close the table file
+     **/
+    public boolean close() {
+        tablepage = null;
+        if (reader != null) {
+            return reader.close();
+        }
+        return true;
+    }
+
+    public Object clone() {
+        return new IndexScan(tabname, (Schema) schema.clone(), (Condition) con.clone(), optype);
+    }
+
+}
@@ -4,8 +4,14 @@
 
 package qp.operators;
 
+import qp.optimizer.BufferManager;
+import qp.utils.Attribute;
+import qp.utils.Batch;
 import qp.utils.Condition;
+import qp.utils.PageReader;
+import qp.utils.PageWriter;
 import qp.utils.Schema;
+import qp.utils.Tuple;
 
 import java.util.ArrayList;
 
@@ -17,6 +23,14 @@ public class Join extends Operator {
     int numBuff;                         // Number of buffers available
     int jointype;                        // JoinType.NestedJoin/SortMerge/HashJoin
     int nodeIndex;                       // Each join node is given a number
+    int numReserved;                     // Number of frames reserved in the buffer pool
+    ArrayList<Batch> rightPages;         // Materialized right input when it is held in memory, else null
+    int rightPageCursor;                 // Next page of rightPages to scan
+    PageReader rightReader;              // Scan of the materialized right file when it is not held in memory
+    ArrayList<RuntimeFilter> runtimeFilters = new ArrayList<>();  // Filters on the build keys of the left input
+    ArrayList<Integer> filterIndex = new ArrayList<>();           // Index in the left input of the key of each filter
+    ArrayList<Scan> filteredScans = new ArrayList<>();            // Scan of the right input each filter is pushed to
+    long buildTuples = -1;               // Estimated number of tuples of the left input, -1 if unknown
 
     public Join(Operator left, Operator right, int type) {
         super(type);
@@ -48,6 +62,201 @@ public class Join extends Operator {
         this.numBuff = num;
     }
 
+    public long getBuildTuples() {
+        return buildTuples;
+    }
+
+    /** The estimate the runtime filters are sized from, none are built without it **/
+    public void setBuildTuples(long num) {
+        this.buildTuples = num;
+    }
+
+    /**
+     * Reserves the frames of the buffer pool the join keeps its pages in while it is open
+     **/
+    void reserveBuffers(int num) {
+        releaseBuffers();
+        numReserved = BufferManager.reserve(num);
+    }
+
+    void releaseBuffers() {
+        if (numReserved > 0) {
+            BufferManager.release(numReserved);
+            numReserved = 0;
+        }
+    }
+
+    /**
+     * Number of pages of the right input a nested loop join with numBuff buffers holds in
+     * * memory: the buffers it has to spare beside a page of the left input, a page of the
+     * * right input and the output page
+     **/
+    public static long numSpareFrames(long numBuff) {
+        return Math.max(0, numBuff - 3);
+    }
+
+    /**
+     * Whether a nested loop join with numBuff buffers holds a right input of rightpages pages in memory
+     **/
+    public static boolean fitsInSpareFrames(long rightpages, long numBuff) {
+        return rightpages <= numSpareFrames(numBuff);
+    }
+
+    /**
+     * Materializes the right input for the repeated scans of a nested loop join. Its pages are
+     * * held in memory, decoded, as long as they fit in the spare frames of the join, otherwise
+     * * the right input is written to the file. Returns the number of pages held in memory,
+     * * -1 if the file cannot be written
+     **/
+    int materializeRight(String filename) {
+        Schema rightschema = right.getSchema();
+        int capacity = Math.max(1, Batch.getPageSize() / rightschema.getTupleSize());
+        long numSpare = numSpareFrames(numBuff);
+        ArrayList<Batch> pages = new ArrayList<>();
+        long numtuples = 0;
+        PageWriter out = null;
+        Batch rightpage;
+        while ((rightpage = right.next()) != null) {
+            if (out == null) {
+                numtuples += rightpage.size();
+                if ((numtuples + capacity - 1) / capacity <= numSpare) {
+                    Batch decoded = new Batch(rightpage.size());
+                    for (int i = 0; i < rightpage.size(); ++i) {
+                        decoded.add(rightpage.get(i));
+                    }
+                    pages.add(decoded);
+                    continue;
+                }
+                /** does not fit, the pages read so far go to the file first **/
+                out = new PageWriter(filename, rightschema, Batch.getPageSize());
+                if (!out.open()) {
+                    return -1;
+                }
+                for (Batch page : pages) {
+                    for (int i = 0; i < page.size(); ++i) {
+                        out.next(page.get(i));
+                    }
+                }
+                pages = null;
+            }
+            for (int i = 0; i < rightpage.size(); ++i) {
+                out.next(rightpage.get(i));
+            }
+        }
+        if (out != null) {
+            out.close();
+            rightPages = null;
+            return 0;
+        }
+        rightPages = pages;
+        return (int) ((numtuples + capacity - 1) / capacity);
+    }
+
+    /**
+     * Starts a new scan of the materialized right input, returns false if its file cannot be read
+     **/
+    boolean rescanRight(String filename) {
+        if (rightPages != null) {
+            rightPageCursor = 0;
+            return true;
+        }
+        rightReader = new PageReader(filename, right.getSchema());
+        return rightReader.open();
+    }
+
+    /**
+     * Next page of the scan of the materialized right input, null at its end
+     **/
+    Batch nextRightPage() {
+        if (rightPages != null) {
+            return rightPageCursor < rightPages.size() ? rightPages.get(rightPageCursor++) : null;
+        }
+        return rightReader.nextPage();
+    }
+
+    /**
+     * Creates a runtime filter for each equality condition whose right attribute is produced
+     * * by a scan of the right input, for joins that read the whole left input before the
+     * * right one. The values of the left input are passed to collectBuildKeys as it is read
+     **/
+    void createRuntimeFilters() {
+        /** the filters of an earlier open of the join are replaced, keeping their counts **/
+        ArrayList<RuntimeFilter> previous = new ArrayList<>(runtimeFilters);
+        removeRuntimeFilters();
+        runtimeFilters.clear();
+        filterIndex.clear();
+        filteredScans.clear();
+        if (!RuntimeFilter.isEnabled() || buildTuples < 0) {
+            return;
+        }
+        for (Condition con : conditionList) {
+            Attribute rightattr = (Attribute) con.getRhs();
+            Scan scan = findProbeScan(right, rightattr);
+            if (con.getExprType() != Condition.EQUAL || scan == null) {
+                continue;
+            }
+            String joinname = getClass().getSimpleName() + " " + con.getLhs().getTabName() + "." + con.getLhs().getColName()
+                    + "==" + rightattr.getTabName() + "." + rightattr.getColName();
+            RuntimeFilter filter = new RuntimeFilter(joinname, rightattr, buildTuples);
+            if (runtimeFilters.size() < previous.size()) {
+                filter.replace(previous.get(runtimeFilters.size()));
+            }
+            runtimeFilters.add(filter);
+            filterIndex.add(left.getSchema().indexOf(con.getLhs()));
+            filteredScans.add(scan);
+        }
+    }
+
+    void collectBuildKeys(Tuple tuple) {
+        for (int i = 0; i < runtimeFilters.size(); ++i) {
+            runtimeFilters.get(i).collect(tuple, filterIndex.get(i));
+        }
+    }
+
+    /**
+     * Builds the filters once the left input is read and pushes them down to their scans,
+     * * which have to be opened afterwards. A filter too full to remove tuples is not pushed
+     **/
+    void pushRuntimeFilters() {
+        for (int i = 0; i < runtimeFilters.size(); ++i) {
+            if (runtimeFilters.get(i).build()) {
+                filteredScans.get(i).addRuntimeFilter(runtimeFilters.get(i));
+            }
+        }
+    }
+
+    /**
+     * Takes the filters off their scans and frees their frames when the join is closed,
+     * * they are kept until the next open so that their replacements take over their counts
+     **/
+    void removeRuntimeFilters() {
+        for (int i = 0; i < runtimeFilters.size(); ++i) {
+            filteredScans.get(i).removeRuntimeFilter(runtimeFilters.get(i));
+            runtimeFilters.get(i).release();
+        }
+    }
+
+    /**
+     * The scan that produces the attribute under selections and joins, through which
+     * * only the tuples that can match the attribute of the join above are needed.
+     * * Null if there is none, or if it is the right input of an index nested join
+     * * and so probed without being scanned
+     **/
+    static Scan findProbeScan(Operator op, Attribute attr) {
+        if (op.getOpType() == OpType.SCAN) {
+            return op.getSchema().contains(attr) ? (Scan) op : null;
+        } else if (op.getOpType() == OpType.SELECT) {
+            return findProbeScan(((Select) op).getBase(), attr);
+        } else if (op.getOpType() == OpType.JOIN) {
+            Join jn = (Join) op;
+            if (jn.getLeft().getSchema().contains(attr)) {
+                return findProbeScan(jn.getLeft(), attr);
+            }
+            return jn instanceof IndexNestedJoin ? null : findProbeScan(jn.getRight(), attr);
+        }
+        return null;
+    }
+
     public int getNodeIndex() {
         return nodeIndex;
     }
@@ -28,6 +28,7 @@ public class OrderBy extends Operator {
     int order;                     // Order in which tuples should appear
     int numBuffer;                 // Number of buffers
     int batchSize;                 // Number of tuples per outbatch
+    int limit = -1;                // Number of tuples to output, -1 for all of them, see TopN
 
     public OrderBy(Operator base, int opType, int order, ArrayList<Attribute> attributeList) {
         super(opType);
@@ -45,6 +46,26 @@ public class OrderBy extends Operator {
         this.base = base;
     }
 
+    public int getOrder() {
+        return order;
+    }
+
+    public ArrayList<Attribute> getAttributeList() {
+        return attributeList;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasLimit() {
+        return limit >= 0;
+    }
+
     public int getNumBuff() {
         return this.numBuffer;
     }
@@ -91,6 +112,7 @@ public class OrderBy extends Operator {
 
         OrderBy newOb = new OrderBy(newBase, this.opType, order, newOrderByList);
 		newOb.setSchema(newSchema);
+		newOb.setLimit(this.limit);
         return newOb;
     }
 
@@ -6,6 +6,7 @@ package qp.operators;
 
 import qp.utils.Attribute;
 import qp.utils.Batch;
+import qp.utils.ColumnBatch;
 import qp.utils.Schema;
 import qp.utils.Tuple;
 
@@ -92,6 +93,11 @@ public class Project extends Operator {
             return null;
         }
 
+        /** a column batch is projected by picking its column arrays in the new order **/
+        if (inbatch instanceof ColumnBatch && ((ColumnBatch) inbatch).isVectorized()) {
+            return ((ColumnBatch) inbatch).project(attrIndex, schema);
+        }
+
         for (int i = 0; i < inbatch.size(); i++) {
             Tuple basetuple = inbatch.get(i);
             //Debug.PPrint(basetuple);
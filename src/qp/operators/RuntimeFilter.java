@@ -0,0 +1,184 @@
+/**
+ * Filter built by a join from the keys of its build input and applied by a scan of its probe input
+ **/
+
+package qp.operators;
+
+import qp.optimizer.BufferManager;
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.BloomFilter;
+import qp.utils.ColumnBatch;
+import qp.utils.Tuple;
+import qp.utils.TupleLayout;
+
+import java.util.ArrayList;
+
+/**
+ * A runtime filter adds the values of a join attribute of the build input to a Bloom filter
+ * while the join reads it. The Bloom filter is sized from the estimated number of build
+ * tuples and kept in frames reserved in the buffer pool, at most the frames that are not
+ * reserved yet. Once the build input is read, the filter is handed to the scan of the probe
+ * input that produces the other attribute of the equality condition. The scan drops the
+ * tuples whose value is certainly not among the build values, as they cannot join, before
+ * any operator above it handles them. A filter that got far more values than it was sized
+ * for lets nearly every tuple through and is not handed to the scan. The number of tuples
+ * each filter removes is reported after the query.
+ */
+public class RuntimeFilter {
+
+    static boolean enabled = true;                            // Whether joins build runtime filters
+    static ArrayList<RuntimeFilter> built = new ArrayList<>(); // Filters built while running the query
+
+    final String joinname;    // Join that built the filter and its condition
+    final Attribute attr;     // Attribute of the probe input the filter checks
+    final BloomFilter bloom;  // Filter on the build values
+    int numReserved;          // Number of frames of the buffer pool reserved for the filter
+    long numKeys;             // Number of build values added
+    RuntimeFilter replaced;   // Filter built by an earlier open of the join, null if none
+    long numChecked;          // Number of probe tuples checked
+    long numRemoved;          // Number of probe tuples removed
+
+    /**
+     * Filter for the estimated number of build tuples, in as many frames of the buffer
+     * * pool as it takes but at least one, and not more than the frames not reserved yet
+     **/
+    public RuntimeFilter(String joinname, Attribute attr, long numBuildTuples) {
+        this.joinname = joinname;
+        this.attr = attr;
+        long maxbits = (long) Math.max(1, BufferManager.getNumCacheFrames()) * Batch.getPageSize() * 8;
+        bloom = new BloomFilter(Math.min(numBuildTuples, maxbits / BloomFilter.BITS_PER_KEY));
+        long bytes = bloom.getNumBits() / 8;
+        numReserved = BufferManager.reserve((int) ((bytes + Batch.getPageSize() - 1) / Batch.getPageSize()));
+    }
+
+    /** Selects whether joins build runtime filters **/
+    public static void setEnabled(boolean flag) {
+        enabled = flag;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** The filters built while running the query, in the order they were built **/
+    public static ArrayList<RuntimeFilter> getBuiltFilters() {
+        return built;
+    }
+
+    /** Forgets the filters of the previous query, called when a query starts **/
+    public static void clearBuiltFilters() {
+        built.clear();
+    }
+
+    public Attribute getAttribute() {
+        return attr;
+    }
+
+    public long getNumChecked() {
+        return numChecked;
+    }
+
+    public long getNumRemoved() {
+        return numRemoved;
+    }
+
+    /**
+     * Adds the build value at the given index of the tuple
+     **/
+    public void collect(Tuple tuple, int index) {
+        bloom.add(tuple.hashCodeAt(index));
+        numKeys++;
+    }
+
+    /**
+     * Takes over the counts of the filter built by an earlier open of the join,
+     * * which this filter replaces in the list of built filters
+     **/
+    public void replace(RuntimeFilter filter) {
+        replaced = filter;
+        numChecked = filter.numChecked;
+        numRemoved = filter.numRemoved;
+    }
+
+    /**
+     * Adds the filter to the built filters once the build input is read. Returns false if
+     * * the filter got so many more values than it was sized for, fewer than a quarter of
+     * * its bits per value, that it would let nearly every tuple through
+     **/
+    public boolean build() {
+        if (numKeys * BloomFilter.BITS_PER_KEY > 4L * bloom.getNumBits()) {
+            return false;
+        }
+        int pos = built.indexOf(replaced);
+        if (pos >= 0) {
+            built.set(pos, this);
+        } else {
+            built.add(this);
+        }
+        replaced = null;
+        return true;
+    }
+
+    /** Gives the frames of the filter back to the buffer pool **/
+    public void release() {
+        BufferManager.release(numReserved);
+        numReserved = 0;
+    }
+
+    /**
+     * Drops the tuples of the batch whose value at the given index is not in the filter.
+     * * A column batch is narrowed through its selection vector, like in Select, other
+     * * batches are copied without the dropped tuples
+     **/
+    public Batch apply(Batch batch, int index) {
+        if (batch instanceof ColumnBatch && ((ColumnBatch) batch).isVectorized()) {
+            ColumnBatch columns = (ColumnBatch) batch;
+            int[] sel = columns.getSelection();
+            int size = columns.size();
+            byte kind = columns.getLayout().kindOf(index);
+            int num = 0;
+            if (kind == TupleLayout.INT) {
+                int[] col = columns.getIntColumn(index);
+                for (int k = 0; k < size; ++k) {
+                    int r = sel[k];
+                    sel[num] = r;
+                    num += bloom.mightContain(Integer.hashCode(col[r])) ? 1 : 0;
+                }
+            } else if (kind == TupleLayout.REAL) {
+                float[] col = columns.getFloatColumn(index);
+                for (int k = 0; k < size; ++k) {
+                    int r = sel[k];
+                    sel[num] = r;
+                    num += bloom.mightContain(Float.hashCode(col[r])) ? 1 : 0;
+                }
+            } else {
+                Object[] col = columns.getObjectColumn(index);
+                for (int k = 0; k < size; ++k) {
+                    int r = sel[k];
+                    sel[num] = r;
+                    num += bloom.mightContain(col[r].hashCode()) ? 1 : 0;
+                }
+            }
+            columns.setNumSelected(num);
+            numChecked += size;
+            numRemoved += size - num;
+            return columns;
+        }
+        Batch kept = new Batch(batch.capacity());
+        for (int i = 0; i < batch.size(); ++i) {
+            Tuple tuple = batch.get(i);
+            if (bloom.mightContain(tuple.hashCodeAt(index))) {
+                kept.add(tuple);
+            }
+        }
+        numChecked += batch.size();
+        numRemoved += batch.size() - kept.size();
+        return kept;
+    }
+
+    public String toString() {
+        return "Runtime filter of " + joinname + ": " + numRemoved + " of " + numChecked
+                + " tuples of " + attr.getTabName() + " removed";
+    }
+}
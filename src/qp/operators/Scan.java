@@ -4,7 +4,12 @@
 
 package qp.operators;
 
+import qp.optimizer.BufferManager;
 import qp.utils.Batch;
+import qp.utils.ColumnBatch;
+import qp.utils.Condition;
+import qp.utils.PageFormat;
+import qp.utils.PageReader;
 import qp.utils.Schema;
 import qp.utils.Tuple;
 
@@ -12,17 +17,24 @@ import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.ArrayList;
 
 /**
  * Scan operator - read data from a file
  */
 public class Scan extends Operator {
 
+    static final int MAX_READ_AHEAD = 4;  // Most pages read ahead of the scan
+
     String filename;       // Corresponding file name
     String tabname;        // Table name
     int batchsize;         // Number of tuples per out batch;
-    ObjectInputStream in;  // Input file being scanned
+    ObjectInputStream in;  // Input file being scanned, for tables of serialized tuples
+    PageReader reader;     // Input file being scanned, for tables in the binary page format
+    ColumnBatch page;      // Page of the table file currently decoded
+    int pagecurs;          // Cursor within the decoded page
     boolean eos;           // To indicate whether end of stream reached or not
+    ArrayList<RuntimeFilter> runtimefilters = new ArrayList<>();  // Filters pushed down by joins above the scan
 
     /**
      * Constructor - just save filename
@@ -37,6 +49,41 @@ public class Scan extends Operator {
         return tabname;
     }
 
+    /**
+     * Schema of the whole table, which the statistics file is written for
+     **/
+    public Schema getTableSchema() {
+        return schema;
+    }
+
+    /**
+     * Selection conditions the scan answers itself, none for a scan of the whole table
+     **/
+    public ArrayList<Condition> getScanConditions() {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Whether the value at the given index of the tuple compares with the key as the condition
+     * * type asks. Access paths that fetch tuples through an index file check the tuples they
+     * * fetch with it, so a table rewritten behind the index cannot give wrong tuples
+     **/
+    @SuppressWarnings("unchecked")
+    protected static boolean satisfies(Tuple tuple, int index, int exprtype, Object key) {
+        return Select.satisfies(((Comparable<Object>) tuple.dataAt(index)).compareTo(key), exprtype);
+    }
+
+    /**
+     * Adds a filter of a join above the scan, the tuples it rejects are not output
+     **/
+    public void addRuntimeFilter(RuntimeFilter filter) {
+        runtimefilters.add(filter);
+    }
+
+    public void removeRuntimeFilter(RuntimeFilter filter) {
+        runtimefilters.remove(filter);
+    }
+
     /**
      * Open file prepare a stream pointer to read input file
      */
@@ -51,6 +98,22 @@ public class Scan extends Operator {
         }
 
         eos = false;
+        in = null;
+        reader = null;
+        page = null;
+        pagecurs = 0;
+
+        /** tables written before the page format are still read as serialized tuples **/
+        if (PageFormat.isPageFile(filename)) {
+            reader = new PageReader(filename, schema);
+            if (!reader.open()) {
+                System.err.println(" Error reading " + filename);
+                return false;
+            }
+            reader.setColumnar(true);
+            reader.setReadAhead(readAheadPages());
+            return true;
+        }
         try {
             in = new ObjectInputStream(new FileInputStream(filename));
         } catch (Exception e) {
@@ -61,14 +124,44 @@ public class Scan extends Operator {
     }
 
     /**
-     * Next operator - get a tuple from the file
+     * Number of pages read ahead on a background thread, taken from the frames
+     * * of the buffer pool that no operator has reserved. At least one page is
+     * * read ahead so that decoding a page overlaps with reading the next one
+     **/
+    static int readAheadPages() {
+        return Math.min(MAX_READ_AHEAD, Math.max(1, BufferManager.getNumCacheFrames()));
+    }
+
+    /**
+     * Next operator - get the next batch of tuples that pass the runtime filters. A batch
+     * * the filters empty is only output at the end of the stream, where it marks the end
      **/
     public Batch next() {
+        Batch tuples = readNext();
+        while (tuples != null && !runtimefilters.isEmpty()) {
+            for (RuntimeFilter filter : runtimefilters) {
+                tuples = filter.apply(tuples, schema.indexOf(filter.getAttribute()));
+            }
+            if (!tuples.isEmpty() || eos) {
+                break;
+            }
+            tuples = readNext();
+        }
+        return tuples;
+    }
+
+    /**
+     * Get the next batch of tuples from the file, before the runtime filters
+     **/
+    protected Batch readNext() {
         /** The file reached its end and no more to read **/
         if (eos) {
             close();
             return null;
         }
+        if (reader != null) {
+            return nextFromPages();
+        }
         Batch tuples = new Batch(batchsize);
         while (!tuples.isFull()) {
             try {
@@ -91,11 +184,36 @@ public class Scan extends Operator {
         return tuples;
     }
 
+    /**
+     * Fills a column batch from the pages of the table file, decoding
+     * * one page at a time and copying its rows column by column
+     **/
+    private Batch nextFromPages() {
+        ColumnBatch tuples = new ColumnBatch(schema, batchsize);
+        while (!tuples.isFull()) {
+            if (page == null || pagecurs == page.size()) {
+                page = (ColumnBatch) reader.nextPage();
+                pagecurs = 0;
+                if (page == null) {
+                    eos = true;
+                    return tuples;
+                }
+                continue;
+            }
+            pagecurs += tuples.appendRows(page, pagecurs, batchsize - tuples.size());
+        }
+        return tuples;
+    }
+
     /**
      * Close the file.. This routine is called when the end of filed
      * * is already reached
      **/
     public boolean close() {
+        if (reader != null) {
+            page = null;
+            return reader.close();
+        }
         try {
             in.close();
         } catch (IOException e) {
@@ -89,6 +89,16 @@ public class Select extends Operator {
                     eos = true;
                     return outbatch;
                 }
+                /** A column batch is filtered as a whole by narrowing its
+                 ** selection vector, and passed on without copying tuples
+                 **/
+                if (outbatch.isEmpty() && inbatch instanceof ColumnBatch && ((ColumnBatch) inbatch).isVectorized()) {
+                    narrowSelection((ColumnBatch) inbatch);
+                    if (inbatch.isEmpty()) {
+                        continue;
+                    }
+                    return inbatch;
+                }
             }
 
             /** Continue this for loop until this page is fully observed
@@ -123,6 +133,122 @@ public class Select extends Operator {
         return true;
     }
 
+    /**
+     * Keeps only the rows of the column batch that satisfy the condition,
+     * * with one tight loop over the column array per kind of comparison
+     **/
+    protected void narrowSelection(ColumnBatch batch) {
+        int index = schema.indexOf(con.getLhs());
+        int exprtype = con.getExprType();
+        byte kind = batch.getLayout().kindOf(index);
+        int[] sel = batch.getSelection();
+        int size = batch.size();
+
+        if (con.getRhs() instanceof Attribute) {
+            int rhsindex = schema.indexOf((Attribute) con.getRhs());
+            batch.setNumSelected(selectColumns(batch, kind, index, rhsindex, exprtype, sel, size));
+        } else if (kind == TupleLayout.INT) {
+            int checkVal = Integer.parseInt((String) con.getRhs());
+            batch.setNumSelected(selectInts(batch.getIntColumn(index), exprtype, checkVal, sel, size));
+        } else if (kind == TupleLayout.REAL) {
+            float checkVal = Float.parseFloat((String) con.getRhs());
+            batch.setNumSelected(selectFloats(batch.getFloatColumn(index), exprtype, checkVal, sel, size));
+        } else {
+            Object[] col = batch.getObjectColumn(index);
+            String checkVal = (String) con.getRhs();
+            int num = 0;
+            for (int k = 0; k < size; ++k) {
+                int r = sel[k];
+                sel[num] = r;
+                num += satisfies(((String) col[r]).compareTo(checkVal), exprtype) ? 1 : 0;
+            }
+            batch.setNumSelected(num);
+        }
+    }
+
+    /**
+     * The selection loops write every row index and only advance past the
+     * * ones that pass, so the loops have no data dependent branch
+     **/
+    static int selectInts(int[] col, int exprtype, int checkVal, int[] sel, int size) {
+        int num = 0;
+        if (exprtype == Condition.LESSTHAN) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] < checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.GREATERTHAN) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] > checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.LTOE) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] <= checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.GTOE) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] >= checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.EQUAL) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] == checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.NOTEQUAL) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] != checkVal ? 1 : 0; }
+        } else {
+            System.out.println("Select: Incorrect condition operator");
+        }
+        return num;
+    }
+
+    static int selectFloats(float[] col, int exprtype, float checkVal, int[] sel, int size) {
+        int num = 0;
+        if (exprtype == Condition.LESSTHAN) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] < checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.GREATERTHAN) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] > checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.LTOE) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] <= checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.GTOE) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] >= checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.EQUAL) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] == checkVal ? 1 : 0; }
+        } else if (exprtype == Condition.NOTEQUAL) {
+            for (int k = 0; k < size; ++k) { int r = sel[k]; sel[num] = r; num += col[r] != checkVal ? 1 : 0; }
+        } else {
+            System.out.println("Select: Incorrect condition operator");
+        }
+        return num;
+    }
+
+    /** Condition comparing two columns of the batch **/
+    static int selectColumns(ColumnBatch batch, byte kind, int index, int rhsindex, int exprtype, int[] sel, int size) {
+        int num = 0;
+        for (int k = 0; k < size; ++k) {
+            int r = sel[k];
+            int flag;
+            if (kind == TupleLayout.INT) {
+                flag = Integer.compare(batch.getIntColumn(index)[r], batch.getIntColumn(rhsindex)[r]);
+            } else if (kind == TupleLayout.REAL) {
+                float lhs = batch.getFloatColumn(index)[r], rhs = batch.getFloatColumn(rhsindex)[r];
+                flag = lhs < rhs ? -1 : (lhs > rhs ? 1 : 0);
+            } else {
+                flag = ((String) batch.getObjectColumn(index)[r]).compareTo((String) batch.getObjectColumn(rhsindex)[r]);
+            }
+            sel[num] = r;
+            num += satisfies(flag, exprtype) ? 1 : 0;
+        }
+        return num;
+    }
+
+    /** Whether the result of a comparison satisfies the condition operator **/
+    static boolean satisfies(int flag, int exprtype) {
+        if (exprtype == Condition.LESSTHAN) {
+            return flag < 0;
+        } else if (exprtype == Condition.GREATERTHAN) {
+            return flag > 0;
+        } else if (exprtype == Condition.LTOE) {
+            return flag <= 0;
+        } else if (exprtype == Condition.GTOE) {
+            return flag >= 0;
+        } else if (exprtype == Condition.EQUAL) {
+            return flag == 0;
+        } else if (exprtype == Condition.NOTEQUAL) {
+            return flag != 0;
+        }
+        System.out.println("Select: Incorrect condition operator");
+        return false;
+    }
+
     /**
      * To check whether the selection condition is satisfied for
      * * the present tuple
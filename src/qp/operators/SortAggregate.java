@@ -0,0 +1,322 @@
+/**
+ * Sort based grouping and aggregation
+ **/
+
+package qp.operators;
+
+import qp.optimizer.BufferManager;
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.Schema;
+import qp.utils.Tuple;
+
+import java.util.ArrayList;
+
+/**
+ * SortAggregate sorts its input on the groupby attributes with an ExternalSort that
+ * aggregates while it sorts. Every input tuple is turned into a partial aggregate of its
+ * own: the groupby values followed by the state of each output column, a COUNT, a SUM,
+ * a MIN or MAX, or a sum and a count for AVG. The sort combines partial aggregates with
+ * equal groupby values whenever they meet, so a run holds at most one tuple per group and
+ * few groups need few runs and merge passes. The groups come out in groupby order, or in
+ * the output order of an orderby on groupby attributes, which then need not sort them.
+ *
+ * COUNT and SUM of INT are accumulated in a long and the other sums in a double, like in
+ * HashAggregate, so both give the same results. A partial aggregate keeps such a 64 bit
+ * value, or the bits of the double, as two INT columns.
+ */
+public class SortAggregate extends GroupBy {
+
+    Schema baseschema;              // Schema of the input tuples
+    Schema partialschema;           // Schema of the partial aggregates sorted by the ExternalSort
+    int numgroupcols;               // Number of groupby attributes at the start of a partial aggregate
+    int[] outindex;                 // Index in the input of the attribute of each output column
+    int[] aggtypes;                 // Aggregate of each output column, Attribute.NONE for a plain attribute
+    int[] statecol;                 // Column of the state of each output column in a partial aggregate
+    boolean[] isint;                // Whether the attribute of each output column is an INT
+    ExternalSort sort;              // Sorts and combines the partial aggregates
+    Batch inbatch;                  // Page of groups read from the sort
+    int incurs;                     // Cursor for the page of groups
+    boolean eos;                    // Whether all groups have been output
+    boolean anygroup;               // Whether a group has been output
+
+    public SortAggregate(GroupBy groupby) {
+        super(groupby.getBase(), groupby.getGroupByList(), groupby.getOutputList(), groupby.getOpType());
+        schema = groupby.getSchema();
+        setSortBased(true);
+        setOutputOrder(groupby.getOutputOrder(), groupby.isOutputDesc());
+    }
+
+    @Override
+    public boolean open() {
+        int tupleSize = schema.getTupleSize();
+        batchsize = Batch.getPageSize() / tupleSize;
+        if (batchsize < 1) {
+            System.err.println("Page size should be larger than tuple size!");
+        }
+        if (!base.open()) return false;
+
+        baseschema = base.getSchema();
+        ArrayList<Attribute> sortlist = new ArrayList<>();
+        ArrayList<Attribute> partialcols = new ArrayList<>();
+        if (groupbylist != null) {
+            for (Attribute attr : groupbylist) {
+                Attribute col = baseschema.getAttribute(baseschema.indexOf(attr));
+                partialcols.add(stateAttribute(col, col.getType(), col.getAttrSize()));
+            }
+        }
+        for (Attribute attr : getSortList()) {
+            sortlist.add(baseschema.getAttribute(baseschema.indexOf(attr)));
+        }
+        numgroupcols = partialcols.size();
+
+        outindex = new int[outputlist.size()];
+        aggtypes = new int[outputlist.size()];
+        statecol = new int[outputlist.size()];
+        isint = new boolean[outputlist.size()];
+        for (int i = 0; i < outputlist.size(); ++i) {
+            Attribute attr = outputlist.get(i);
+            outindex[i] = baseschema.indexOf(attr.getBaseAttribute());
+            aggtypes[i] = attr.getAggType();
+            Attribute col = baseschema.getAttribute(outindex[i]);
+            int type = col.getType();
+            isint[i] = type == Attribute.INT;
+            if (type == Attribute.STRING && (aggtypes[i] == Attribute.SUM || aggtypes[i] == Attribute.AVG)) {
+                System.err.println("SortAggregate: " + attr + " is not defined on a STRING attribute");
+                System.exit(1);
+            }
+            statecol[i] = partialcols.size();
+            if (aggtypes[i] == Attribute.COUNT || aggtypes[i] == Attribute.SUM || aggtypes[i] == Attribute.AVG) {
+                partialcols.add(stateAttribute(col, Attribute.INT, 4));
+                partialcols.add(stateAttribute(col, Attribute.INT, 4));
+            } else {
+                partialcols.add(stateAttribute(col, type, col.getAttrSize()));
+            }
+            if (aggtypes[i] == Attribute.AVG) {
+                partialcols.add(stateAttribute(col, Attribute.INT, 4));
+                partialcols.add(stateAttribute(col, Attribute.INT, 4));
+            }
+        }
+        partialschema = new Schema(partialcols);
+        int partialsize = 0;
+        for (Attribute col : partialcols) {
+            partialsize += col.getAttrSize();
+        }
+        partialschema.setTupleSize(partialsize);
+
+        sort = new ExternalSort(new PartialAggregates(), sortlist, BufferManager.getNumBuffer(), isOutputDesc());
+        sort.setCombiner(this::combine);
+        inbatch = null;
+        incurs = 0;
+        eos = false;
+        anygroup = false;
+        return sort.open();
+    }
+
+    /**
+     * A column of the partial aggregates, named after the input attribute it is computed from
+     **/
+    private Attribute stateAttribute(Attribute col, int type, int size) {
+        Attribute state = (Attribute) col.getBaseAttribute().clone();
+        state.setType(type);
+        state.setAttrSize(size);
+        return state;
+    }
+
+    /**
+     * Returns the next page of aggregated groups
+     **/
+    @Override
+    public Batch next() {
+        if (eos) {
+            close();
+            return null;
+        }
+        Batch outbatch = new Batch(batchsize);
+        while (!outbatch.isFull()) {
+            if (inbatch == null || incurs >= inbatch.size()) {
+                inbatch = sort.next();
+                incurs = 0;
+                if (inbatch == null || inbatch.isEmpty()) {
+                    eos = true;
+                    if (!anygroup && (groupbylist == null || groupbylist.isEmpty())) {
+                        /** an empty input still forms the single group of a query without GROUPBY **/
+                        outbatch.add(emptyGroupTuple());
+                    }
+                    break;
+                }
+            }
+            outbatch.add(outputTuple(inbatch.get(incurs++)));
+            anygroup = true;
+        }
+        return outbatch;
+    }
+
+    /**
+     * The partial aggregate of a single input tuple
+     **/
+    private Tuple partialOf(Tuple tuple) {
+        ArrayList<Object> values = new ArrayList<>(partialschema.getNumCols());
+        if (groupbylist != null) {
+            for (Attribute attr : groupbylist) {
+                values.add(tuple.dataAt(baseschema.indexOf(attr)));
+            }
+        }
+        for (int i = 0; i < aggtypes.length; ++i) {
+            int index = outindex[i];
+            switch (aggtypes[i]) {
+                case Attribute.COUNT:
+                    addLong(values, 1);
+                    break;
+                case Attribute.SUM:
+                    if (isint[i]) {
+                        addLong(values, tuple.getInt(index));
+                    } else {
+                        addDouble(values, tuple.getFloat(index));
+                    }
+                    break;
+                case Attribute.AVG:
+                    addDouble(values, isint[i] ? tuple.getInt(index) : tuple.getFloat(index));
+                    addLong(values, 1);
+                    break;
+                default:
+                    values.add(tuple.dataAt(index));
+            }
+        }
+        return new Tuple(values);
+    }
+
+    /**
+     * Combines the partial aggregates of two parts of the same group
+     **/
+    private Tuple combine(Tuple left, Tuple right) {
+        ArrayList<Object> values = new ArrayList<>(partialschema.getNumCols());
+        for (int i = 0; i < numgroupcols; ++i) {
+            values.add(left.dataAt(i));
+        }
+        for (int i = 0; i < aggtypes.length; ++i) {
+            int col = statecol[i];
+            switch (aggtypes[i]) {
+                case Attribute.COUNT:
+                    addLong(values, getLong(left, col) + getLong(right, col));
+                    break;
+                case Attribute.SUM:
+                    if (isint[i]) {
+                        addLong(values, getLong(left, col) + getLong(right, col));
+                    } else {
+                        addDouble(values, getDouble(left, col) + getDouble(right, col));
+                    }
+                    break;
+                case Attribute.AVG:
+                    addDouble(values, getDouble(left, col) + getDouble(right, col));
+                    addLong(values, getLong(left, col + 2) + getLong(right, col + 2));
+                    break;
+                case Attribute.MAX:
+                case Attribute.MIN:
+                    int result = Tuple.compareTuples(left, right, col);
+                    boolean takeright = aggtypes[i] == Attribute.MAX ? result < 0 : result > 0;
+                    values.add((takeright ? right : left).dataAt(col));
+                    break;
+                default:
+                    values.add(left.dataAt(col));
+            }
+        }
+        return new Tuple(values);
+    }
+
+    /**
+     * The output tuple of a group from its partial aggregate, with the types given by Attribute.getProjectedType
+     **/
+    private Tuple outputTuple(Tuple partial) {
+        ArrayList<Object> values = new ArrayList<>(aggtypes.length);
+        for (int i = 0; i < aggtypes.length; ++i) {
+            int col = statecol[i];
+            switch (aggtypes[i]) {
+                case Attribute.COUNT:
+                    values.add(intValue(i, getLong(partial, col)));
+                    break;
+                case Attribute.SUM:
+                    if (isint[i]) {
+                        values.add(intValue(i, getLong(partial, col)));
+                    } else {
+                        values.add((float) getDouble(partial, col));
+                    }
+                    break;
+                case Attribute.AVG:
+                    values.add((float) (getDouble(partial, col) / getLong(partial, col + 2)));
+                    break;
+                default:
+                    values.add(partial.dataAt(col));
+            }
+        }
+        return new Tuple(values);
+    }
+
+    /**
+     * Appends a 64 bit accumulator as two INT columns, the high half first
+     **/
+    private static void addLong(ArrayList<Object> values, long value) {
+        values.add((int) (value >>> 32));
+        values.add((int) value);
+    }
+
+    private static long getLong(Tuple tuple, int col) {
+        return ((long) tuple.getInt(col) << 32) | (tuple.getInt(col + 1) & 0xFFFFFFFFL);
+    }
+
+    private static void addDouble(ArrayList<Object> values, double value) {
+        addLong(values, Double.doubleToRawLongBits(value));
+    }
+
+    private static double getDouble(Tuple tuple, int col) {
+        return Double.longBitsToDouble(getLong(tuple, col));
+    }
+
+    @Override
+    public boolean close() {
+        if (sort != null) {
+            sort.close();
+            sort = null;
+        }
+        return true;
+    }
+
+    @Override
+    public Object clone() {
+        return new SortAggregate((GroupBy) super.clone());
+    }
+
+    /**
+     * The input of the sort, each input tuple as its partial aggregate
+     **/
+    class PartialAggregates extends Operator {
+
+        PartialAggregates() {
+            super(OpType.PROJECT);
+            schema = partialschema;
+        }
+
+        @Override
+        public boolean open() {
+            return true;
+        }
+
+        @Override
+        public Batch next() {
+            Batch batch = base.next();
+            if (batch == null) {
+                return null;
+            }
+            Batch partials = new Batch(Math.max(batch.size(), 1));
+            for (int i = 0; i < batch.size(); ++i) {
+                partials.add(partialOf(batch.get(i)));
+            }
+            return partials;
+        }
+
+        @Override
+        public boolean close() {
+            return base.close();
+        }
+    }
+}
@@ -60,9 +60,20 @@ public class SortMergeJoin extends Join {
 
         leftSorted = new ExternalSort(left, leftAttrs, numBuff);
         rightSorted = new ExternalSort(right, rightAttrs, numBuff);
+        // both final merges are read while joining, they share the buffers other than the output buffer
+        int leftFanIn = Math.max(1, (numBuff - 1) / 2);
+        leftSorted.setFinalMergeFanIn(leftFanIn);
+        rightSorted.setFinalMergeFanIn(Math.max(1, numBuff - 1 - leftFanIn));
+
+        // the left input is sorted first, its keys filter the right input before its runs are generated
+        createRuntimeFilters();
+        if (!runtimeFilters.isEmpty()) {
+            leftSorted.setInputListener(this::collectBuildKeys);
+        }
 
         // open left and right sorted tables
         leftSorted.open();
+        pushRuntimeFilters();
         rightSorted.open();
 
         // initialize values
@@ -88,8 +99,9 @@ public class SortMergeJoin extends Join {
             return null;
         }
 
-        // 1. if no batch read yet, read one batch in from both sides
-        if (leftBatch == null) {
+        // 1. if no tuple read yet, read one batch in from both sides. The batches become null
+        // again at the end of the inputs, while the last right partition may still be joined
+        if (leftTuple == null) {
             leftBatch = leftSorted.next();
             if (leftBatch == null) {
                 eosl = true;
@@ -103,7 +115,7 @@ public class SortMergeJoin extends Join {
             }
         }
 
-        if (rightBatch == null) {
+        if (rightTuple == null) {
             rightBatch = rightSorted.next();
             if (rightBatch == null) {
                 eosr = true;
@@ -236,6 +248,7 @@ public class SortMergeJoin extends Join {
     public boolean close() {
         leftSorted.close();
         rightSorted.close();
+        removeRuntimeFilters();
         return true;
     }
 
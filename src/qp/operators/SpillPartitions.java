@@ -0,0 +1,172 @@
+/**
+ * Input of a hash based operator that hashes the tuples it cannot hold into partitions on disk
+ **/
+
+package qp.operators;
+
+import qp.utils.Batch;
+import qp.utils.Schema;
+import qp.utils.Tuple;
+import qp.utils.TupleReader;
+import qp.utils.TupleWriter;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * The input of HashDistinct and HashAggregate: first the tuples of the base operator, then
+ * the tuples of each partition written while reading an earlier input. Once the hash table
+ * of the operator is full, the tuples it cannot take are spilled, hashed on the key
+ * attributes into one partition file per output buffer. When the current input ends, its
+ * non-empty partitions are queued and read one after the other, and spilled again with a
+ * different hash when they do not fit either.
+ */
+public class SpillPartitions {
+
+    final Operator base;            // Operator the tuples are first read from
+    final Schema schema;            // Schema of the tuples
+    final int batchsize;            // Number of tuples per page of the partitions
+    final int numPartitions;        // Number of partitions the overflow is hashed into
+    final ArrayList<Integer> keyindex;  // Indices of the attributes the tuples are hashed on
+    final String fileprefix;        // Prefix of the files the partitions are written to
+    final String opname;            // Name of the operator, for error messages
+    int numfiles;                   // Number of partition files created
+
+    Batch inbatch;                  // Buffer page for input
+    int incurs;                     // Cursor for the input page
+    boolean baseeos;                // Whether the base has no more tuples
+    TupleReader partreader;         // Reads the current partition, null while reading the base
+    int depth;                      // Number of times the tuples of the current input have been partitioned
+    TupleWriter[] partitions;       // Overflow partitions of the current input, null until a tuple is spilled
+    ArrayDeque<String> pending = new ArrayDeque<>();          // Partition files still to be read
+    ArrayDeque<Integer> pendingdepth = new ArrayDeque<>();    // Depth of each pending partition
+
+    public SpillPartitions(Operator base, Schema schema, int batchsize, int numPartitions,
+                           ArrayList<Integer> keyindex, String fileprefix, String opname) {
+        this.base = base;
+        this.schema = schema;
+        this.batchsize = batchsize;
+        this.numPartitions = numPartitions;
+        this.keyindex = keyindex;
+        this.fileprefix = fileprefix;
+        this.opname = opname;
+    }
+
+    /**
+     * Number of partitions the overflow is hashed into with the given number of buffers,
+     * * the rest of the buffers other than the input and output buffer hold the hash table
+     **/
+    public static int numPartitions(int numBuff) {
+        return Math.max(2, (int) Math.ceil(Math.sqrt(numBuff - 2)));
+    }
+
+    /**
+     * Next tuple of the current input, null at its end
+     **/
+    public Tuple nextInput() {
+        if (partreader != null) {
+            return partreader.next();
+        }
+        while (!baseeos && (inbatch == null || incurs >= inbatch.size())) {
+            inbatch = base.next();
+            incurs = 0;
+            if (inbatch == null || inbatch.isEmpty()) {
+                baseeos = true;
+            }
+        }
+        return baseeos ? null : inbatch.get(incurs++);
+    }
+
+    /**
+     * Writes a tuple the hash table cannot hold to its partition
+     **/
+    public void spill(Tuple tuple) {
+        if (partitions == null) {
+            partitions = new TupleWriter[numPartitions];
+            for (int i = 0; i < numPartitions; ++i) {
+                String filename = fileprefix + "-" + (numfiles++);
+                partitions[i] = new TupleWriter(filename, schema, batchsize);
+                if (!partitions[i].open()) {
+                    System.err.println(opname + ": Error in writing temporary file");
+                    System.exit(1);
+                }
+            }
+        }
+        partitions[partitionOf(tuple)].next(tuple);
+    }
+
+    /**
+     * Closes the current input once it is read, and queues its non-empty partitions
+     **/
+    public void finishInput() {
+        if (partreader != null) {
+            partreader.close();
+            new File(partreader.getFileName()).delete();
+            partreader = null;
+        }
+        if (partitions != null) {
+            for (TupleWriter writer : partitions) {
+                writer.close();
+                if (writer.getNumTuple() > 0) {
+                    pending.add(writer.getFileName());
+                    pendingdepth.add(depth + 1);
+                } else {
+                    new File(writer.getFileName()).delete();
+                }
+            }
+            partitions = null;
+        }
+    }
+
+    /**
+     * Makes the next pending partition the current input, returns false when there is none left
+     **/
+    public boolean nextPartition() {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        depth = pendingdepth.poll();
+        partreader = new TupleReader(pending.poll(), schema, batchsize);
+        if (!partreader.open()) {
+            System.err.println(opname + ": Error in reading temporary file");
+            System.exit(1);
+        }
+        return true;
+    }
+
+    /**
+     * Partitioning hash function, it changes with the depth so that
+     * * the keys of one partition spread when it is partitioned again
+     **/
+    private int partitionOf(Tuple tuple) {
+        int h = 17 + depth;
+        for (int i : keyindex) {
+            h = 31 * h + tuple.hashCodeAt(i);
+        }
+        h *= 0x85EBCA6B + 2 * depth;
+        return Math.floorMod(h ^ (h >>> 13), numPartitions);
+    }
+
+    /**
+     * Closes and deletes all the partition files, read or not
+     **/
+    public void close() {
+        if (partreader != null) {
+            partreader.close();
+            new File(partreader.getFileName()).delete();
+            partreader = null;
+        }
+        if (partitions != null) {
+            for (TupleWriter writer : partitions) {
+                writer.close();
+                pending.add(writer.getFileName());
+            }
+            partitions = null;
+        }
+        while (!pending.isEmpty()) {
+            new File(pending.poll()).delete();
+        }
+        pendingdepth.clear();
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * OrderBy with a limit on the number of output tuples
+ **/
+
+package qp.operators;
+
+import qp.optimizer.BufferManager;
+import qp.utils.Attribute;
+import qp.utils.Batch;
+import qp.utils.Tuple;
+import qp.utils.TupleComparator;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * TopN outputs the first limit tuples of its input in the order of the orderby attributes.
+ * When that many tuples fit in the buffers they are kept in a bounded heap with the last of
+ * them on top: each input tuple that comes before the top replaces it, the others are
+ * dropped straight away. Otherwise the input goes through an ExternalSort that cuts every
+ * run to limit tuples. Tuples with equal keys come out in input order, like a full sort.
+ */
+public class TopN extends OrderBy {
+
+    int numReserved;                // Number of frames reserved in the buffer pool
+    TupleComparator comparator;     // Order of the output tuples
+    ArrayList<Tuple> top;           // First limit tuples in order when they fit in the buffers, else null
+    int cursor;                     // Next tuple of top to output
+    boolean eos;                    // Whether all tuples have been output
+
+    public TopN(OrderBy orderby) {
+        super(orderby.getBase(), orderby.getOpType(), orderby.getOrder(), orderby.getAttributeList());
+        schema = orderby.getSchema();
+        setLimit(orderby.getLimit());
+    }
+
+    /**
+     * Whether the first limit tuples fit in the given number of buffers, one of which reads the input
+     **/
+    public static boolean fitsInMemory(long limit, int numBuff, int tuplesPerPage) {
+        return limit <= (long) Math.max(1, numBuff - 1) * tuplesPerPage;
+    }
+
+    @Override
+    public boolean open() {
+        int tupleSize = schema.getTupleSize();
+        batchSize = Batch.getPageSize() / tupleSize;
+        if (!base.open()) return false;
+
+        eos = false;
+        cursor = 0;
+        top = null;
+        sortOp = null;
+        boolean isDesc = order == OrderByType.DESC;
+        numBuffer = BufferManager.getNumBuffer();
+        if (!fitsInMemory(limit, numBuffer, batchSize)) {
+            sortOp = new ExternalSort(base, attributeList, numBuffer, isDesc);
+            sortOp.setLimit(limit);
+            return sortOp.open();
+        }
+
+        ArrayList<Integer> indices = new ArrayList<>();
+        for (Attribute attr : attributeList) {
+            indices.add(schema.indexOf(attr));
+        }
+        comparator = new TupleComparator(schema, indices, isDesc);
+        numReserved = BufferManager.reserve(Math.max(1, (limit + batchSize - 1) / batchSize) + 1);
+        top = selectTop();
+        return true;
+    }
+
+    /**
+     * Reads the whole input through the bounded heap
+     * @return the first limit tuples in order
+     */
+    private ArrayList<Tuple> selectTop() {
+        /** last tuple on top: greatest key, and the latest of the tuples with that key **/
+        PriorityQueue<Entry> heap = new PriorityQueue<>(Math.max(1, limit), (a, b) -> {
+            int result = comparator.compare(b.key, b.tuple, a.key, a.tuple);
+            return result != 0 ? result : Long.compare(b.seq, a.seq);
+        });
+        long seq = 0;
+        for (Batch batch = base.next(); batch != null && limit > 0; batch = base.next()) {
+            for (int i = 0; i < batch.size(); ++i) {
+                Tuple tuple = batch.get(i);
+                long key = comparator.normalizedKey(tuple);
+                if (heap.size() < limit) {
+                    heap.add(new Entry(tuple, key, seq++));
+                } else if (comparator.compare(key, tuple, heap.peek().key, heap.peek().tuple) < 0) {
+                    heap.poll();
+                    heap.add(new Entry(tuple, key, seq++));
+                } else {
+                    seq++;
+                }
+            }
+        }
+        Tuple[] sorted = new Tuple[heap.size()];
+        for (int i = sorted.length - 1; i >= 0; --i) {
+            sorted[i] = heap.poll().tuple;
+        }
+        ArrayList<Tuple> result = new ArrayList<>(sorted.length);
+        for (Tuple tuple : sorted) {
+            result.add(tuple);
+        }
+        return result;
+    }
+
+    @Override
+    public Batch next() {
+        if (sortOp != null) {
+            return sortOp.next();
+        }
+        if (eos || top == null) {
+            close();
+            return null;
+        }
+        Batch outbatch = new Batch(batchSize);
+        while (!outbatch.isFull() && cursor < top.size()) {
+            outbatch.add(top.get(cursor++));
+        }
+        if (cursor == top.size()) {
+            eos = true;
+        }
+        return outbatch;
+    }
+
+    @Override
+    public boolean close() {
+        base.close();
+        if (sortOp != null) {
+            sortOp.close();
+        }
+        top = null;
+        BufferManager.release(numReserved);
+        numReserved = 0;
+        return true;
+    }
+
+    @Override
+    public Object clone() {
+        return new TopN((OrderBy) super.clone());
+    }
+
+    /**
+     * A tuple in the heap with its normalized key and its position in the input
+     **/
+    static class Entry {
+        final Tuple tuple;
+        final long key;
+        final long seq;
+
+        Entry(Tuple tuple, long key, long seq) {
+            this.tuple = tuple;
+            this.key = key;
+            this.seq = seq;
+        }
+    }
+}
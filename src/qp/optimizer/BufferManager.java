@@ -1,9 +1,16 @@
 /**
  * simple buffer manager that distributes the buffers equally among all the join operators
+ * and caches the pages of the page files in the buffers that are not reserved by an operator
  **/
 
 package qp.optimizer;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
 public class BufferManager {
 
     static int numBuffer;
@@ -11,6 +18,13 @@ public class BufferManager {
 
     static int buffPerJoin;
 
+    static ArrayList<Frame> frames = new ArrayList<>();        // Frames of the buffer pool holding a page
+    static HashMap<String, Frame> pageTable = new HashMap<>(); // (file, page number) -> frame holding the page
+    static int clockHand = 0;       // Next frame looked at by the CLOCK replacement
+    static int numReserved = 0;     // Number of frames reserved by the operators
+    static long numHits = 0;        // Number of pins served from the buffer pool
+    static long numMisses = 0;      // Number of pins that had to read the page from the file
+
     public BufferManager(int numBuffer, int numJoin) {
         this.numBuffer = numBuffer;
         this.numJoin = numJoin;
@@ -23,14 +37,194 @@ public class BufferManager {
         } else {
             buffPerJoin = numBuffer / numJoin;
         }
+        resetPool();
     }
 
     public static int getNumBuffer() {
         return numBuffer;
     }
-    
+
     public static int getBuffersPerJoin() {
         return buffPerJoin;
     }
 
+    /**
+     * A frame of the buffer pool
+     **/
+    static class Frame {
+        String filename;    // File of the page held, null if the frame is free
+        int pageno;         // Page number of the page held
+        ByteBuffer data;    // Contents of the page
+        int pinCount;       // Number of readers currently using the page
+        boolean referenced; // Reference bit of the CLOCK replacement
+    }
+
+    /** Empties the buffer pool and resets the reservations and the counters **/
+    public static synchronized void resetPool() {
+        frames = new ArrayList<>();
+        pageTable = new HashMap<>();
+        clockHand = 0;
+        numReserved = 0;
+        numHits = 0;
+        numMisses = 0;
+    }
+
+    public static synchronized long getNumHits() {
+        return numHits;
+    }
+
+    public static synchronized long getNumMisses() {
+        return numMisses;
+    }
+
+    public static synchronized int getNumReserved() {
+        return numReserved;
+    }
+
+    /** Number of frames that can hold cached pages, the rest are reserved by the operators **/
+    public static synchronized int getNumCacheFrames() {
+        return Math.max(0, numBuffer - numReserved);
+    }
+
+    /**
+     * Reserves frames of the pool for the pages an operator keeps in memory,
+     * * the reserved frames no longer cache pages. Returns the number of frames reserved
+     **/
+    public static synchronized int reserve(int num) {
+        if (num <= 0) return 0;
+        numReserved += num;
+        shrinkPool();
+        return num;
+    }
+
+    /** Gives frames reserved by an operator back to the pool **/
+    public static synchronized void release(int num) {
+        numReserved = Math.max(0, numReserved - num);
+    }
+
+    /**
+     * Pins the page of the file and returns its contents. The page is read from the
+     * * file at the given offset only if it is not in the buffer pool. Every pin
+     * * has to be followed by an unpin of the same page once the caller is done with it
+     **/
+    public static synchronized ByteBuffer pin(String filename, int pageno, FileChannel in, long offset, int pagesize) throws IOException {
+        Frame frame = pageTable.get(pageKey(filename, pageno));
+        if (frame != null && frame.data.capacity() == pagesize) {
+            numHits++;
+            frame.pinCount++;
+            frame.referenced = true;
+            return frame.data.duplicate();
+        }
+        numMisses++;
+        if (frame != null) {
+            dropPage(frame);
+        }
+
+        frame = findFrame();
+        ByteBuffer data;
+        if (frame == null || frame.data == null || frame.data.capacity() != pagesize) {
+            data = ByteBuffer.allocate(pagesize);
+        } else {
+            data = frame.data;
+            data.clear();
+        }
+        while (data.hasRemaining()) {
+            if (in.read(data, offset + data.position()) < 0) {
+                throw new IOException(filename + " ends inside page " + pageno);
+            }
+        }
+
+        /** all frames are pinned or reserved, the page is used without being cached **/
+        if (frame == null) {
+            return data;
+        }
+        frame.filename = filename;
+        frame.pageno = pageno;
+        frame.data = data;
+        frame.pinCount = 1;
+        frame.referenced = true;
+        pageTable.put(pageKey(filename, pageno), frame);
+        return data.duplicate();
+    }
+
+    /** Tells the pool that the caller no longer uses the pinned page **/
+    public static synchronized void unpin(String filename, int pageno) {
+        Frame frame = pageTable.get(pageKey(filename, pageno));
+        if (frame != null && frame.pinCount > 0) {
+            frame.pinCount--;
+        }
+        shrinkPool();
+    }
+
+    /** Drops the cached pages of a file that is rewritten or deleted **/
+    public static synchronized void invalidate(String filename) {
+        for (Frame frame : frames) {
+            if (filename.equals(frame.filename)) {
+                dropPage(frame);
+            }
+        }
+    }
+
+    /**
+     * Returns a frame for a new page, evicting the page of an unpinned frame
+     * * chosen by the CLOCK replacement if there is no free frame.
+     * * Returns null if all the frames that are not reserved are pinned
+     **/
+    private static Frame findFrame() {
+        int capacity = getNumCacheFrames();
+        for (Frame frame : frames) {
+            if (frame.filename == null) {
+                return frame;
+            }
+        }
+        if (frames.size() < capacity) {
+            Frame frame = new Frame();
+            frames.add(frame);
+            return frame;
+        }
+        /** after one sweep every reference bit is cleared, so two sweeps find a victim if there is one **/
+        for (int i = 0; i < 2 * frames.size(); ++i) {
+            Frame frame = frames.get(clockHand);
+            clockHand = (clockHand + 1) % frames.size();
+            if (frame.pinCount > 0) {
+                continue;
+            }
+            if (frame.referenced) {
+                frame.referenced = false;
+                continue;
+            }
+            dropPage(frame);
+            return frame;
+        }
+        return null;
+    }
+
+    /** Removes unpinned frames while the pool holds more frames than are left unreserved **/
+    private static void shrinkPool() {
+        int capacity = getNumCacheFrames();
+        for (int i = frames.size() - 1; i >= 0 && frames.size() > capacity; --i) {
+            Frame frame = frames.get(i);
+            if (frame.pinCount == 0) {
+                dropPage(frame);
+                frames.remove(i);
+            }
+        }
+        if (clockHand >= frames.size()) {
+            clockHand = 0;
+        }
+    }
+
+    private static void dropPage(Frame frame) {
+        if (frame.filename != null) {
+            pageTable.remove(pageKey(frame.filename, frame.pageno));
+        }
+        frame.filename = null;
+        frame.pinCount = 0;
+        frame.referenced = false;
+    }
+
+    private static String pageKey(String filename, int pageno) {
+        return filename + "#" + pageno;
+    }
+
 }
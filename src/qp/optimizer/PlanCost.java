@@ -9,9 +9,12 @@ import qp.operators.*;
 import qp.utils.Attribute;
 import qp.utils.Batch;
 import qp.utils.Condition;
+import qp.utils.IndexReader;
+import qp.utils.IndexWriter;
 import qp.utils.Schema;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
@@ -75,6 +78,11 @@ public class PlanCost {
         } else if (node.getOpType() == OpType.PROJECT) {
             return getStatistics((Project) node);
         } else if (node.getOpType() == OpType.SCAN) {
+            if (node instanceof IndexScan) {
+                return getStatistics((IndexScan) node);
+            } else if (node instanceof BitmapScan) {
+                return getStatistics((BitmapScan) node);
+            }
             return getStatistics((Scan) node);
         } else if (node.getOpType() == OpType.DISTINCT) {
             return getStatistics((Distinct) node);
@@ -105,21 +113,81 @@ public class PlanCost {
         
          //calculating number of output tuples
          long numouttuples = calculateCost(node.getBase());
+         if (node.isAggregate()) {
+             return getAggregateStatistics(node, numouttuples);
+         }
  
          //incrementing IO cost
          int pagecapacity = Batch.getPageSize() / node.getSchema().getTupleSize();//implicit floor bc of integer division
          int numpages = (int) Math.ceil((double)numouttuples / (double)pagecapacity);
-         //following the generate cost for sort merge
-         long numpasses = 1 + (long)Math.ceil(
-                                        Math.log(Math.ceil((double)numpages / (double)BufferManager.numBuffer)) / 
-                                        Math.log(BufferManager.numBuffer - 1));
-         long numIO = 2 * numpages * numpasses;
-         cost += numIO;
+         cost += externalSortCost(numpages, BufferManager.numBuffer);
  
          return numouttuples;
          //won't change the number of distinct values in each attr, so no update to ht
      }
 
+    /**
+     * An aggregating groupby outputs one tuple per group, at most the product of the
+     * * distinct values of the groupby attributes. Each aggregate has a value per group.
+     **/
+    private long getAggregateStatistics(GroupBy node, long numintuples) {
+        long numgroups = estimateGroups(node, numintuples);
+        cost += aggregateCost(node, node.isSortBased(), numintuples, numgroups);
+
+        for (Attribute attr : node.getOutputList()) {
+            if (attr.getAggType() != Attribute.NONE) {
+                ht.put(attr, numgroups);
+            }
+        }
+        return numgroups;
+    }
+
+    /**
+     * Whether the aggregating groupby is cheaper to run as a SortAggregate than as a HashAggregate.
+     * * The orderby over it, null if there is none or it cannot take the groups in the order of
+     * * the sort, is charged to the hash aggregation only, as the sorted groups are output in its
+     * * order. Hash wins a tie as it does not need to sort
+     **/
+    public boolean isSortAggregateCheaper(GroupBy node, OrderBy orderby) {
+        isFeasible = true;
+        long numintuples = calculateCost(node.getBase());
+        if (!isFeasible) {
+            return false;
+        }
+        long numgroups = estimateGroups(node, numintuples);
+        long hashcost = aggregateCost(node, false, numintuples, numgroups);
+        long sortcost = aggregateCost(node, true, numintuples, numgroups);
+        if (orderby != null) {
+            int pagecapacity = Math.max(1, Batch.getPageSize() / orderby.getSchema().getTupleSize());
+            hashcost += orderByCost(orderby, numgroups, pagecapacity);
+        }
+        return sortcost < hashcost;
+    }
+
+    private long estimateGroups(GroupBy node, long numintuples) {
+        long numgroups = 1;
+        for (Attribute attr : node.getGroupByList()) {
+            numgroups *= Math.max(1, ht.get(attr));
+            if (numgroups >= numintuples) {
+                break;
+            }
+        }
+        return Math.max(1, Math.min(numgroups, numintuples));
+    }
+
+    /**
+     * IO cost of aggregating the groups while sorting or in a hash table
+     **/
+    private long aggregateCost(GroupBy node, boolean sortbased, long numintuples, long numgroups) {
+        if (sortbased) {
+            int grouppagecapacity = Math.max(1, Batch.getPageSize() / node.getSchema().getTupleSize());
+            return sortAggregateCost(numintuples, numgroups, grouppagecapacity, BufferManager.numBuffer);
+        }
+        int inpagecapacity = Math.max(1, Batch.getPageSize() / node.getBase().getSchema().getTupleSize());
+        long numinpages = (long) Math.ceil((double) numintuples / (double) inpagecapacity);
+        return hashAggregateCost(numinpages, numgroups, node.getSchema().getTupleSize(), BufferManager.numBuffer);
+    }
+
     /**
      * Distinct might reduce the number of output tuples, 
      * but does not modify the schema of the base table, hence 
@@ -144,30 +212,56 @@ public class PlanCost {
         
          //calculating number of output tuples
         long numouttuples = calculateCost(node.getBase());  //numouttuples of base and sortedbase should be the same
+        if (!isFeasible) {
+            return 0;
+        }
+        long numintuples = numouttuples;
+        numouttuples = estimateDistinct(node, numintuples);
+        cost += distinctCost(node, node.isHashBased(), numintuples, numouttuples);
+
+        return numouttuples;
+        //i don't think distinct will change the number of distinct values in each attr, so no update to ht
+    }
+
+    /**
+     * Whether the distinct is cheaper to run as a HashDistinct than by sorting.
+     * * Hash wins a tie as it outputs tuples as soon as they are seen
+     **/
+    public boolean isHashDistinctCheaper(Distinct node) {
+        isFeasible = true;
+        long numintuples = calculateCost(node.getBase());
+        if (!isFeasible) {
+            return true;
+        }
+        long numouttuples = estimateDistinct(node, numintuples);
+        return distinctCost(node, true, numintuples, numouttuples) <= distinctCost(node, false, numintuples, numouttuples);
+    }
+
+    private long estimateDistinct(Distinct node, long numintuples) {
         long numpossibletuples = 1;//might overflow bc multiplying multiple longs tgt use for loop to exit before that
         for (int i = 0; i < node.getSchema().getAttList().size(); ++i) {
             Attribute attrholder = node.getSchema().getAttList().get(i);
             numpossibletuples *= ht.get(attrholder);
-            if (numpossibletuples >= numouttuples) {
+            if (numpossibletuples >= numintuples) {
                 break;
             }
         }
-        if (numouttuples <= 0 || numpossibletuples <= 0) { System.out.println("Suspect long overflow"); System.exit(1);}
-        
-        numouttuples = Math.min(numouttuples, numpossibletuples);
+        if (numintuples <= 0 || numpossibletuples <= 0) { System.out.println("Suspect long overflow"); System.exit(1);}
 
-        //incrementing IO cost
-        int pagecapacity = Batch.getPageSize() / node.getSchema().getTupleSize();//implicit floor bc of integer division
-        int numpages = (int) Math.ceil((double)numouttuples / (double)pagecapacity);
-        //following the generate cost for sort merge
-        long numpasses = 1 + (long)Math.ceil(
-                                       Math.log(Math.ceil((double)numpages / (double)BufferManager.numBuffer)) / 
-                                       Math.log(BufferManager.numBuffer - 1));
-        long numIO = 2 * numpages * numpasses;
-        cost += numIO;
+        return Math.min(numintuples, numpossibletuples);
+    }
 
-        return numouttuples;
-        //i don't think distinct will change the number of distinct values in each attr, so no update to ht
+    /**
+     * IO cost of removing the duplicates by sorting the input or in a hash set
+     **/
+    private long distinctCost(Distinct node, boolean hashbased, long numintuples, long numouttuples) {
+        int pagecapacity = Batch.getPageSize() / node.getSchema().getTupleSize();//implicit floor bc of integer division
+        long numinpages = (long) Math.ceil((double)numintuples / (double)pagecapacity);
+        if (!hashbased) {
+            return externalSortCost(numinpages, BufferManager.numBuffer);
+        }
+        long numpages = (long) Math.ceil((double)numouttuples / (double)pagecapacity);
+        return hashDistinctCost(numinpages, numpages, BufferManager.numBuffer);
     }
 
     /**
@@ -183,7 +277,9 @@ public class PlanCost {
      **/
     protected long getStatistics(Join node) {
         long lefttuples = calculateCost(node.getLeft());
+        long costbeforeright = cost;
         long righttuples = calculateCost(node.getRight());
+        long rightcost = cost - costbeforeright;
 
         if (!isFeasible) {
             return 0;
@@ -203,6 +299,18 @@ public class PlanCost {
         long leftpages = (long) Math.ceil(((double) lefttuples) / (double) leftcapacity);
         long rightpages = (long) Math.ceil(((double) righttuples) / (double) rightcapacity);
 
+        /** the probe cost depends on the distinct values of the indexed attribute in the whole table **/
+        long probecost = 0;
+        if (node.getJoinType() == JoinType.INDEXNESTED) {
+            Condition probe = IndexNestedJoin.getProbeCondition(node);
+            if (probe == null) {
+                // the statistics are still estimated for the operators above
+                isFeasible = false;
+            } else {
+                probecost = indexProbeCost(IndexNestedJoin.getInnerScan(node.getRight()), (Attribute) probe.getRhs());
+            }
+        }
+
         double tuples = (double) lefttuples * righttuples;
         for (Condition con : node.getConditionList()) {
             Attribute leftjoinAttr = con.getLhs();
@@ -229,7 +337,8 @@ public class PlanCost {
 
         switch (joinType) {
             case JoinType.NESTEDJOIN:
-                joincost = leftpages * rightpages;
+                // the right input is scanned from memory when it fits in the spare buffers of the join
+                joincost = Join.fitsInSpareFrames(rightpages, numbuff) ? 0 : leftpages * rightpages;
                 break;
             case JoinType.SORTMERGE:
                 // cost to sort left
@@ -242,7 +351,23 @@ public class PlanCost {
                 break;
             case JoinType.BLOCKNESTED:
                 long outerblocks = numbuff - 2;
-                joincost = ((int) Math.ceil(leftpages/outerblocks)) * rightpages;
+                // likewise, the left block then has the buffers the right input does not take
+                joincost = Join.fitsInSpareFrames(rightpages, numbuff) ? 0 : ((int) Math.ceil(leftpages/outerblocks)) * rightpages;
+                break;
+            case JoinType.HASHJOIN:
+                // read and write both inputs once while partitioning, then read them again to join
+                joincost = 3 * (leftpages + rightpages);
+                break;
+            case JoinType.HYBRIDHASH:
+                // only the part of both inputs outside the in-memory partition is written and read again
+                long residentpages = HybridHashJoin.numResidentPages(leftpages, (int) numbuff);
+                double spilledfraction = 1.0 - (double) residentpages / (double) Math.max(1, leftpages);
+                joincost = leftpages + rightpages + (long) Math.ceil(2 * spilledfraction * (leftpages + rightpages));
+                break;
+            case JoinType.INDEXNESTED:
+                // the outer pages are read by the left input, every outer tuple then probes the
+                // index, while the right input is never scanned so its cost is taken back
+                joincost = lefttuples * probecost - rightcost;
                 break;
             default:
                 System.out.println("join type is not supported");
@@ -253,10 +378,119 @@ public class PlanCost {
         return outtuples;
     }
 
+    /**
+     * IO cost of one probe of the index on the attribute of the table of the scan: the internal
+     * * levels of the tree, the leaves of the entries with the probed key and one table page for
+     * * each of the tuples with that key, as many as the table has tuples per distinct value
+     **/
+    private long indexProbeCost(Scan scan, Attribute attr) {
+        PlanCost table = new PlanCost();
+        long numtuples = table.getTableStatistics(scan);
+        long numdistinct = Math.max(1, table.ht.get(scan.getTableSchema().getAttribute(scan.getTableSchema().indexOf(attr))));
+        double matches = (double) numtuples / numdistinct;
+
+        IndexReader index = new IndexReader(IndexWriter.fileName(scan.getTabName(), attr));
+        if (!index.open()) {
+            System.out.println("Error in opening file" + index.getFileName());
+            System.exit(1);
+        }
+        index.close();
+        double entriesperleaf = Math.max(1.0, (double) index.getNumEntry() / index.getNumLeaves());
+        long numleaves = Math.max(1, (long) Math.ceil(matches / entriesperleaf));
+
+        long tuplesize = scan.getTableSchema().getTupleSize();
+        long pagesize = Math.max(Batch.getPageSize() / tuplesize, 1);
+        long numpages = (long) Math.ceil((double) numtuples / (double) pagesize);
+        return (index.getHeight() - 1) + numleaves + (long) Math.ceil(Math.min(matches, numpages));
+    }
+
+    /**
+     * IO cost of sorting numPages pages with numBuff buffers in an ExternalSort, every pass
+     * * reads and writes all pages. Run generation gives runs of numBuff pages, or about
+     * * 2 * (numBuff - 2) pages on average with replacement selection, whose heap leaves
+     * * a page for the input and one for the output, and a merge pass merges
+     * * numBuff - 1 runs at a time. The final merge is read by the consumer without being
+     * * written. An input that fits in the buffers is sorted in memory without any IO
+     **/
     private long externalSortCost(long numPages, long numBuff) {
-        int numPass = 1 + (int) Math.ceil(Math.log(Math.ceil(numPages / (1.0 * numBuff))) / Math.log(numBuff - 1) );
-        return numPass * (2 * numPages);
+        if (numPages <= numBuff) {
+            return 0;
+        }
+        long runPages = ExternalSort.isReplacementSelection() ? Math.max(1, 2 * (numBuff - 2)) : numBuff;
+        long numRuns = Math.max(1, (long) Math.ceil(numPages / (1.0 * runPages)));
+        int numPass = 1 + (int) Math.ceil(Math.log(numRuns) / Math.log(numBuff - 1));
+        return numPass * (2 * numPages) - numPages;
+    }
+
+    /**
+     * IO cost of a HashDistinct. Nothing when the distinct tuples fit in its hash set, otherwise
+     * * the input tuples that do not fit are written to the partitions and read back, once per
+     * * level of partitioning needed until the distinct tuples of a partition fit
+     **/
+    private long hashDistinctCost(long numInPages, long numDistinctPages, long numBuff) {
+        if (!HashDistinct.hasEnoughBuffers((int) numBuff)) {
+            return Long.MAX_VALUE;
+        }
+        long tablePages = HashDistinct.numTablePages((int) numBuff);
+        if (numDistinctPages <= tablePages) {
+            return 0;
+        }
+        double spilledfraction = 1.0 - (double) tablePages / (double) numDistinctPages;
+        int numPartitions = SpillPartitions.numPartitions((int) numBuff);
+        long numLevels = Math.max(1, (long) Math.ceil(Math.log((double) numDistinctPages / tablePages) / Math.log(numPartitions)));
+        return (long) Math.ceil(2 * spilledfraction * numInPages * numLevels);
+    }
+
+    /**
+     * IO cost of a HashAggregate. Nothing when the groups fit in its hash table, otherwise the
+     * * input tuples of the groups that do not fit are written to the partitions and read back,
+     * * once per level of partitioning needed until the groups of a partition fit
+     **/
+    private long hashAggregateCost(long numInPages, long numGroups, int tupleSize, long numBuff) {
+        long tableGroups = HashAggregate.numTableGroups((int) numBuff, tupleSize);
+        if (numGroups <= tableGroups) {
+            return 0;
+        }
+        double spilledfraction = 1.0 - (double) tableGroups / (double) numGroups;
+        int numPartitions = SpillPartitions.numPartitions((int) numBuff);
+        long numLevels = Math.max(1, (long) Math.ceil(Math.log((double) numGroups / tableGroups) / Math.log(numPartitions)));
+        return (long) Math.ceil(2 * spilledfraction * numInPages * numLevels);
+    }
+
+    /**
+     * IO cost of a SortAggregate, an external sort of the partial aggregates that combines those
+     * * of a group whenever they meet. A run holds at most one partial aggregate per group, so
+     * * nothing is written when the groups fit in half the buffers, and otherwise every run and
+     * * merged run is at most as long as the groups
+     **/
+    private long sortAggregateCost(long numInTuples, long numGroups, int tuplesPerPage, long numBuff) {
+        long runTuples = numBuff * tuplesPerPage;
+        if (numInTuples <= runTuples || numGroups <= runTuples / 2) {
+            return 0;
+        }
+        return boundedSortCost(numInTuples, numGroups, tuplesPerPage, numBuff);
     }
+
+    /**
+     * IO cost of an external sort of numInTuples tuples in which no run is longer than
+     * * maxRunTuples, as the runs of the groups of a SortAggregate or the first tuples of a TopN
+     **/
+    private long boundedSortCost(long numInTuples, long maxRunTuples, int tuplesPerPage, long numBuff) {
+        long runTuples = numBuff * tuplesPerPage;
+        long groupPages = (long) Math.ceil((double) maxRunTuples / tuplesPerPage);
+        long numRuns = (long) Math.ceil((double) numInTuples / runTuples);
+        long runPages = Math.min(numBuff, groupPages);
+        long iocost = numRuns * runPages;
+        long fanIn = Math.max(2, numBuff - 1);
+        while (numRuns > fanIn) {
+            iocost += numRuns * runPages;
+            numRuns = (long) Math.ceil((double) numRuns / fanIn);
+            runPages = Math.min(runPages * fanIn, groupPages);
+            iocost += numRuns * runPages;
+        }
+        return iocost + numRuns * runPages;
+    }
+
     protected long getStatistics(OrderBy node) {
         /**
          * IO cost: need 
@@ -271,16 +505,28 @@ public class PlanCost {
  
          //incrementing IO cost
          int pagecapacity = Batch.getPageSize() / node.getSchema().getTupleSize();//implicit floor bc of integer division
-         int numpages = (int) Math.ceil((double)numouttuples / (double)pagecapacity);
-         //following the generate cost for sort merge
-         long numpasses = 1 + (long)Math.ceil(
-                                        Math.log(Math.ceil((double)numpages / (double)BufferManager.numBuffer)) / 
-                                        Math.log(BufferManager.numBuffer - 1));
-         long numIO = 2 * numpages * numpasses;
-         cost += numIO;
- 
+         cost += orderByCost(node, numouttuples, pagecapacity);
+         if (node.hasLimit()) {
+             return Math.min(numouttuples, node.getLimit());
+         }
          return numouttuples;
     }
+
+    /**
+     * IO cost of sorting numtuples tuples for the orderby
+     **/
+    private long orderByCost(OrderBy node, long numtuples, int pagecapacity) {
+        if (node.hasLimit()) {
+            //a TopN keeps the first tuples in memory if they fit, else each sorted run is cut to limit tuples
+            long limit = node.getLimit();
+            if (!TopN.fitsInMemory(limit, BufferManager.numBuffer, pagecapacity) && numtuples > BufferManager.numBuffer * pagecapacity) {
+                return boundedSortCost(numtuples, limit, pagecapacity, BufferManager.numBuffer);
+            }
+            return 0;
+        }
+        int numpages = (int) Math.ceil((double)numtuples / (double)pagecapacity);
+        return externalSortCost(numpages, BufferManager.numBuffer);
+    }
     
 
     /**
@@ -294,9 +540,14 @@ public class PlanCost {
             System.out.println("notFeasible");
             return Long.MAX_VALUE;
         }
+        return getSelectStatistics(node.getCondition(), node.getSchema(), intuples);
+    }
 
-        Condition con = node.getCondition();
-        Schema schema = node.getSchema();
+    /**
+     * Number of the given input tuples that satisfy the selection condition,
+     * * the statistics of the attributes are updated to the selected tuples
+     **/
+    private long getSelectStatistics(Condition con, Schema schema, long intuples) {
         Attribute attr = con.getLhs();
         int index = schema.indexOf(attr);
         Attribute fullattr = schema.getAttribute(index);
@@ -314,11 +565,11 @@ public class PlanCost {
         } else if (exprtype == Condition.NOTEQUAL) {
             outtuples = (long) Math.ceil(intuples - ((double) intuples / (double) numdistinct));
         } else {
-            outtuples = (long) Math.ceil(0.5 * intuples);
+            outtuples = (long) Math.ceil(getRangeSelectivity(con) * intuples);
         }
 
         //updating selected-attribute
-        Condition cn = node.getCondition();
+        Condition cn = con;
         if (cn.getOpType() != Condition.SELECT) {
             System.out.println("Error, expecting SELECT node");
             System.exit(1);
@@ -341,6 +592,35 @@ public class PlanCost {
         return outtuples;
     }
 
+    /**
+     * Fraction of the tuples that satisfy a range condition. An index on the attribute records
+     * * its smallest and largest value, without one half of the tuples are taken to satisfy it
+     **/
+    private double getRangeSelectivity(Condition con) {
+        Attribute attr = con.getLhs();
+        if (!(con.getRhs() instanceof String) || !IndexReader.hasIndex(attr.getTabName(), attr)) {
+            return 0.5;
+        }
+        IndexReader index = new IndexReader(IndexWriter.fileName(attr.getTabName(), attr));
+        if (!index.open()) {
+            return 0.5;
+        }
+        index.close();
+        Object key = IndexScan.parseKey((String) con.getRhs(), index.getKeyType());
+        switch (con.getExprType()) {
+            case Condition.LESSTHAN:
+                return index.fractionBelow(key, false);
+            case Condition.LTOE:
+                return index.fractionBelow(key, true);
+            case Condition.GREATERTHAN:
+                return 1 - index.fractionBelow(key, true);
+            case Condition.GTOE:
+                return 1 - index.fractionBelow(key, false);
+            default:
+                return 0.5;
+        }
+    }
+
     /**
      * The statistics file <tablename>.stat to find the statistics
      * * about that table;
@@ -348,10 +628,83 @@ public class PlanCost {
      * * number of distinct values of each attribute
      **/
     protected long getStatistics(Scan node) {
+        long numtuples = getTableStatistics(node);
+
+        /** Number of tuples per page, a column scan only reads the columns in its schema **/
+        long tuplesize = node.getSchema().getTupleSize();
+        long pagesize = Math.max(Batch.getPageSize() / tuplesize, 1);
+        long numpages = (long) Math.ceil((double) numtuples / (double) pagesize);
+
+        cost = cost + numpages;
+        return numtuples;
+    }
+
+    /**
+     * An index scan descends the tree once, reads the leaves of the selected entries and then
+     * * each table page that holds a selected tuple once. The selected tuples are assumed to be
+     * * spread evenly over the table pages, so k of them fall on n(1 - (1 - 1/n)^k) of n pages
+     **/
+    protected long getStatistics(IndexScan node) {
+        long numtuples = getTableStatistics(node);
+        long outtuples = getSelectStatistics(node.getCondition(), node.getSchema(), numtuples);
+
+        IndexReader index = new IndexReader(node.getIndexFileName());
+        if (!index.open()) {
+            System.out.println("Error in opening file" + node.getIndexFileName());
+            System.exit(1);
+        }
+        index.close();
+        double entriesperleaf = Math.max(1.0, (double) index.getNumEntry() / index.getNumLeaves());
+        long numleaves = Math.max(1, (long) Math.ceil(outtuples / entriesperleaf));
+
+        long tuplesize = node.getSchema().getTupleSize();
+        long pagesize = Math.max(Batch.getPageSize() / tuplesize, 1);
+        long numpages = (long) Math.ceil((double) numtuples / (double) pagesize);
+        long numfetched = 0;
+        if (numpages > 0) {
+            numfetched = (long) Math.ceil(numpages * (1.0 - Math.pow(1.0 - 1.0 / numpages, outtuples)));
+        }
+
+        cost = cost + (index.getHeight() - 1) + numleaves + numfetched;
+        return outtuples;
+    }
+
+    /**
+     * A bitmap scan reads the bitmap file of each condition whole and then each table page
+     * * that holds a row satisfying all of them once. The conditions are taken to be independent,
+     * * as for a chain of selections, and the selected rows spread evenly over the table pages
+     **/
+    protected long getStatistics(BitmapScan node) {
+        long numtuples = getTableStatistics(node);
+        long outtuples = numtuples;
+        long bitmappages = 0;
+        for (Condition con : node.getScanConditions()) {
+            outtuples = getSelectStatistics(con, node.getSchema(), outtuples);
+            long length = new File(node.getBitmapFileName(con)).length();
+            bitmappages += (long) Math.ceil((double) length / Batch.getPageSize());
+        }
+
+        long tuplesize = node.getSchema().getTupleSize();
+        long pagesize = Math.max(Batch.getPageSize() / tuplesize, 1);
+        long numpages = (long) Math.ceil((double) numtuples / (double) pagesize);
+        long numfetched = 0;
+        if (numpages > 0) {
+            numfetched = (long) Math.ceil(numpages * (1.0 - Math.pow(1.0 - 1.0 / numpages, outtuples)));
+        }
+
+        cost = cost + bitmappages + numfetched;
+        return outtuples;
+    }
+
+    /**
+     * Reads the statistics of the table of the scan into the hashtable,
+     * * returns the number of tuples in the table
+     **/
+    private long getTableStatistics(Scan node) {
         String tablename = node.getTabName();
         String filename = tablename + ".stat";
-        Schema schema = node.getSchema();
-        int numAttr = schema.getNumCols();
+        Schema tableschema = node.getTableSchema();
+        int numAttr = tableschema.getNumCols();
         BufferedReader in = null;
         try {
             in = new BufferedReader(new FileReader(filename));
@@ -387,19 +740,12 @@ public class PlanCost {
             System.exit(1);
         }
         for (int i = 0; i < numAttr; ++i) {
-            Attribute attr = schema.getAttribute(i);
+            Attribute attr = tableschema.getAttribute(i);
             temp = tokenizer.nextToken();
             Long distinctValues = Long.valueOf(temp);
             ht.put(attr, distinctValues);
         }
 
-        /** Number of tuples per page**/
-        long tuplesize = schema.getTupleSize();
-        long pagesize = Math.max(Batch.getPageSize() / tuplesize, 1);
-        long numpages = (long) Math.ceil((double) numtuples / (double) pagesize);
-
-        cost = cost + numpages;
-
         try {
             in.close();
         } catch (IOException io) {
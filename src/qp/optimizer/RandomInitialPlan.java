@@ -58,6 +58,20 @@ public class RandomInitialPlan {
         if (numJoin != 0) {
             createJoinOp();
         }
+
+        /** the aggregation outputs the projected attributes itself, one tuple per group **/
+        if (sqlquery.hasAggregates()) {
+            createGroupByOp();
+            GroupBy groupby = (GroupBy) root;
+            if (sqlquery.isDistinct()) {
+                createDistinctOp();
+            }
+            if (sqlquery.isOrderBy()) {
+                createOrderByOp(sqlquery.isDesc());
+            }
+            chooseAggregateMethod(groupby);
+            return root;
+        }
         createProjectOp();
         
         if (sqlquery.isGroupBy() && sqlquery.isDistinct() && !sqlquery.isOrderBy()) {
@@ -79,15 +93,46 @@ public class RandomInitialPlan {
     }
 
     public void createGroupByOp() {
+        if (sqlquery.hasAggregates()) {
+            /** output tuples hold the projected attributes and aggregates, sized by subSchema **/
+            GroupBy gb = new GroupBy(root, this.groupbylist, projectlist, OpType.GROUPBY);
+            gb.setSchema(root.getSchema().subSchema(projectlist));
+            root = gb;
+            return;
+        }
         GroupBy gb = new GroupBy(root, this.groupbylist, OpType.GROUPBY);
         gb.setSchema(root.getSchema());
         root = gb;
         return;
     }
 
+    /**
+     * Picks a HashAggregate or a SortAggregate for the groupby by their cost. When the
+     * * orderby right above it is on groupby attributes, the SortAggregate outputs the groups
+     * * in its order and the orderby is left out of the plan, so only the hash aggregation
+     * * is charged for its sort
+     **/
+    private void chooseAggregateMethod(GroupBy groupby) {
+        OrderBy orderby = null;
+        if (root instanceof OrderBy && ((OrderBy) root).getBase() == groupby
+                && groupby.canOutputInOrder(((OrderBy) root).getAttributeList())) {
+            orderby = (OrderBy) root;
+        }
+        boolean sortbased = new PlanCost().isSortAggregateCheaper(groupby, orderby);
+        groupby.setSortBased(sortbased);
+        if (sortbased && orderby != null) {
+            groupby.setOutputOrder(orderby.getAttributeList(), orderby.getOrder() == OrderByType.DESC);
+            root = groupby;
+        }
+    }
+
+    /**
+     * The distinct is run as a HashDistinct or by sorting, whichever costs less
+     **/
     public void createDistinctOp() {
         Distinct distinct = new Distinct(root, OpType.DISTINCT);
         distinct.setSchema(root.getSchema());
+        distinct.setHashBased(new PlanCost().isHashDistinctCheaper(distinct));
         root = distinct;
         return;
     }
@@ -101,23 +146,32 @@ public class RandomInitialPlan {
         Scan tempop = null;
         for (int i = 0; i < numtab; ++i) {  // For each table in from list
             String tabname = fromlist.get(i);
-            Scan op1 = new Scan(tabname, OpType.SCAN);
-            tempop = op1;
 
             /** Read the schema of the table from tablename.md file
              ** md stands for metadata
              **/
             String filename = tabname + ".md";
+            Schema schm = null;
             try {
                 ObjectInputStream _if = new ObjectInputStream(new FileInputStream(filename));
-                Schema schm = (Schema) _if.readObject();
-                op1.setSchema(schm);
+                schm = (Schema) _if.readObject();
                 _if.close();
             } catch (Exception e) {
                 System.err.println("RandomInitialPlan:Error reading Schema of the table " + filename);
                 System.err.println(e);
                 System.exit(1);
             }
+
+            /** If the table has a columnar copy, only the columns used by the query are read **/
+            Scan op1;
+            ArrayList<Attribute> columns = getUsedColumns(schm);
+            if (columns.size() < schm.getNumCols() && ColumnReader.hasColumnFiles(tabname, columns)) {
+                op1 = new ColumnScan(tabname, schm, columns, OpType.SCAN);
+            } else {
+                op1 = new Scan(tabname, OpType.SCAN);
+                op1.setSchema(schm);
+            }
+            tempop = op1;
             tab_op_hash.put(tabname, op1);
         }
 
@@ -133,17 +187,54 @@ public class RandomInitialPlan {
 
     }
 
+    /**
+     * Attributes of the table that are referred to anywhere in the query,
+     * * in the order they appear in the table schema
+     **/
+    private ArrayList<Attribute> getUsedColumns(Schema tableschema) {
+        ArrayList<Attribute> used = new ArrayList<>();
+        if (projectlist == null || projectlist.isEmpty()) {
+            /** SELECT * needs every column **/
+            return new ArrayList<>(tableschema.getAttList());
+        }
+        for (Attribute attr : projectlist) {
+            used.add(attr.getBaseAttribute());
+        }
+        for (Condition cn : sqlquery.getConditionList()) {
+            used.add(cn.getLhs());
+            if (cn.getRhs() instanceof Attribute) {
+                used.add((Attribute) cn.getRhs());
+            }
+        }
+        used.addAll(groupbylist);
+        used.addAll(orderbylist);
+
+        ArrayList<Attribute> columns = new ArrayList<>();
+        for (Attribute attr : tableschema.getAttList()) {
+            if (used.contains(attr)) {
+                columns.add(attr);
+            }
+        }
+        return columns;
+    }
+
     /**
      * Create Selection Operators for each of the
      * * selection condition mentioned in Condition list
+     * * A condition answered by an IndexScan or BitmapScan of its table is not selected again
      **/
     public void createSelectOp() {
-        Select op1 = null;
+        ArrayList<Condition> indexed = createIndexedScanOp();
+        Operator op1 = null;
         for (int j = 0; j < selectionlist.size(); ++j) {
             Condition cn = selectionlist.get(j);
             if (cn.getOpType() == Condition.SELECT) {
                 String tabname = cn.getLhs().getTabName();
                 Operator tempop = (Operator) tab_op_hash.get(tabname);
+                if (indexed.contains(cn)) {
+                    op1 = tempop;
+                    continue;
+                }
                 op1 = new Select(tempop, cn, OpType.SELECT);
                 /** set the schema same as base relation **/
                 op1.setSchema(tempop.getSchema());
@@ -158,6 +249,55 @@ public class RandomInitialPlan {
             root = op1;
     }
 
+    /**
+     * Replaces the scan of a table by an IndexScan or a BitmapScan when PlanCost expects it
+     * * to read fewer pages than scanning the table and selecting, which depends on the
+     * * selectivity of the conditions. An IndexScan answers the most selective condition of
+     * * the table that has an index, a BitmapScan answers all the conditions of the table
+     * * that have a bitmap index at once. The cheapest of them is taken.
+     * * Returns the conditions that are answered by the scans
+     **/
+    private ArrayList<Condition> createIndexedScanOp() {
+        ArrayList<Condition> indexed = new ArrayList<>();
+        for (String tabname : fromlist) {
+            Scan scan = (Scan) tab_op_hash.get(tabname);
+            long scancost = new PlanCost().getCost(scan);
+            Scan bestop = null;
+            long bestcost = 0;
+            ArrayList<Condition> bitmapped = new ArrayList<>();
+            for (Condition cn : selectionlist) {
+                if (cn.getOpType() != Condition.SELECT || !cn.getLhs().getTabName().equals(tabname)) {
+                    continue;
+                }
+                if (BitmapScan.canAnswer(tabname, cn)) {
+                    bitmapped.add(cn);
+                }
+                if (!IndexScan.canAnswer(tabname, cn)) {
+                    continue;
+                }
+                IndexScan indexscan = new IndexScan(tabname, scan.getTableSchema(), cn, OpType.SCAN);
+                long indexcost = new PlanCost().getCost(indexscan);
+                if (indexcost < scancost && (bestop == null || indexcost < bestcost)) {
+                    bestop = indexscan;
+                    bestcost = indexcost;
+                }
+            }
+            if (!bitmapped.isEmpty()) {
+                BitmapScan bitmapscan = new BitmapScan(tabname, scan.getTableSchema(), bitmapped, OpType.SCAN);
+                long bitmapcost = new PlanCost().getCost(bitmapscan);
+                if (bitmapcost < scancost && (bestop == null || bitmapcost < bestcost)) {
+                    bestop = bitmapscan;
+                    bestcost = bitmapcost;
+                }
+            }
+            if (bestop != null) {
+                indexed.addAll(bestop.getScanConditions());
+                modifyHashtable(scan, bestop);
+            }
+        }
+        return indexed;
+    }
+
     /**
      * create join operators
      **/
@@ -187,6 +327,10 @@ public class RandomInitialPlan {
             /** randomly select a join type**/
             int numJMeth = JoinType.numJoinTypes();
             int joinMeth = RandNumb.randInt(0, numJMeth - 1);
+            /** an index nested join needs an index on the right table, the initial plan has to be feasible **/
+            while (joinMeth == JoinType.INDEXNESTED && IndexNestedJoin.getProbeCondition(jn) == null) {
+                joinMeth = RandNumb.randInt(0, numJMeth - 1);
+            }
             jn.setJoinType(joinMeth);
             modifyHashtable(left, jn);
             modifyHashtable(right, jn);
@@ -220,6 +364,7 @@ public class RandomInitialPlan {
                 orderby = new OrderBy(root, OpType.ORDERBY, OrderByType.ASC, this.orderbylist);
             }
             orderby.setSchema(root.getSchema());
+            orderby.setLimit(sqlquery.getLimit());
             root = orderby;
         }
     }
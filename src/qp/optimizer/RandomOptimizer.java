@@ -6,11 +6,11 @@ package qp.optimizer;
 
 import qp.operators.*;
 import qp.utils.Attribute;
+import qp.utils.Batch;
 import qp.utils.Condition;
 import qp.utils.RandNumb;
 import qp.utils.SQLQuery;
 
-import java.security.acl.Group;
 import java.util.ArrayList;
 
 public class RandomOptimizer {
@@ -61,6 +61,7 @@ public class RandomOptimizer {
                     smj.setLeft(left);
                     smj.setRight(right);
                     smj.setNumBuff(numbuff);
+                    smj.setBuildTuples(estimateTuples(left));
                     return smj;
                 case JoinType.BLOCKNESTED:
                     BlockNestedJoin bnj = new BlockNestedJoin((Join) node);
@@ -68,6 +69,27 @@ public class RandomOptimizer {
                     bnj.setRight(right);
                     bnj.setNumBuff(numbuff);
                     return bnj;
+                case JoinType.HASHJOIN:
+                    HashJoin hj = new HashJoin((Join) node);
+                    hj.setLeft(left);
+                    hj.setRight(right);
+                    hj.setNumBuff(numbuff);
+                    hj.setBuildTuples(estimateTuples(left));
+                    return hj;
+                case JoinType.HYBRIDHASH:
+                    HybridHashJoin hhj = new HybridHashJoin((Join) node);
+                    hhj.setLeft(left);
+                    hhj.setRight(right);
+                    hhj.setNumBuff(numbuff);
+                    hhj.setBuildPages(estimatePages(left));
+                    hhj.setBuildTuples(estimateTuples(left));
+                    return hhj;
+                case JoinType.INDEXNESTED:
+                    IndexNestedJoin inj = new IndexNestedJoin((Join) node);
+                    inj.setLeft(left);
+                    inj.setRight(right);
+                    inj.setNumBuff(numbuff);
+                    return inj;
                 default:
                     return node;
             }
@@ -82,20 +104,49 @@ public class RandomOptimizer {
         } else if (node.getOpType() == OpType.DISTINCT) {
             Operator base = makeExecPlan(((Distinct) node).getBase());
             ((Distinct) node).setBase(base);
+            if (((Distinct) node).isHashBased()) {
+                return new HashDistinct((Distinct) node);
+            }
             return node;
         } else if (node.getOpType() == OpType.GROUPBY) {
             Operator base = makeExecPlan(((GroupBy) node).getBase());
             ((GroupBy) node).setBase(base);
+            if (((GroupBy) node).isAggregate() && ((GroupBy) node).isSortBased()) {
+                return new SortAggregate((GroupBy) node);
+            } else if (((GroupBy) node).isAggregate()) {
+                return new HashAggregate((GroupBy) node);
+            }
             return node;
         } else if (node.getOpType() == OpType.ORDERBY) {
             Operator base = makeExecPlan(((OrderBy) node).getBase());
             ((OrderBy) node).setBase(base);
+            if (((OrderBy) node).hasLimit()) {
+                return new TopN((OrderBy) node);
+            }
             return node;
         } else {
             return node;
         }
     }
 
+    /**
+     * Estimated number of pages in the result of the given subtree
+     **/
+    private static long estimatePages(Operator node) {
+        long tuplesize = node.getSchema().getTupleSize();
+        long capacity = Math.max(1, Batch.getPageSize() / tuplesize);
+        return (long) Math.ceil((double) estimateTuples(node) / (double) capacity);
+    }
+
+    /**
+     * Estimated number of tuples in the result of the given subtree
+     **/
+    private static long estimateTuples(Operator node) {
+        PlanCost pc = new PlanCost();
+        pc.getCost(node);
+        return pc.getNumTuples();
+    }
+
     /**
      * Randomly selects a neighbour
      **/
@@ -228,7 +279,9 @@ public class RandomOptimizer {
             Join node = (Join) findNodeAt(root, joinNum);
             int prevJoinMeth = node.getJoinType();
             int joinMeth = RandNumb.randInt(0, numJMeth - 1);
-            while (joinMeth == prevJoinMeth) {
+            /** an index nested join without an index on the right table is never feasible **/
+            while (joinMeth == prevJoinMeth
+                    || (joinMeth == JoinType.INDEXNESTED && IndexNestedJoin.getProbeCondition(node) == null)) {
                 joinMeth = RandNumb.randInt(0, numJMeth - 1);
             }
             node.setJoinType(joinMeth);
@@ -424,7 +477,11 @@ public class RandomOptimizer {
         } else if (node.getOpType() == OpType.GROUPBY) {
             Operator base = ((GroupBy) node).getBase();
             modifySchema(base);
-            node.setSchema(base.getSchema());
+            if (((GroupBy) node).isAggregate()) {
+                node.setSchema(base.getSchema().subSchema(((GroupBy) node).getOutputList()));
+            } else {
+                node.setSchema(base.getSchema());
+            }
         } else if (node.getOpType() == OpType.ORDERBY) {
             Operator base = ((OrderBy) node).getBase();
             modifySchema(base);
@@ -239,13 +239,13 @@ public class Scaner implements java_cup.runtime.Scanner {
 		/* 26 */ YY_NO_ANCHOR,
 		/* 27 */ YY_NO_ANCHOR,
 		/* 28 */ YY_NO_ANCHOR,
-		/* 29 */ YY_NOT_ACCEPT,
+		/* 29 */ YY_NO_ANCHOR,
 		/* 30 */ YY_NO_ANCHOR,
 		/* 31 */ YY_NOT_ACCEPT,
 		/* 32 */ YY_NO_ANCHOR,
 		/* 33 */ YY_NOT_ACCEPT,
 		/* 34 */ YY_NO_ANCHOR,
-		/* 35 */ YY_NO_ANCHOR,
+		/* 35 */ YY_NOT_ACCEPT,
 		/* 36 */ YY_NO_ANCHOR,
 		/* 37 */ YY_NO_ANCHOR,
 		/* 38 */ YY_NO_ANCHOR,
@@ -286,45 +286,53 @@ public class Scaner implements java_cup.runtime.Scanner {
 		/* 73 */ YY_NO_ANCHOR,
 		/* 74 */ YY_NO_ANCHOR,
 		/* 75 */ YY_NO_ANCHOR,
-		/* 76 */ YY_NO_ANCHOR
+		/* 76 */ YY_NO_ANCHOR,
+		/* 77 */ YY_NO_ANCHOR,
+		/* 78 */ YY_NO_ANCHOR,
+		/* 79 */ YY_NO_ANCHOR,
+		/* 80 */ YY_NO_ANCHOR,
+		/* 81 */ YY_NO_ANCHOR,
+		/* 82 */ YY_NO_ANCHOR
 	};
 	private int yy_cmap[] = unpackFromString(1,130,
 "0:9,24:2,0,24:2,0:18,28,29,27,30:4,32,35,36,23,30,34,30,40,30,26:10,30:2,38" +
 ",37,39,30:2,18,15,4,17,2,6,12,11,20,25:2,3,9,21,8,14,25,7,1,5,13,22,10,19,1" +
 "6,25,30,31,30:2,25,30,25:13,33,25:5,33,25:6,30:4,0,41:2")[0];
 
-	private int yy_rmap[] = unpackFromString(1,77,
-"0,1,2,3,2:4,4,5,2:6,6:13,7,8,9,6,10,11,12,13,14,15,16,17,18,19,20,21,22,23," +
-"24,25,26,27,28,29,30,31,32,33,34,35,36,37,6,38,39,40,41,42,43,44,45,46,47,4" +
-"8,49,50,51,52")[0];
+	private int yy_rmap[] = unpackFromString(1,83,
+"0,1,2,3,4,2:4,5,6,2:6,7:14,8,9,10,7,11,12,13,14,15,16,17,18,19,20,21,22,23," +
+"24,25,26,27,28,29,30,31,32,33,34,35,36,37,38,39,40,41,7,42,43,44,45,46,47,4" +
+"8,49,50,51,52,53,54,55,56,57")[0];
 
-	private int yy_nxt[][] = unpackFromString(53,42,
-"-1,1,61:2,67,61,68,61,69,70,71,61,72,61:4,73,74,61:4,2,3,61,-1,29,3,31,-1:3" +
-",61,4,5,6,7,8,9,10,11,-1,61,75,61:10,30,61:9,-1:2,61,32,-1:6,61,-1:74,3,-1:" +
-"3,3,-1:50,14,-1:41,15,-1:5,61:22,-1:2,61,32,-1:6,61,-1:9,29:23,-1,29:2,12,2" +
-"9:3,33,-1,29:8,-1:2,61:8,16,61:13,-1:2,61,32,-1:6,61,-1:45,13,-1:31,29,-1:3" +
-",29:3,-1:9,61:12,43,61:9,-1:2,61,32,-1:6,61,-1:9,61:7,44,61:14,-1:2,61,32,-" +
-"1:6,61,-1:9,61:16,76,61:5,-1:2,61,32,-1:6,61,-1:9,61:18,17,61:3,-1:2,61,32," +
-"-1:6,61,-1:9,61:20,18,61,-1:2,61,32,-1:6,61,-1:9,61,45,61:20,-1:2,61,32,-1:" +
-"6,61,-1:9,47,61:21,-1:2,61,32,-1:6,61,-1:9,61:3,19,61:18,-1:2,61,32,-1:6,61" +
-",-1:9,61:11,20,61:10,-1:2,61,32,-1:6,61,-1:9,61:20,50,61,-1:2,61,32,-1:6,61" +
-",-1:9,61:8,21,61:13,-1:2,61,32,-1:6,61,-1:9,61:6,51,61:15,-1:2,61,32,-1:6,6" +
-"1,-1:9,61:12,52,61:9,-1:2,61,32,-1:6,61,-1:9,61:3,22,61:18,-1:2,61,32,-1:6," +
-"61,-1:9,61:4,53,61:17,-1:2,61,32,-1:6,61,-1:9,61:3,54,61:18,-1:2,61,32,-1:6" +
-",61,-1:9,61:4,23,61:17,-1:2,61,32,-1:6,61,-1:9,61,24,61:20,-1:2,61,32,-1:6," +
-"61,-1:9,61:13,66,61:8,-1:2,61,32,-1:6,61,-1:9,61:19,56,61:2,-1:2,61,32,-1:6" +
-",61,-1:9,61:4,25,61:17,-1:2,61,32,-1:6,61,-1:9,61:14,57,61:7,-1:2,61,32,-1:" +
-"6,61,-1:9,61:20,59,61,-1:2,61,32,-1:6,61,-1:9,61:15,26,61:6,-1:2,61,32,-1:6" +
-",61,-1:9,61:15,27,61:6,-1:2,61,32,-1:6,61,-1:9,61:3,60,61:18,-1:2,61,32,-1:" +
-"6,61,-1:9,61:4,28,61:17,-1:2,61,32,-1:6,61,-1:9,61:7,46,61:14,-1:2,61,32,-1" +
-":6,61,-1:9,61,49,61:20,-1:2,61,32,-1:6,61,-1:9,48,61:21,-1:2,61,32,-1:6,61," +
-"-1:9,61:6,55,61:15,-1:2,61,32,-1:6,61,-1:9,61:14,58,61:7,-1:2,61,32,-1:6,61" +
-",-1:9,61:7,34,61:14,-1:2,61,32,-1:6,61,-1:9,61:6,35,61:15,-1:2,61,32,-1:6,6" +
-"1,-1:9,61:6,36,61:15,-1:2,61,32,-1:6,61,-1:9,61:17,37,61,38,61:2,-1:2,61,32" +
-",-1:6,61,-1:9,61:10,39,61:11,-1:2,61,32,-1:6,61,-1:9,61:6,62,61:15,-1:2,61," +
-"32,-1:6,61,-1:9,61,40,61:17,64,61:2,-1:2,61,32,-1:6,61,-1:9,41,61:20,42,-1:" +
-"2,61,32,-1:6,61,-1:9,61:2,63,61:19,-1:2,61,32,-1:6,61,-1:9,61,65,61:20,-1:2" +
-",61,32,-1:6,61,-1:8");
+	private int yy_nxt[][] = unpackFromString(58,42,
+"-1,1,66,72,73,66,74,66,75,76,77,66,78,66:4,79,80,66:4,2,3,66,4,31,3,33,-1:3" +
+",66,5,6,7,8,9,10,11,12,-1,66,81,66:10,32,66:9,-1:2,66,34,-1:6,66,-1:74,3,-1" +
+":3,3,-1:39,4,-1:52,15,-1:41,16,-1:5,66:22,-1:2,66,34,-1:6,66,-1:9,31:23,-1," +
+"31:2,13,31:3,35,-1,31:8,-1:2,66:8,17,66:13,-1:2,66,34,-1:6,66,-1:45,14,-1:3" +
+"1,31,-1:3,31:3,-1:9,66:8,46,66:13,-1:2,66,34,-1:6,66,-1:9,66:12,47,66:9,-1:" +
+"2,66,34,-1:6,66,-1:9,66:7,48,66:14,-1:2,66,34,-1:6,66,-1:9,66:16,82,66:5,-1" +
+":2,66,34,-1:6,66,-1:9,66:18,18,66:3,-1:2,66,34,-1:6,66,-1:9,66:20,19,66,-1:" +
+"2,66,34,-1:6,66,-1:9,66,49,66:20,-1:2,66,34,-1:6,66,-1:9,51,66:21,-1:2,66,3" +
+"4,-1:6,66,-1:9,66:3,20,66:18,-1:2,66,34,-1:6,66,-1:9,66:11,21,66:10,-1:2,66" +
+",34,-1:6,66,-1:9,66:19,54,66:2,-1:2,66,34,-1:6,66,-1:9,66:20,55,66,-1:2,66," +
+"34,-1:6,66,-1:9,66:8,22,66:13,-1:2,66,34,-1:6,66,-1:9,66:6,56,66:15,-1:2,66" +
+",34,-1:6,66,-1:9,66:12,57,66:9,-1:2,66,34,-1:6,66,-1:9,66:3,23,66:18,-1:2,6" +
+"6,34,-1:6,66,-1:9,66:4,58,66:17,-1:2,66,34,-1:6,66,-1:9,66:3,59,66:18,-1:2," +
+"66,34,-1:6,66,-1:9,66:4,24,66:17,-1:2,66,34,-1:6,66,-1:9,66:4,25,66:17,-1:2" +
+",66,34,-1:6,66,-1:9,66,26,66:20,-1:2,66,34,-1:6,66,-1:9,66:13,71,66:8,-1:2," +
+"66,34,-1:6,66,-1:9,66:19,61,66:2,-1:2,66,34,-1:6,66,-1:9,66:4,27,66:17,-1:2" +
+",66,34,-1:6,66,-1:9,66:14,62,66:7,-1:2,66,34,-1:6,66,-1:9,66:20,64,66,-1:2," +
+"66,34,-1:6,66,-1:9,66:15,28,66:6,-1:2,66,34,-1:6,66,-1:9,66:15,29,66:6,-1:2" +
+",66,34,-1:6,66,-1:9,66:3,65,66:18,-1:2,66,34,-1:6,66,-1:9,66:4,30,66:17,-1:" +
+"2,66,34,-1:6,66,-1:9,66:7,50,66:14,-1:2,66,34,-1:6,66,-1:9,66,53,66:20,-1:2" +
+",66,34,-1:6,66,-1:9,52,66:21,-1:2,66,34,-1:6,66,-1:9,66:6,60,66:15,-1:2,66," +
+"34,-1:6,66,-1:9,66:14,63,66:7,-1:2,66,34,-1:6,66,-1:9,66:19,36,66:2,-1:2,66" +
+",34,-1:6,66,-1:9,66:7,37,66:14,-1:2,66,34,-1:6,66,-1:9,66:6,38,66:15,-1:2,6" +
+"6,34,-1:6,66,-1:9,66:6,39,66:15,-1:2,66,34,-1:6,66,-1:9,66:17,40,66,41,66:2" +
+",-1:2,66,34,-1:6,66,-1:9,66:10,42,66:11,-1:2,66,34,-1:6,66,-1:9,66:6,67,66:" +
+"15,-1:2,66,34,-1:6,66,-1:9,66,43,66:17,69,66:2,-1:2,66,34,-1:6,66,-1:9,44,6" +
+"6:20,45,-1:2,66,34,-1:6,66,-1:9,66:2,68,66:19,-1:2,66,34,-1:6,66,-1:9,66,70" +
+",66:20,-1:2,66,34,-1:6,66,-1:8");
 
 	public java_cup.runtime.Symbol next_token ()
 		throws java.io.IOException {
@@ -391,199 +399,199 @@ public class Scaner implements java_cup.runtime.Scanner {
 					case -4:
 						break;
 					case 4:
-						{
-  yybegin(NEGATE); 
-  return new Symbol(sym.COMMA, yyline,yychar,new TokenValue(yytext())); 
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.INTLIT,yyline,yychar,new TokenValue(yytext())); 
 }
 					case -5:
 						break;
 					case 5:
 						{
   yybegin(NEGATE); 
-  return new Symbol(sym.LEFTBRACKET, yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.COMMA, yyline,yychar,new TokenValue(yytext())); 
 }
 					case -6:
 						break;
 					case 6:
 						{
   yybegin(NEGATE); 
-  return new Symbol(sym.RIGHTBRACKET, yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.LEFTBRACKET, yyline,yychar,new TokenValue(yytext())); 
 }
 					case -7:
 						break;
 					case 7:
 						{
   yybegin(NEGATE); 
-  return new Symbol(sym.EQUAL, yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.RIGHTBRACKET, yyline,yychar,new TokenValue(yytext())); 
 }
 					case -8:
 						break;
 					case 8:
-						{ 
-  yybegin(NEGATE);
-  return new Symbol(sym.LESSTHAN,yyline,yychar,new TokenValue(yytext()));
+						{
+  yybegin(NEGATE); 
+  return new Symbol(sym.EQUAL, yyline,yychar,new TokenValue(yytext()));
 }
 					case -9:
 						break;
 					case 9:
 						{ 
   yybegin(NEGATE);
-  return new Symbol(sym.GREATERTHAN,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.LESSTHAN,yyline,yychar,new TokenValue(yytext()));
 }
 					case -10:
 						break;
 					case 10:
-						{
-  yybegin(YYINITIAL);
-  return new Symbol(sym.DOT,yyline,yychar,new TokenValue(yytext()));
+						{ 
+  yybegin(NEGATE);
+  return new Symbol(sym.GREATERTHAN,yyline,yychar,new TokenValue(yytext()));
 }
 					case -11:
 						break;
 					case 11:
-						
+						{
+  yybegin(YYINITIAL);
+  return new Symbol(sym.DOT,yyline,yychar,new TokenValue(yytext()));
+}
 					case -12:
 						break;
 					case 12:
-						{ 
-  yybegin(YYINITIAL); 
-  return new Symbol(sym.STRINGLIT,yyline,yychar, new TokenValue(yytext().substring(1,yytext().length()-1))); 
-}
+						
 					case -13:
 						break;
 					case 13:
 						{ 
-  yybegin(NEGATE);
-  return new Symbol(sym.NOTEQUAL, yyline,yychar,new TokenValue(yytext()));
+  yybegin(YYINITIAL); 
+  return new Symbol(sym.STRINGLIT,yyline,yychar, new TokenValue(yytext().substring(1,yytext().length()-1))); 
 }
 					case -14:
 						break;
 					case 14:
 						{ 
   yybegin(NEGATE);
-  return new Symbol(sym.LTOE,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.NOTEQUAL, yyline,yychar,new TokenValue(yytext()));
 }
 					case -15:
 						break;
 					case 15:
 						{ 
   yybegin(NEGATE);
-  return new Symbol(sym.GTOE, yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.LTOE,yyline,yychar,new TokenValue(yytext()));
 }
 					case -16:
 						break;
 					case 16:
-						{
-  yybegin(YYINITIAL);
-  return new Symbol(sym.SUM,yyline,yychar,new TokenValue(yytext()));
+						{ 
+  yybegin(NEGATE);
+  return new Symbol(sym.GTOE, yyline,yychar,new TokenValue(yytext()));
 }
 					case -17:
 						break;
 					case 17:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.MAX,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.SUM,yyline,yychar,new TokenValue(yytext()));
 }
 					case -18:
 						break;
 					case 18:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.MIN,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.MAX,yyline,yychar,new TokenValue(yytext()));
 }
 					case -19:
 						break;
 					case 19:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ASC,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.MIN,yyline,yychar,new TokenValue(yytext()));
 }
 					case -20:
 						break;
 					case 20:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.AVG,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.ASC,yyline,yychar,new TokenValue(yytext()));
 }
 					case -21:
 						break;
 					case 21:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.FROM,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.AVG,yyline,yychar,new TokenValue(yytext()));
 }
 					case -22:
 						break;
 					case 22:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.DESC,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.FROM,yyline,yychar,new TokenValue(yytext()));
 }
 					case -23:
 						break;
 					case 23:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.COUNT,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.DESC,yyline,yychar,new TokenValue(yytext()));
 }
 					case -24:
 						break;
 					case 24:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.WHERE,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.LIMIT,yyline,yychar,new TokenValue(yytext()));
 }
 					case -25:
 						break;
 					case 25:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.SELECT,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.COUNT,yyline,yychar,new TokenValue(yytext()));
 }
 					case -26:
 						break;
 					case 26:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ORDERBY,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.WHERE,yyline,yychar,new TokenValue(yytext()));
 }
 					case -27:
 						break;
 					case 27:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.GROUPBY,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.SELECT,yyline,yychar,new TokenValue(yytext()));
 }
 					case -28:
 						break;
 					case 28:
 						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.DISTINCT,yyline,yychar,new TokenValue(yytext()));
+  return new Symbol(sym.ORDERBY,yyline,yychar,new TokenValue(yytext()));
 }
 					case -29:
 						break;
-					case 30:
-						{ 
+					case 29:
+						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.GROUPBY,yyline,yychar,new TokenValue(yytext()));
 }
 					case -30:
 						break;
-					case 32:
-						{ 
+					case 30:
+						{
   yybegin(YYINITIAL);
-  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+  return new Symbol(sym.DISTINCT,yyline,yychar,new TokenValue(yytext()));
 }
 					case -31:
 						break;
-					case 34:
+					case 32:
 						{ 
   yybegin(YYINITIAL);
   return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
 }
 					case -32:
 						break;
-					case 35:
+					case 34:
 						{ 
   yybegin(YYINITIAL);
   return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
@@ -877,6 +885,48 @@ public class Scaner implements java_cup.runtime.Scanner {
 }
 					case -74:
 						break;
+					case 77:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -75:
+						break;
+					case 78:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -76:
+						break;
+					case 79:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -77:
+						break;
+					case 80:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -78:
+						break;
+					case 81:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -79:
+						break;
+					case 82:
+						{ 
+  yybegin(YYINITIAL);
+  return new Symbol(sym.ID,yyline,yychar,new TokenValue(yytext())); 
+}
+					case -80:
+						break;
 					default:
 						yy_error(YY_E_INTERNAL,false);
 					case -1:
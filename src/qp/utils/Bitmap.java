@@ -0,0 +1,121 @@
+/**
+ * Set of row numbers of a table, one bit per row
+ **/
+
+package qp.utils;
+
+import java.util.Arrays;
+
+/**
+ * A bitmap keeps one bit per row in an array of 64 bit words, so that bitmaps are
+ * combined a word at a time. In a bitmap file it is stored either as these words or as
+ * runs of consecutive rows, each run a first row and a length, whichever is smaller:
+ * runs when the table is clustered on the attribute, words when its values are spread.
+ */
+public class Bitmap {
+
+    long[] words;             // Bit i % 64 of word i / 64 is set when row i is
+
+    public Bitmap() {
+        this(new long[1]);
+    }
+
+    public Bitmap(long[] words) {
+        this.words = words;
+    }
+
+    public long[] getWords() {
+        return words;
+    }
+
+    /** Number of rows that are set **/
+    public long cardinality() {
+        long count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Whether the given row is set
+     **/
+    public boolean contains(int row) {
+        int w = row >>> 6;
+        return w < words.length && (words[w] & (1L << row)) != 0;
+    }
+
+    /**
+     * Sets the given row
+     **/
+    public void add(int row) {
+        int w = row >>> 6;
+        if (w >= words.length) {
+            words = Arrays.copyOf(words, Math.max(w + 1, 2 * words.length));
+        }
+        words[w] |= 1L << row;
+    }
+
+    /**
+     * Sets the rows from start for the given length
+     **/
+    public void addRun(int start, int length) {
+        for (int row = start; row < start + length; ++row) {
+            add(row);
+        }
+    }
+
+    /**
+     * The first row set from the given row on, -1 if there is none
+     **/
+    public int nextSetRow(int row) {
+        int w = row >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << row);
+        while (word == 0) {
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Number of runs of consecutive rows that are set
+     **/
+    public int numRuns() {
+        int count = 0;
+        long carry = 0;
+        for (long word : words) {
+            /** a run starts at a set bit whose lower neighbour is not set **/
+            count += Long.bitCount(word & ~((word << 1) | carry));
+            carry = word >>> 63;
+        }
+        return count;
+    }
+
+    /**
+     * The rows set in both bitmaps
+     **/
+    public Bitmap and(Bitmap other) {
+        long[] result = new long[Math.min(words.length, other.words.length)];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = words[i] & other.words[i];
+        }
+        return new Bitmap(result);
+    }
+
+    /**
+     * The rows set in either bitmap
+     **/
+    public Bitmap or(Bitmap other) {
+        long[] result = Arrays.copyOf(words, Math.max(words.length, other.words.length));
+        for (int i = 0; i < other.words.length; ++i) {
+            result[i] |= other.words[i];
+        }
+        return new Bitmap(result);
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * BitmapReader is a helper class that reads the bitmap index file of one attribute of a table
+ */
+
+package qp.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The bitmaps of an attribute with few distinct values are small, so the whole file is read
+ * into memory when it is opened. A condition comparing the attribute with a constant is
+ * answered by combining the bitmaps of the values that satisfy it.
+ */
+public class BitmapReader {
+
+    final String filename;     // Filename to read from
+
+    int type;                  // Attribute.INT/REAL/STRING of the values indexed
+    int numRow;                // Number of rows of the table
+    int numPage;               // Number of pages of the table
+    int numValues;             // Number of distinct values
+    long tablelength;          // Length of the table file the bitmaps were built from
+    long tablestamp;           // Stamp of the table file the bitmaps were built from
+    int[] pagestarts;          // First row of each table page
+    ArrayList<Object> values;  // Distinct values, in increasing order
+    ArrayList<Bitmap> bitmaps; // Bitmap of the rows holding each value
+
+    // filename: Filename of the bitmap file to read from
+    public BitmapReader(String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * Returns true if the attribute of the table has a bitmap file that was built
+     * * from the current table file, with the same length and header stamp.
+     * * Only the headers of the two files are read
+     **/
+    public static boolean hasBitmap(String tabname, Attribute attr) {
+        File table = new File(tabname + ".tbl");
+        if (!new File(BitmapWriter.fileName(tabname, attr)).isFile() || !table.isFile()) {
+            return false;
+        }
+        BitmapReader reader = new BitmapReader(BitmapWriter.fileName(tabname, attr));
+        try (DataInputStream in = new DataInputStream(new FileInputStream(reader.filename))) {
+            if (!reader.readHeader(in)) {
+                return false;
+            }
+            return reader.tablelength == table.length()
+                    && reader.tablestamp == PageFormat.readStamp(table.getPath());
+        } catch (IOException io) {
+            return false;
+        }
+    }
+
+    public int getNumRow() {
+        return numRow;
+    }
+
+    public int getNumPages() {
+        return numPage;
+    }
+
+    public int getNumValues() {
+        return numValues;
+    }
+
+    public String getFileName() {
+        return filename;
+    }
+
+    // Reads the whole file
+    public boolean open() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            if (!readHeader(in)) {
+                throw new IOException(filename + " is not a bitmap file");
+            }
+            pagestarts = new int[numPage];
+            for (int i = 0; i < numPage; ++i) {
+                pagestarts[i] = in.readInt();
+            }
+            values = new ArrayList<>(numValues);
+            bitmaps = new ArrayList<>(numValues);
+            for (int v = 0; v < numValues; ++v) {
+                if (type == Attribute.INT) {
+                    values.add(in.readInt());
+                } else if (type == Attribute.REAL) {
+                    values.add(in.readFloat());
+                } else {
+                    values.add(in.readUTF());
+                }
+                bitmaps.add(readBitmap(in));
+            }
+        } catch (IOException io) {
+            System.out.printf("%s:reading the bitmap file error\n", filename);
+            System.out.println(io);
+            return false;
+        }
+        return true;
+    }
+
+    // Helper method to read a bitmap in either encoding
+    private Bitmap readBitmap(DataInputStream in) throws IOException {
+        int encoding = in.readByte();
+        int count = in.readInt();
+        if (encoding == BitmapWriter.WORDS) {
+            long[] words = new long[count];
+            for (int i = 0; i < count; ++i) {
+                words[i] = in.readLong();
+            }
+            return new Bitmap(words);
+        } else if (encoding != BitmapWriter.RUNS) {
+            throw new IOException(filename + " has a bitmap of unknown encoding " + encoding);
+        }
+        Bitmap bitmap = new Bitmap(new long[(numRow + 63) / 64]);
+        for (int i = 0; i < count; ++i) {
+            int start = in.readInt();
+            bitmap.addRun(start, in.readInt());
+        }
+        return bitmap;
+    }
+
+    // Helper method to read the header at the start of the file, returns false if there is none
+    private boolean readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != BitmapWriter.MAGIC || in.readInt() != BitmapWriter.VERSION) {
+            return false;
+        }
+        type = in.readInt();
+        numRow = in.readInt();
+        numPage = in.readInt();
+        numValues = in.readInt();
+        tablelength = in.readLong();
+        tablestamp = in.readLong();
+        return true;
+    }
+
+    /**
+     * The rows whose value compares with the key as the condition type
+     * * (Condition.EQUAL, LESSTHAN, ...) asks, the union of the bitmaps of those values
+     **/
+    @SuppressWarnings("unchecked")
+    public Bitmap select(int exprtype, Object key) {
+        Bitmap result = new Bitmap();
+        for (int v = 0; v < numValues; ++v) {
+            int flag = ((Comparable<Object>) values.get(v)).compareTo(key);
+            boolean selected;
+            switch (exprtype) {
+                case Condition.LESSTHAN:
+                    selected = flag < 0;
+                    break;
+                case Condition.GREATERTHAN:
+                    selected = flag > 0;
+                    break;
+                case Condition.LTOE:
+                    selected = flag <= 0;
+                    break;
+                case Condition.GTOE:
+                    selected = flag >= 0;
+                    break;
+                case Condition.EQUAL:
+                    selected = flag == 0;
+                    break;
+                case Condition.NOTEQUAL:
+                    selected = flag != 0;
+                    break;
+                default:
+                    selected = false;
+            }
+            if (selected) {
+                result = result.or(bitmaps.get(v));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The page of the table that holds the row
+     **/
+    public int pageOf(int row) {
+        int page = Arrays.binarySearch(pagestarts, row);
+        if (page < 0) {
+            page = -page - 2;
+        }
+        return page;
+    }
+
+    /**
+     * The first row of the page of the table
+     **/
+    public int firstRowOf(int page) {
+        return pagestarts[page];
+    }
+}
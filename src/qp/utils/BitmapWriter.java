@@ -0,0 +1,139 @@
+/**
+ * BitmapWriter is a helper class that writes the bitmap index file of one attribute of a table
+ */
+
+package qp.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A bitmap index file starts with a header (magic number, format version, attribute type,
+ * number of rows, number of table pages, number of distinct values and the length and
+ * stamp of the table file it was built from). It is followed by the first row of every
+ * table page, so that a row is found on its page, and then by every distinct value in
+ * increasing order with the bitmap of the rows holding it. Like the containers of a
+ * Roaring bitmap, each bitmap is stored in the smaller of two encodings: RUNS, the number
+ * of runs followed by the first row and length of each run, or WORDS, the number of 64 bit
+ * words followed by the words. INT and REAL values take 4 bytes, STRING values are written
+ * with DataOutputStream.writeUTF.
+ */
+public class BitmapWriter {
+
+    public static final int MAGIC = 0x5150424D;   // "QPBM"
+    public static final int VERSION = 3;          // Version of the bitmap file layout
+    public static final int RUNS = 1;             // Bitmap stored as runs of rows
+    public static final int WORDS = 2;            // Bitmap stored as words of bits
+
+    final String filename;    // Filename to write to
+    final int type;           // Type of the attribute indexed
+
+    int numRow = 0;                                    // Number of rows added
+    int[] pagestarts = new int[16];                    // First row of each table page
+    int numPage = 0;                                   // Number of table pages seen
+    TreeMap<Object, Bitmap> bitmaps = new TreeMap<>(); // Bitmap of each distinct value
+
+    // filename: Filename of the bitmap file to write to
+    // type: Attribute.INT/REAL/STRING of the values indexed
+    public BitmapWriter(String filename, int type) {
+        this.filename = filename;
+        this.type = type;
+    }
+
+    /** Name of the bitmap index file of the given attribute of a table **/
+    public static String fileName(String tabname, Attribute attr) {
+        return tabname + "." + attr.getColName() + ".bmp";
+    }
+
+    public int getNumRow() {
+        return numRow;
+    }
+
+    public int getNumValues() {
+        return bitmaps.size();
+    }
+
+    public String getFileName() {
+        return filename;
+    }
+
+    /**
+     * Adds the value of the next row of the table, which is on the given page.
+     * * Rows come in table order, so the pages do not decrease
+     **/
+    public void next(Object value, int pageno) {
+        while (numPage <= pageno) {
+            if (numPage == pagestarts.length) {
+                pagestarts = Arrays.copyOf(pagestarts, 2 * numPage);
+            }
+            pagestarts[numPage++] = numRow;
+        }
+        bitmaps.computeIfAbsent(value, v -> new Bitmap()).add(numRow);
+        ++numRow;
+    }
+
+    /**
+     * Writes the file, once the table file is complete
+     * * tablelength, tablestamp: length and header stamp of the table file the bitmaps were built from
+     **/
+    public boolean close(long tablelength, long tablestamp) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(type);
+            out.writeInt(numRow);
+            out.writeInt(numPage);
+            out.writeInt(bitmaps.size());
+            out.writeLong(tablelength);
+            out.writeLong(tablestamp);
+            for (int i = 0; i < numPage; ++i) {
+                out.writeInt(pagestarts[i]);
+            }
+            for (Map.Entry<Object, Bitmap> entry : bitmaps.entrySet()) {
+                if (type == Attribute.INT) {
+                    out.writeInt((Integer) entry.getKey());
+                } else if (type == Attribute.REAL) {
+                    out.writeFloat((Float) entry.getKey());
+                } else {
+                    out.writeUTF((String) entry.getKey());
+                }
+                writeBitmap(out, entry.getValue());
+            }
+        } catch (IOException io) {
+            System.out.printf("%s:writing the bitmap file error\n", filename);
+            System.out.println(io);
+            return false;
+        }
+        return true;
+    }
+
+    // Helper method to write a bitmap as runs, 8 bytes per run, or as words, 8 bytes per word
+    private void writeBitmap(DataOutputStream out, Bitmap bitmap) throws IOException {
+        int numRuns = bitmap.numRuns();
+        long[] words = bitmap.getWords();
+        if (numRuns <= words.length) {
+            out.writeByte(RUNS);
+            out.writeInt(numRuns);
+            for (int row = bitmap.nextSetRow(0); row >= 0; ) {
+                int end = row + 1;
+                while (bitmap.contains(end)) {
+                    end++;
+                }
+                out.writeInt(row);
+                out.writeInt(end - row);
+                row = bitmap.nextSetRow(end);
+            }
+        } else {
+            out.writeByte(WORDS);
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Bloom filter on the hash codes of the values of an attribute
+ **/
+
+package qp.utils;
+
+/**
+ * A Bloom filter answers whether a value may be in a set using a few bits per value. Each
+ * value sets numProbes bits chosen from its hash code, and a value whose bits are not all
+ * set is certainly not in the set. With 10 bits per value and 7 probes about 1% of the
+ * values not in the set are let through. The probes are derived from two mixes of the hash
+ * code (double hashing), so a value is hashed once however many probes there are.
+ */
+public class BloomFilter {
+
+    public static final int BITS_PER_KEY = 10;   // Bits of the filter per value added
+    public static final int NUM_PROBES = 7;      // Bits set and checked per value
+    static final int MAX_BITS = 1 << 26;         // Most bits of a filter, 8 MB
+
+    final long[] words;       // Bits of the filter
+    final int numBits;        // Number of bits, a power of 2
+
+    /**
+     * Filter sized for the given number of values
+     **/
+    public BloomFilter(long numKeys) {
+        long bits = Math.max(64, Math.min(MAX_BITS, numKeys * BITS_PER_KEY));
+        numBits = Integer.highestOneBit((int) (bits - 1)) << 1;
+        words = new long[numBits >>> 6];
+    }
+
+    public int getNumBits() {
+        return numBits;
+    }
+
+    /** Adds the value with the given hash code **/
+    public void add(int hash) {
+        int h1 = mix(hash);
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < NUM_PROBES; ++i) {
+            int bit = (h1 + i * h2) & (numBits - 1);
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /** False if the value with the given hash code was certainly not added **/
+    public boolean mightContain(int hash) {
+        int h1 = mix(hash);
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < NUM_PROBES; ++i) {
+            int bit = (h1 + i * h2) & (numBits - 1);
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Helper method to spread the bits of a hash code, the finalizer of MurmurHash3
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
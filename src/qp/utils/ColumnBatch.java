@@ -0,0 +1,252 @@
+/**
+ * Batch that keeps a page of tuples column by column
+ **/
+
+package qp.utils;
+
+import java.util.ArrayList;
+
+/**
+ * ColumnBatch - a page kept as one primitive array per column (int[] for INT,
+ * float[] for REAL, Object[] for STRING columns) and a selection vector with
+ * the indices of the rows that are part of the batch, in order.
+ *
+ * Select removes rows by narrowing the selection vector and Project builds a
+ * batch that refers to the column arrays of its input, so neither copies tuples.
+ * Operators that work on tuples keep using the methods of Batch: the first
+ * call that needs tuples copies the selected rows into tuples (materializes
+ * the batch), from then on the batch behaves as a plain Batch.
+ */
+public class ColumnBatch extends Batch {
+
+    TupleLayout layout;     // Layout of the tuples of the batch
+    Object[] vectors;       // Values of each column, int[], float[] or Object[] by the kind of the column
+    int numRows;            // Number of rows stored in the column arrays
+    int[] selection;        // Indices of the selected rows
+    int numSelected;        // Number of selected rows
+    boolean materialized;   // Whether the selected rows have been copied into the tuple list
+
+    /** Empty batch with room for numtuple rows of the schema **/
+    public ColumnBatch(Schema schema, int numtuple) {
+        super(numtuple);
+        layout = schema.getLayout();
+        int numcols = layout.getNumCols();
+        vectors = new Object[numcols];
+        for (int i = 0; i < numcols; ++i) {
+            vectors[i] = newVector(layout.kindOf(i), numtuple);
+        }
+        selection = new int[numtuple];
+    }
+
+    /** Batch sharing the given column arrays and selection vector **/
+    private ColumnBatch(TupleLayout layout, Object[] vectors, int numRows, int[] selection, int numSelected, int numtuple) {
+        super(numtuple);
+        this.layout = layout;
+        this.vectors = vectors;
+        this.numRows = numRows;
+        this.selection = selection;
+        this.numSelected = numSelected;
+    }
+
+    private static Object newVector(byte kind, int length) {
+        if (kind == TupleLayout.INT) {
+            return new int[length];
+        } else if (kind == TupleLayout.REAL) {
+            return new float[length];
+        } else {
+            return new Object[length];
+        }
+    }
+
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    /** Whether the batch is still kept by column, false once it has been materialized **/
+    public boolean isVectorized() {
+        return !materialized;
+    }
+
+    public int[] getIntColumn(int col) {
+        return (int[]) vectors[col];
+    }
+
+    public float[] getFloatColumn(int col) {
+        return (float[]) vectors[col];
+    }
+
+    public Object[] getObjectColumn(int col) {
+        return (Object[]) vectors[col];
+    }
+
+    /** The selection vector, only its first size() entries are in use **/
+    public int[] getSelection() {
+        return selection;
+    }
+
+    /** Marks the first num rows of the column arrays as filled in and selects all of them **/
+    public void setNumRows(int num) {
+        numRows = num;
+        for (int k = 0; k < num; ++k) {
+            selection[k] = k;
+        }
+        numSelected = num;
+    }
+
+    /** Keeps only the first num entries of the selection vector **/
+    public void setNumSelected(int num) {
+        numSelected = num;
+    }
+
+    /**
+     * Batch with the given columns of this batch in the given order, for the
+     * * schema made of those columns. The column arrays are shared, not copied
+     **/
+    public ColumnBatch project(int[] columns, Schema schema) {
+        Object[] newvectors = new Object[columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            newvectors[i] = vectors[columns[i]];
+        }
+        return new ColumnBatch(schema.getLayout(), newvectors, numRows, selection, numSelected, capacity());
+    }
+
+    /**
+     * Appends up to count selected rows of the source batch, starting at its
+     * * selected row from, as long as there is room. Returns the number of rows appended
+     **/
+    public int appendRows(ColumnBatch source, int from, int count) {
+        if (materialized || source.materialized || numSelected != numRows) {
+            count = Math.min(count, Math.min(source.size() - from, capacity() - size()));
+            for (int k = 0; k < count; ++k) {
+                add(source.get(from + k));
+            }
+            return Math.max(0, count);
+        }
+        count = Math.min(count, Math.min(source.size() - from, selection.length - numRows));
+        if (count <= 0) return 0;
+        boolean dense = source.numSelected == source.numRows;
+        for (int c = 0; c < vectors.length; ++c) {
+            Object src = source.vectors[c];
+            Object dst = vectors[c];
+            if (dense) {
+                System.arraycopy(src, from, dst, numRows, count);
+            } else if (layout.kindOf(c) == TupleLayout.INT) {
+                int[] s = (int[]) src, d = (int[]) dst;
+                for (int k = 0; k < count; ++k) d[numRows + k] = s[source.selection[from + k]];
+            } else if (layout.kindOf(c) == TupleLayout.REAL) {
+                float[] s = (float[]) src, d = (float[]) dst;
+                for (int k = 0; k < count; ++k) d[numRows + k] = s[source.selection[from + k]];
+            } else {
+                Object[] s = (Object[]) src, d = (Object[]) dst;
+                for (int k = 0; k < count; ++k) d[numRows + k] = s[source.selection[from + k]];
+            }
+        }
+        for (int k = 0; k < count; ++k) {
+            selection[numSelected++] = numRows++;
+        }
+        return count;
+    }
+
+    /** Row r of the column arrays as a tuple **/
+    private Tuple rowAt(int r) {
+        int[] ints = new int[layout.numInts];
+        float[] floats = new float[layout.numFloats];
+        Object[] objects = new Object[layout.numObjects];
+        for (int c = 0; c < vectors.length; ++c) {
+            int slot = layout.slotOf(c);
+            byte kind = layout.kindOf(c);
+            if (kind == TupleLayout.INT) {
+                ints[slot] = ((int[]) vectors[c])[r];
+            } else if (kind == TupleLayout.REAL) {
+                floats[slot] = ((float[]) vectors[c])[r];
+            } else {
+                objects[slot] = ((Object[]) vectors[c])[r];
+            }
+        }
+        return new Tuple(layout, ints, floats, objects);
+    }
+
+    /** Copies the selected rows into the tuple list, after which the batch is a plain Batch **/
+    private void materialize() {
+        if (materialized) return;
+        for (int k = 0; k < numSelected; ++k) {
+            super.add(rowAt(selection[k]));
+        }
+        materialized = true;
+        vectors = null;
+        selection = null;
+    }
+
+    /** Adds the tuple as a new row, as long as the batch is dense and there is room **/
+    public void add(Tuple t) {
+        if (materialized || numSelected != numRows || numRows == selection.length || t.getLayout() != layout) {
+            materialize();
+            super.add(t);
+            return;
+        }
+        for (int c = 0; c < vectors.length; ++c) {
+            byte kind = layout.kindOf(c);
+            if (kind == TupleLayout.INT) {
+                ((int[]) vectors[c])[numRows] = t.getInt(c);
+            } else if (kind == TupleLayout.REAL) {
+                ((float[]) vectors[c])[numRows] = t.getFloat(c);
+            } else {
+                ((Object[]) vectors[c])[numRows] = t.dataAt(c);
+            }
+        }
+        selection[numSelected++] = numRows++;
+    }
+
+    public int size() {
+        return materialized ? super.size() : numSelected;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public Tuple get(int i) {
+        materialize();
+        return super.get(i);
+    }
+
+    public ArrayList<Tuple> getTuples() {
+        materialize();
+        return super.getTuples();
+    }
+
+    public void add(Tuple t, int i) {
+        materialize();
+        super.add(t, i);
+    }
+
+    public void clear() {
+        materialize();
+        super.clear();
+    }
+
+    public void clearTuples() {
+        materialize();
+        super.clearTuples();
+    }
+
+    public boolean contains(Tuple t) {
+        materialize();
+        return super.contains(t);
+    }
+
+    public int indexOf(Tuple t) {
+        materialize();
+        return super.indexOf(t);
+    }
+
+    public void remove(int i) {
+        materialize();
+        super.remove(i);
+    }
+
+    public void set(Tuple t, int i) {
+        materialize();
+        super.set(t, i);
+    }
+}
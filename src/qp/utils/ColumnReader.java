@@ -0,0 +1,144 @@
+/**
+ * ColumnReader is a helper class that reads the values of one attribute from its column file
+ */
+
+package qp.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+public class ColumnReader {
+
+    final String filename;    // Filename to read from
+    final int type;           // Type of the attribute stored in the file
+
+    int numRow;               // Number of rows, as recorded in the footer
+    long tablelength;         // Length of the table file written with the column
+    long tablestamp;          // Stamp of the table file written with the column
+    int numRead = 0;          // Number of values read
+    DataInputStream in;       // Input file stream
+
+    // filename: Filename of the column file to read from
+    // type: Attribute.INT/REAL/STRING of the values in the column
+    public ColumnReader(String filename, int type) {
+        this.filename = filename;
+        this.type = type;
+    }
+
+    /**
+     * Returns true if every given attribute of the table has a column file that was written
+     * * with the current table file, with the same length and header stamp
+     **/
+    public static boolean hasColumnFiles(String tabname, List<Attribute> attrs) {
+        File table = new File(tabname + ".tbl");
+        try {
+            long stamp = PageFormat.readStamp(table.getPath());
+            for (Attribute attr : attrs) {
+                ColumnReader reader = new ColumnReader(ColumnWriter.fileName(tabname, attr), attr.getType());
+                if (!new File(reader.filename).isFile()) {
+                    return false;
+                }
+                try (RandomAccessFile raf = new RandomAccessFile(reader.filename, "r")) {
+                    if (!reader.readFooter(raf) || reader.tablelength != table.length() || reader.tablestamp != stamp) {
+                        return false;
+                    }
+                }
+            }
+        } catch (IOException io) {
+            return false;
+        }
+        return true;
+    }
+
+    public int getNumRow() {
+        return numRow;
+    }
+
+    public int getNumRead() {
+        return numRead;
+    }
+
+    public String getFileName() {
+        return filename;
+    }
+
+    // Reads the number of rows from the footer and opens the file for reading the values
+    public boolean open() {
+        try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+            if (!readFooter(raf)) {
+                throw new IOException(filename + " has no column file footer");
+            }
+
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+            if (in.readInt() != ColumnWriter.MAGIC || in.readInt() != ColumnWriter.VERSION) {
+                throw new IOException(filename + " has an unsupported column file header");
+            }
+            if (in.readInt() != type) {
+                throw new IOException(filename + " does not hold values of the expected type");
+            }
+        } catch (IOException io) {
+            System.out.printf("%s:reading the column file error\n", filename);
+            System.out.println(io);
+            return false;
+        }
+        numRead = 0;
+        return true;
+    }
+
+    // Helper method to read the footer at the end of the file, returns false if there is none
+    private boolean readFooter(RandomAccessFile raf) throws IOException {
+        if (raf.length() < ColumnWriter.HEADER_SIZE + ColumnWriter.FOOTER_SIZE) {
+            return false;
+        }
+        raf.seek(raf.length() - ColumnWriter.FOOTER_SIZE);
+        tablelength = raf.readLong();
+        tablestamp = raf.readLong();
+        numRow = raf.readInt();
+        return raf.readInt() == ColumnWriter.MAGIC;
+    }
+
+    // Returns true if all the values of the column have been read
+    public boolean isEOF() {
+        return numRead >= numRow;
+    }
+
+    // Returns the value of the next row
+    public Object next() {
+        if (isEOF()) return null;
+        Object value = null;
+        try {
+            if (type == Attribute.INT) {
+                value = in.readInt();
+            } else if (type == Attribute.REAL) {
+                value = in.readFloat();
+            } else {
+                value = in.readUTF();
+            }
+        } catch (IOException io) {
+            System.out.printf("%s:reading the column file error\n", filename);
+            System.exit(1);
+        }
+        ++numRead;
+        return value;
+    }
+
+    // Closes the input file
+    public boolean close() {
+        if (in != null) {
+            try {
+                in.close();
+                in = null;
+            } catch (IOException io) {
+                System.out.printf("%s:reading the column file error\n", filename);
+                System.out.println(io);
+                return false;
+            }
+        }
+        return true;
+    }
+}
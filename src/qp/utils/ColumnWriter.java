@@ -0,0 +1,105 @@
+/**
+ * ColumnWriter is a helper class that writes the values of one attribute of a table to its own column file
+ */
+
+package qp.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A column file starts with a header (magic number, format version and attribute type),
+ * followed by the values of the attribute in row order, and ends with a footer holding
+ * the length and stamp of the table file written with it, the number of rows and the
+ * magic number again. The column files are only used while the table file keeps that
+ * length and stamp. INT and REAL values take 4 bytes, STRING values are written with
+ * DataOutputStream.writeUTF.
+ */
+public class ColumnWriter {
+
+    public static final int MAGIC = 0x51504343;   // "QPCC"
+    public static final int VERSION = 2;          // Version of the column file layout
+    public static final int HEADER_SIZE = 12;     // magic, version and attribute type
+    public static final int FOOTER_SIZE = 24;     // table length, table stamp, number of rows and magic
+
+    final String filename;    // Filename to write to
+    final int type;           // Type of the attribute stored in the file
+
+    int numRow = 0;           // Number of values written
+    DataOutputStream out;     // Output file stream
+
+    // filename: Filename of the column file to write to
+    // type: Attribute.INT/REAL/STRING of the values in the column
+    public ColumnWriter(String filename, int type) {
+        this.filename = filename;
+        this.type = type;
+    }
+
+    /** Name of the column file of the given attribute of a table **/
+    public static String fileName(String tabname, Attribute attr) {
+        return tabname + "." + attr.getColName() + ".col";
+    }
+
+    public int getNumRow() {
+        return numRow;
+    }
+
+    public String getFileName() {
+        return filename;
+    }
+
+    // Opens the file and writes the header
+    public boolean open() {
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(type);
+        } catch (IOException io) {
+            System.out.printf("%s:writing the column file error\n", filename);
+            return false;
+        }
+        numRow = 0;
+        return true;
+    }
+
+    // Appends the value of the next row
+    public boolean next(Object value) {
+        try {
+            if (type == Attribute.INT) {
+                out.writeInt((Integer) value);
+            } else if (type == Attribute.REAL) {
+                out.writeFloat((Float) value);
+            } else {
+                out.writeUTF((String) value);
+            }
+        } catch (IOException io) {
+            System.out.printf("%s:writing the column file error\n", filename);
+            return false;
+        }
+        ++numRow;
+        return true;
+    }
+
+    // Writes the footer and closes the file, once the table file is complete
+    // tablelength, tablestamp: length and header stamp of the table file written with the column
+    public boolean close(long tablelength, long tablestamp) {
+        if (out != null) {
+            try {
+                out.writeLong(tablelength);
+                out.writeLong(tablestamp);
+                out.writeInt(numRow);
+                out.writeInt(MAGIC);
+                out.close();
+                out = null;
+            } catch (IOException io) {
+                System.out.printf("%s:writing the column file error\n", filename);
+                System.out.println(io);
+                return false;
+            }
+        }
+        return true;
+    }
+}
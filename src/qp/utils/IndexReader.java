@@ -0,0 +1,265 @@
+/**
+ * IndexReader is a helper class that looks up the rids of a key range in a B+-tree index file
+ */
+
+package qp.utils;
+
+import qp.optimizer.BufferManager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class IndexReader {
+
+    final String filename;    // Filename to read from
+
+    int pagesize;             // Number of bytes per page, as recorded in the header
+    int keytype;              // Attribute.INT/REAL/STRING of the keys
+    int keysize;              // Most bytes of a STRING key
+    int root;                 // Page of the root node
+    int height;               // Number of levels of the tree, 1 when the root is a leaf
+    int numLeaves;            // Number of leaves
+    int numEntry;             // Number of entries, one per tuple of the table
+    long tablelength;         // Length of the table file the index was built from
+    long tablestamp;          // Stamp of the table file the index was built from
+    ByteBuffer keyrange;      // Smallest and largest key of an INT or REAL index
+    int numPage = 0;          // Number of node pages read
+    FileChannel in;           // Input file channel
+
+    // filename: Filename of the index file to read from
+    public IndexReader(String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * Returns true if the attribute of the table has an index file that was built
+     * * from the current table file, with the same length and header stamp.
+     * * Only the headers of the two files are read
+     **/
+    public static boolean hasIndex(String tabname, Attribute attr) {
+        File table = new File(tabname + ".tbl");
+        if (!new File(IndexWriter.fileName(tabname, attr)).isFile() || !table.isFile()) {
+            return false;
+        }
+        IndexReader reader = new IndexReader(IndexWriter.fileName(tabname, attr));
+        try (FileInputStream header = new FileInputStream(reader.filename)) {
+            if (!reader.readHeader(header.getChannel())) {
+                return false;
+            }
+            return reader.tablelength == table.length()
+                    && reader.tablestamp == PageFormat.readStamp(table.getPath());
+        } catch (IOException io) {
+            return false;
+        }
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getNumLeaves() {
+        return numLeaves;
+    }
+
+    public int getNumEntry() {
+        return numEntry;
+    }
+
+    public int getKeyType() {
+        return keytype;
+    }
+
+    public long getTableLength() {
+        return tablelength;
+    }
+
+    public int getNumPage() {
+        return numPage;
+    }
+
+    public String getFileName() {
+        return filename;
+    }
+
+    // Opens the file and reads its header page
+    public boolean open() {
+        try {
+            in = new FileInputStream(filename).getChannel();
+            if (!readHeader(in)) {
+                throw new IOException(filename + " is not an index file");
+            }
+        } catch (IOException io) {
+            System.out.printf("%s:reading the index file error\n", filename);
+            System.out.println(io);
+            return false;
+        }
+        numPage = 0;
+        return true;
+    }
+
+    // Helper method to read the header at the start of the file, returns false if there is none
+    private boolean readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(IndexWriter.HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                return false;
+            }
+        }
+        header.flip();
+        if (header.getInt() != IndexWriter.MAGIC || header.getInt() != IndexWriter.VERSION) {
+            return false;
+        }
+        pagesize = header.getInt();
+        keytype = header.getInt();
+        keysize = header.getInt();
+        root = header.getInt();
+        height = header.getInt();
+        numLeaves = header.getInt();
+        numEntry = header.getInt();
+        tablelength = header.getLong();
+        tablestamp = header.getLong();
+        keyrange = header.slice();
+        return true;
+    }
+
+    /**
+     * Estimated fraction of the entries with a key below the given key, or at most the key
+     * * if inclusive, assuming the keys are spread evenly between the smallest and the largest
+     * * key. There is no estimate for STRING keys, half of the entries are taken then
+     **/
+    public double fractionBelow(Object key, boolean inclusive) {
+        if (numEntry == 0) {
+            return 0;
+        }
+        if (keytype == Attribute.INT) {
+            long min = keyrange.getInt(0);
+            long max = keyrange.getInt(4);
+            long below = (Integer) key - min + (inclusive ? 1 : 0);
+            return Math.min(Math.max(below, 0), max - min + 1) / (double) (max - min + 1);
+        } else if (keytype == Attribute.REAL) {
+            float min = keyrange.getFloat(0);
+            float max = keyrange.getFloat(4);
+            float value = (Float) key;
+            if (value < min || (value == min && !inclusive)) {
+                return 0;
+            } else if (value > max || (value == max && inclusive)) {
+                return 1;
+            }
+            return (value - min) / (max - min);
+        }
+        return 0.5;
+    }
+
+    /**
+     * Returns the rids of the entries with a key between lo and hi, in key order. A null bound
+     * * leaves that end of the range open. A rid is the page number of the tuple in the table
+     * * file in the high 32 bits and its slot in the page in the low 32 bits. The tree is
+     * * descended to the first leaf that may hold lo, the leaves are then read in key order
+     * * until a key beyond hi is found
+     **/
+    public long[] search(Object lo, boolean loinclusive, Object hi, boolean hiinclusive) {
+        int keyslot = IndexWriter.keySlotSize(keytype, keysize);
+        int pageno = root;
+        ByteBuffer node = readNode(pageno);
+        while (node.getInt(0) == IndexWriter.INTERNAL) {
+            /** the last child whose smallest key is below lo, duplicates of lo may end in it **/
+            int count = node.getInt(4);
+            int child = 0;
+            for (int i = 1; lo != null && i < count; ++i) {
+                int offset = IndexWriter.NODE_HEADER_SIZE + i * (keyslot + IndexWriter.CHILD_SIZE);
+                if (compareKey(node, offset, lo) >= 0) {
+                    break;
+                }
+                child = i;
+            }
+            int next = node.getInt(IndexWriter.NODE_HEADER_SIZE + child * (keyslot + IndexWriter.CHILD_SIZE) + keyslot);
+            BufferManager.unpin(filename, pageno);
+            pageno = next;
+            node = readNode(pageno);
+        }
+
+        long[] rids = new long[16];
+        int numrids = 0;
+        boolean done = false;
+        while (!done) {
+            int count = node.getInt(4);
+            for (int i = 0; i < count; ++i) {
+                int offset = IndexWriter.NODE_HEADER_SIZE + i * (keyslot + IndexWriter.RID_SIZE);
+                if (lo != null) {
+                    int flag = compareKey(node, offset, lo);
+                    if (flag < 0 || (flag == 0 && !loinclusive)) {
+                        continue;
+                    }
+                }
+                if (hi != null) {
+                    int flag = compareKey(node, offset, hi);
+                    if (flag > 0 || (flag == 0 && !hiinclusive)) {
+                        done = true;
+                        break;
+                    }
+                }
+                if (numrids == rids.length) {
+                    rids = Arrays.copyOf(rids, 2 * numrids);
+                }
+                long page = node.getInt(offset + keyslot);
+                long slot = node.getInt(offset + keyslot + 4);
+                rids[numrids++] = (page << 32) | slot;
+            }
+            int next = node.getInt(8);
+            BufferManager.unpin(filename, pageno);
+            if (next < 0) {
+                break;
+            }
+            if (!done) {
+                pageno = next;
+                node = readNode(pageno);
+            }
+        }
+        return Arrays.copyOf(rids, numrids);
+    }
+
+    // Helper method to read a node through the buffer pool, the caller unpins it
+    private ByteBuffer readNode(int pageno) {
+        try {
+            ++numPage;
+            return BufferManager.pin(filename, pageno, in, (long) pageno * pagesize, pagesize);
+        } catch (IOException io) {
+            System.out.printf("%s:reading the index file error\n", filename);
+            System.out.println(io);
+            System.exit(1);
+        }
+        return null;
+    }
+
+    // Helper method to compare the key at the given offset of a node with a key
+    private int compareKey(ByteBuffer node, int offset, Object key) {
+        if (keytype == Attribute.INT) {
+            return Integer.compare(node.getInt(offset), (Integer) key);
+        } else if (keytype == Attribute.REAL) {
+            return Float.compare(node.getFloat(offset), (Float) key);
+        }
+        byte[] bytes = new byte[node.getShort(offset)];
+        node.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8).compareTo((String) key);
+    }
+
+    // Closes the input file
+    public boolean close() {
+        if (in != null) {
+            try {
+                in.close();
+                in = null;
+            } catch (IOException io) {
+                System.out.printf("%s:reading the index file error\n", filename);
+                System.out.println(io);
+                return false;
+            }
+        }
+        return true;
+    }
+}
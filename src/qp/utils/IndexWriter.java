@@ -0,0 +1,276 @@
+/**
+ * IndexWriter is a helper class that bulk loads a B+-tree index file on one attribute of a table
+ */
+
+package qp.utils;
+
+import qp.optimizer.BufferManager;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * An index file is made of pages of exactly page size bytes. Page 0 is the header: magic
+ * number, format version, page size, key type, key size, root page, height of the tree,
+ * number of leaves, number of entries, the length and the stamp of the table file it was
+ * built from and, for INT and REAL keys, the smallest and the largest key.
+ *
+ * Every other page is a node: an int kind (LEAF or INTERNAL), an int number of entries and
+ * an int next page, followed by the entries. A leaf entry is a key and the rid of a tuple,
+ * its page number and slot in the table file, and the next page links the leaves in key
+ * order (-1 after the last leaf). An internal entry is the smallest key below a child and
+ * the page of that child. INT and REAL keys take 4 bytes, STRING keys a 2 byte length
+ * followed by at most key size UTF-8 bytes.
+ *
+ * The entries are given in key order. The leaves are written one after the other as they
+ * fill up, and the internal levels are built bottom up from the first keys of the level
+ * below when the file is closed, so every node except the last of each level is full.
+ */
+public class IndexWriter {
+
+    public static final int MAGIC = 0x51504254;   // "QPBT"
+    public static final int VERSION = 3;          // Version of the index file layout
+    public static final int LEAF = 1;             // Kind of a leaf node
+    public static final int INTERNAL = 2;         // Kind of an internal node
+    public static final int HEADER_SIZE = 60;     // Bytes of the header page that are used
+    public static final int NODE_HEADER_SIZE = 12;  // kind, number of entries and next page
+    public static final int RID_SIZE = 8;         // page number and slot of a tuple
+    public static final int CHILD_SIZE = 4;       // page number of a child
+
+    final String filename;    // Filename to write to
+    final int keytype;        // Attribute.INT/REAL/STRING of the keys
+    final int keysize;        // Most bytes of a STRING key
+    final int pagesize;       // Number of bytes per page
+    final long tablelength;   // Length of the table file the index is built from
+    final long tablestamp;    // Stamp of the table file the index is built from
+
+    ByteBuffer leaf;          // Leaf currently being filled
+    ArrayList<Object> firstkeys;   // First key of each node of the level being built
+    ArrayList<Integer> nodepages;  // Page of each node of the level being built
+    int numPage;              // Number of pages written, the header included
+    int numLeaves;            // Number of leaves written
+    int numEntry;             // Number of entries added
+    Object minkey;            // First key added
+    Object maxkey;            // Last key added
+    FileChannel out;          // Output file channel
+
+    // filename: Filename of the index file to write to
+    // keytype: Attribute.INT/REAL/STRING of the indexed attribute
+    // keysize: Most UTF-8 bytes of a STRING key, unused for the other types
+    // pagesize: Number of bytes per page
+    // tablelength, tablestamp: Length and header stamp of the table file, to tell later
+    // whether the index is still up to date
+    public IndexWriter(String filename, int keytype, int keysize, int pagesize, long tablelength, long tablestamp) {
+        this.filename = filename;
+        this.keytype = keytype;
+        this.keysize = keysize;
+        this.pagesize = pagesize;
+        this.tablelength = tablelength;
+        this.tablestamp = tablestamp;
+    }
+
+    /** Name of the index file of the given attribute of a table **/
+    public static String fileName(String tabname, Attribute attr) {
+        return tabname + "." + attr.getColName() + ".idx";
+    }
+
+    /** Number of bytes a key takes in a node **/
+    public static int keySlotSize(int keytype, int keysize) {
+        return keytype == Attribute.STRING ? 2 + keysize : 4;
+    }
+
+    /** Most entries of a leaf of the given page size **/
+    public static int leafCapacity(int keytype, int keysize, int pagesize) {
+        return (pagesize - NODE_HEADER_SIZE) / (keySlotSize(keytype, keysize) + RID_SIZE);
+    }
+
+    /** Most children of an internal node of the given page size **/
+    public static int internalCapacity(int keytype, int keysize, int pagesize) {
+        return (pagesize - NODE_HEADER_SIZE) / (keySlotSize(keytype, keysize) + CHILD_SIZE);
+    }
+
+    /** Number of UTF-8 bytes of a STRING key **/
+    public static int encodedSize(String key) {
+        return key.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    public int getNumEntry() {
+        return numEntry;
+    }
+
+    public String getFileName() {
+        return filename;
+    }
+
+    // Opens the file, the header page is written when the file is closed
+    // Pages of an older file of the same name that are still cached are dropped
+    public boolean open() {
+        if (pagesize < HEADER_SIZE || leafCapacity(keytype, keysize, pagesize) < 1 || internalCapacity(keytype, keysize, pagesize) < 2) {
+            System.out.printf("%s:a page of %d bytes is too small for the index nodes\n", filename, pagesize);
+            return false;
+        }
+        BufferManager.invalidate(filename);
+        try {
+            out = new FileOutputStream(filename).getChannel();
+        } catch (IOException io) {
+            System.out.printf("%s:writing the index file error\n", filename);
+            return false;
+        }
+        numPage = 1;
+        numLeaves = 0;
+        numEntry = 0;
+        firstkeys = new ArrayList<>();
+        nodepages = new ArrayList<>();
+        leaf = null;
+        return true;
+    }
+
+    // Adds the entry of a tuple, entries have to be added in key order
+    public boolean next(Object key, int pageno, int slot) {
+        if (keytype == Attribute.STRING && encodedSize((String) key) > keysize) {
+            System.out.printf("%s:key %s is longer than %d bytes\n", filename, key, keysize);
+            return false;
+        }
+        if (leaf != null && leaf.getInt(4) == leafCapacity(keytype, keysize, pagesize)) {
+            /** the next leaf is the page right after this one **/
+            try {
+                writeNode(leaf, numPage + 1);
+            } catch (IOException io) {
+                System.out.printf("%s:writing the index file error\n", filename);
+                System.out.println(io);
+                return false;
+            }
+            leaf = null;
+        }
+        if (leaf == null) {
+            leaf = newNode(LEAF);
+            firstkeys.add(key);
+            nodepages.add(numPage);
+        }
+        int count = leaf.getInt(4);
+        int offset = NODE_HEADER_SIZE + count * (keySlotSize(keytype, keysize) + RID_SIZE);
+        putKey(leaf, offset, key);
+        leaf.putInt(offset + keySlotSize(keytype, keysize), pageno);
+        leaf.putInt(offset + keySlotSize(keytype, keysize) + 4, slot);
+        leaf.putInt(4, count + 1);
+        if (numEntry == 0) {
+            minkey = key;
+        }
+        maxkey = key;
+        ++numEntry;
+        return true;
+    }
+
+    // Writes the last leaf, builds the internal levels and writes the header before closing the file
+    public boolean close() {
+        if (out == null) {
+            return true;
+        }
+        try {
+            if (leaf == null) {
+                /** an empty table still has a root leaf **/
+                leaf = newNode(LEAF);
+                firstkeys.add(null);
+                nodepages.add(numPage);
+            }
+            writeNode(leaf, -1);
+            leaf = null;
+            numLeaves = nodepages.size();
+
+            int height = 1;
+            int fanout = internalCapacity(keytype, keysize, pagesize);
+            while (nodepages.size() > 1) {
+                ArrayList<Object> parentkeys = new ArrayList<>();
+                ArrayList<Integer> parentpages = new ArrayList<>();
+                for (int start = 0; start < nodepages.size(); start += fanout) {
+                    ByteBuffer node = newNode(INTERNAL);
+                    int end = Math.min(start + fanout, nodepages.size());
+                    for (int i = start; i < end; ++i) {
+                        int offset = NODE_HEADER_SIZE + (i - start) * (keySlotSize(keytype, keysize) + CHILD_SIZE);
+                        putKey(node, offset, firstkeys.get(i));
+                        node.putInt(offset + keySlotSize(keytype, keysize), nodepages.get(i));
+                    }
+                    node.putInt(4, end - start);
+                    parentkeys.add(firstkeys.get(start));
+                    parentpages.add(numPage);
+                    writeNode(node, -1);
+                }
+                firstkeys = parentkeys;
+                nodepages = parentpages;
+                ++height;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(pagesize);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(pagesize);
+            header.putInt(keytype);
+            header.putInt(keysize);
+            header.putInt(nodepages.get(0));
+            header.putInt(height);
+            header.putInt(numLeaves);
+            header.putInt(numEntry);
+            header.putLong(tablelength);
+            header.putLong(tablestamp);
+            if (numEntry > 0 && keytype == Attribute.INT) {
+                header.putInt((Integer) minkey);
+                header.putInt((Integer) maxkey);
+            } else if (numEntry > 0 && keytype == Attribute.REAL) {
+                header.putFloat((Float) minkey);
+                header.putFloat((Float) maxkey);
+            }
+            header.clear();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            out.close();
+            out = null;
+        } catch (IOException io) {
+            System.out.printf("%s:writing the index file error\n", filename);
+            System.out.println(io);
+            return false;
+        }
+        return true;
+    }
+
+    // Helper method to start an empty node of the given kind
+    private ByteBuffer newNode(int kind) {
+        ByteBuffer node = ByteBuffer.allocate(pagesize);
+        node.putInt(0, kind);
+        node.putInt(4, 0);
+        node.putInt(8, -1);
+        return node;
+    }
+
+    // Helper method to write a node at the next page of the file
+    private void writeNode(ByteBuffer node, int next) throws IOException {
+        node.putInt(8, next);
+        node.clear();
+        long offset = (long) numPage * pagesize;
+        while (node.hasRemaining()) {
+            out.write(node, offset + node.position());
+        }
+        ++numPage;
+    }
+
+    // Helper method to write a key at the given offset of a node, a null key is written as zeros
+    private void putKey(ByteBuffer node, int offset, Object key) {
+        if (key == null) {
+            return;
+        }
+        if (keytype == Attribute.INT) {
+            node.putInt(offset, (Integer) key);
+        } else if (keytype == Attribute.REAL) {
+            node.putFloat(offset, (Float) key);
+        } else {
+            byte[] bytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+            node.putShort(offset, (short) bytes.length);
+            node.put(offset + 2, bytes);
+        }
+    }
+
+}
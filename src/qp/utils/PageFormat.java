@@ -0,0 +1,224 @@
+/**
+ * Binary slotted page format of the table files
+ */
+
+package qp.utils;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A page file starts with a header of HEADER_SIZE bytes (magic number, format
+ * version, page size and stamp), followed by pages of exactly page size bytes each.
+ * The stamp is a random number drawn each time the file is written, so the index and
+ * bitmap files built from a table file tell from its header alone whether it was rewritten since.
+ *
+ * Each page is a slotted page: an int with the number of tuples, followed by
+ * the slot directory (one int offset per tuple), while the records themselves
+ * are packed from the end of the page towards the slot directory.
+ * INT and REAL attributes (by their projected type) take 4 bytes, STRING attributes take a 2 byte length
+ * followed by the UTF-8 bytes of the string.
+ *
+ * A page holds at most pagesize / tuplesize tuples, which is the same number of
+ * tuples the operators and the cost model assume for a page of that size.
+ */
+public class PageFormat {
+
+    public static final int MAGIC = 0x51505047;     // "QPPG", never the start of a serialized object stream
+    public static final int VERSION = 2;            // Version of the page layout
+    public static final int HEADER_SIZE = 20;       // magic, version, page size and stamp
+
+    /**
+     * Returns true if the file starts with the page file header,
+     * * false for the older files of serialized tuples
+     **/
+    public static boolean isPageFile(String filename) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException io) {
+            return false;
+        }
+    }
+
+    /**
+     * Stamp of a page file, read from its header. Index and bitmap files record it
+     * * to tell whether the table was rewritten since they were built
+     **/
+    public static long readStamp(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(filename + " is not a page file of version " + VERSION);
+            }
+            in.readInt();
+            return in.readLong();
+        }
+    }
+
+    /** New stamp for a page file being written **/
+    public static long newStamp() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /** Writes the file header for pages of the given size **/
+    public static void writeHeader(ByteBuffer header, int pagesize, long stamp) {
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(pagesize);
+        header.putLong(stamp);
+    }
+
+    /** Reads the file header and returns the page size of the file **/
+    public static int readHeader(ByteBuffer header, String filename) throws IOException {
+        if (header.getInt() != MAGIC) {
+            throw new IOException(filename + " is not a page file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException(filename + " has unsupported page format version " + version + ", convert it again with ConvertTxtToTbl");
+        }
+        return header.getInt();
+    }
+
+    /** Maximum number of tuples of the given schema in one page **/
+    public static int tuplesPerPage(Schema schema, int pagesize) {
+        return Math.max(1, pagesize / schema.getTupleSize());
+    }
+
+    /** Number of bytes the record of the tuple takes in a page **/
+    public static int recordSize(Tuple tuple, Schema schema) {
+        TupleLayout layout = schema.getLayout();
+        int size = 0;
+        for (int i = 0; i < schema.getNumCols(); ++i) {
+            if (layout.kindOf(i) == TupleLayout.OBJECT) {
+                size += 2 + tuple.getString(i).getBytes(StandardCharsets.UTF_8).length;
+            } else {
+                size += 4;
+            }
+        }
+        return size;
+    }
+
+    /** Clears the page to hold no tuples **/
+    public static void initPage(ByteBuffer page) {
+        page.putInt(0, 0);
+    }
+
+    /** Number of tuples in the page **/
+    public static int numTuples(ByteBuffer page) {
+        return page.getInt(0);
+    }
+
+    /**
+     * Adds the tuple to the page, returns false if there is no space left for it
+     **/
+    public static boolean addTuple(ByteBuffer page, Tuple tuple, Schema schema) {
+        int count = page.getInt(0);
+        int top = (count == 0) ? page.capacity() : page.getInt(4 * count);
+        int start = top - recordSize(tuple, schema);
+        int slotend = 4 * (count + 2);
+        if (start < slotend) {
+            return false;
+        }
+
+        TupleLayout layout = schema.getLayout();
+        int pos = start;
+        for (int i = 0; i < schema.getNumCols(); ++i) {
+            byte kind = layout.kindOf(i);
+            if (kind == TupleLayout.INT) {
+                page.putInt(pos, tuple.getInt(i));
+                pos += 4;
+            } else if (kind == TupleLayout.REAL) {
+                page.putFloat(pos, tuple.getFloat(i));
+                pos += 4;
+            } else {
+                byte[] bytes = tuple.getString(i).getBytes(StandardCharsets.UTF_8);
+                page.putShort(pos, (short) bytes.length);
+                pos += 2;
+                ByteBuffer dest = page.duplicate();
+                dest.position(pos);
+                dest.put(bytes);
+                pos += bytes.length;
+            }
+        }
+        page.putInt(4 * (count + 1), start);
+        page.putInt(0, count + 1);
+        return true;
+    }
+
+    /**
+     * Decodes all the tuples of the page, the page starts at
+     * * offset 0 of the given buffer
+     **/
+    public static Batch decodePage(ByteBuffer page, Schema schema) {
+        int count = page.getInt(0);
+        Batch batch = new Batch(count);
+        ByteBuffer strings = page.duplicate();
+        TupleLayout layout = schema.getLayout();
+        int numcols = layout.getNumCols();
+        for (int slot = 0; slot < count; ++slot) {
+            int pos = page.getInt(4 * (slot + 1));
+            int[] ints = new int[layout.numInts];
+            float[] floats = new float[layout.numFloats];
+            Object[] objects = new Object[layout.numObjects];
+            for (int i = 0; i < numcols; ++i) {
+                byte kind = layout.kindOf(i);
+                if (kind == TupleLayout.INT) {
+                    ints[layout.slotOf(i)] = page.getInt(pos);
+                    pos += 4;
+                } else if (kind == TupleLayout.REAL) {
+                    floats[layout.slotOf(i)] = page.getFloat(pos);
+                    pos += 4;
+                } else {
+                    int length = page.getShort(pos) & 0xFFFF;
+                    pos += 2;
+                    byte[] bytes = new byte[length];
+                    strings.position(pos);
+                    strings.get(bytes);
+                    pos += length;
+                    objects[layout.slotOf(i)] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+            batch.add(new Tuple(layout, ints, floats, objects));
+        }
+        return batch;
+    }
+
+    /**
+     * Decodes all the tuples of the page into the column arrays of a ColumnBatch,
+     * * the page starts at offset 0 of the given buffer
+     **/
+    public static ColumnBatch decodeColumns(ByteBuffer page, Schema schema) {
+        int count = page.getInt(0);
+        ColumnBatch batch = new ColumnBatch(schema, count);
+        ByteBuffer strings = page.duplicate();
+        TupleLayout layout = batch.getLayout();
+        int numcols = layout.getNumCols();
+        for (int slot = 0; slot < count; ++slot) {
+            int pos = page.getInt(4 * (slot + 1));
+            for (int i = 0; i < numcols; ++i) {
+                byte kind = layout.kindOf(i);
+                if (kind == TupleLayout.INT) {
+                    batch.getIntColumn(i)[slot] = page.getInt(pos);
+                    pos += 4;
+                } else if (kind == TupleLayout.REAL) {
+                    batch.getFloatColumn(i)[slot] = page.getFloat(pos);
+                    pos += 4;
+                } else {
+                    int length = page.getShort(pos) & 0xFFFF;
+                    pos += 2;
+                    byte[] bytes = new byte[length];
+                    strings.position(pos);
+                    strings.get(bytes);
+                    pos += length;
+                    batch.getObjectColumn(i)[slot] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+        }
+        batch.setNumRows(count);
+        return batch;
+    }
+}
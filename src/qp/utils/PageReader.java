@@ -0,0 +1,238 @@
+/**
+ * PageReader is a helper class that reads a file in the binary page format, one page at a time
+ */
+
+package qp.utils;
+
+import qp.optimizer.BufferManager;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PageReader {
+
+    static boolean memoryMapped = false;  // Whether page files are memory mapped instead of read
+
+    /** Background threads that read the pages requested ahead of time **/
+    static final ExecutorService prefetcher = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "page-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    final String filename;    // Filename to read from
+    final Schema schema;      // Schema of the tuples in the file
+
+    int pagesize;             // Number of bytes per page, as recorded in the file header
+    int totalPages;           // Number of pages in the file
+    MappedByteBuffer mapped;  // The whole file, when it is memory mapped
+    int numPage = 0;          // Number of pages read
+    int nextRequest = 0;      // Number of the next page not yet read or requested
+    int readAhead = 0;        // Number of pages kept in flight ahead of the reader
+    boolean columnar = false; // Whether pages are decoded into ColumnBatches
+    ArrayDeque<Future<Batch>> inFlight = new ArrayDeque<>();  // Pages requested from the prefetcher, in file order
+    FileChannel in;           // Input file channel
+
+    /** Selects whether page files are read through a memory map or with reads into a buffer **/
+    public static void setMemoryMapped(boolean flag) {
+        memoryMapped = flag;
+    }
+
+    public static boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    // filename: Filename of the page file to read from
+    // schema: Schema of the tuples in the file
+    public PageReader(String filename, Schema schema) {
+        this.filename = filename;
+        this.schema = schema;
+    }
+
+    public int getNumPage() {
+        return numPage;
+    }
+
+    public int getPageSize() {
+        return pagesize;
+    }
+
+    public String getFileName() {
+        return filename;
+    }
+
+    // Number of pages that are requested from the prefetcher but not yet returned
+    public int getNumInFlight() {
+        return inFlight.size();
+    }
+
+    // Returns true if every page of the file has been read or requested
+    public boolean isFullyRequested() {
+        return in == null || nextRequest >= totalPages;
+    }
+
+    // Keeps the given number of pages in flight on a background thread while the file is read
+    // sequentially, 0 reads each page only when it is asked for
+    public void setReadAhead(int pages) {
+        readAhead = Math.max(0, pages);
+        fillReadAhead();
+    }
+
+    // Decodes the pages into ColumnBatches instead of batches of tuples
+    public void setColumnar(boolean flag) {
+        columnar = flag;
+    }
+
+    // Opens the file and reads the page size from its header
+    public boolean open() {
+        try {
+            in = new FileInputStream(filename).getChannel();
+            ByteBuffer header = ByteBuffer.allocate(PageFormat.HEADER_SIZE);
+            if (!readFully(header)) {
+                throw new IOException(filename + " has no page file header");
+            }
+            header.flip();
+            pagesize = PageFormat.readHeader(header, filename);
+            totalPages = (int) ((in.size() - PageFormat.HEADER_SIZE) / pagesize);
+
+            /** the pages are decoded straight from the mapped file, without copying them into a buffer **/
+            mapped = null;
+            if (memoryMapped && in.size() <= Integer.MAX_VALUE) {
+                mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            }
+        } catch (IOException io) {
+            System.out.printf("%s:reading the page file error\n", filename);
+            System.out.println(io);
+            return false;
+        }
+        numPage = 0;
+        nextRequest = 0;
+        inFlight.clear();
+        return true;
+    }
+
+    // Returns the tuples of the next page, or null when the end of the file is reached
+    // Unless the file is memory mapped, the page is read through the buffer pool of the BufferManager
+    public Batch nextPage() {
+        if (in == null) return null;
+        Batch batch;
+        if (!inFlight.isEmpty()) {
+            batch = awaitPage(inFlight.poll());
+        } else if (nextRequest < totalPages) {
+            batch = readPage(nextRequest++);
+        } else {
+            close();
+            return null;
+        }
+        ++numPage;
+        fillReadAhead();
+        return batch;
+    }
+
+    // Returns the tuples of the given page of the file, or null if there is no such page
+    // The sequential scan of nextPage is not moved
+    public Batch getPage(int pageno) {
+        if (in == null || pageno < 0 || pageno >= totalPages) return null;
+        return readPage(pageno);
+    }
+
+    public int getNumPages() {
+        return totalPages;
+    }
+
+    // Asks the prefetcher to read the next page that is not yet read or requested
+    // Returns false if there is no such page
+    public boolean prefetch() {
+        if (isFullyRequested()) return false;
+        final int pageno = nextRequest++;
+        inFlight.add(prefetcher.submit(() -> readPage(pageno)));
+        return true;
+    }
+
+    // Helper method to keep readAhead pages in flight
+    private void fillReadAhead() {
+        while (inFlight.size() < readAhead) {
+            if (!prefetch()) break;
+        }
+    }
+
+    // Helper method to wait for a page read by the prefetcher
+    private Batch awaitPage(Future<Batch> request) {
+        try {
+            return request.get();
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.printf("%s:reading the page file error\n", filename);
+            System.out.println(e);
+            System.exit(1);
+        }
+        return null;
+    }
+
+    // Reads and decodes the given page, may run on a prefetch thread
+    private Batch readPage(int pageno) {
+        long offset = PageFormat.HEADER_SIZE + (long) pageno * pagesize;
+        if (mapped != null) {
+            ByteBuffer view = mapped.duplicate();
+            view.position((int) offset);
+            view.limit((int) offset + pagesize);
+            return decode(view.slice());
+        }
+        Batch batch = null;
+        try {
+            ByteBuffer page = BufferManager.pin(filename, pageno, in, offset, pagesize);
+            batch = decode(page);
+            BufferManager.unpin(filename, pageno);
+        } catch (IOException io) {
+            System.out.printf("%s:reading the page file error\n", filename);
+            System.out.println(io);
+            System.exit(1);
+        }
+        return batch;
+    }
+
+    private Batch decode(ByteBuffer page) {
+        return columnar ? PageFormat.decodeColumns(page, schema) : PageFormat.decodePage(page, schema);
+    }
+
+    // Helper method to fill the buffer, returns false on end of file
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Closes the input file, once the pages still in flight have been read
+    public boolean close() {
+        for (Future<Batch> request : inFlight) {
+            try {
+                request.get();
+            } catch (InterruptedException | ExecutionException e) {
+                // the page is not needed anymore
+            }
+        }
+        inFlight.clear();
+        mapped = null;
+        if (in != null) {
+            try {
+                in.close();
+                in = null;
+            } catch (IOException io) {
+                System.out.printf("%s:reading the page file error\n", filename);
+                System.out.println(io);
+                return false;
+            }
+        }
+        return true;
+    }
+}
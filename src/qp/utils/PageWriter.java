@@ -0,0 +1,122 @@
+/**
+ * PageWriter is a helper class that writes tuples to a file in the binary page format, one page at a time
+ */
+
+package qp.utils;
+
+import qp.optimizer.BufferManager;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class PageWriter {
+
+    final String filename;    // Filename to write to
+    final Schema schema;      // Schema of the tuples written
+    final int pagesize;       // Number of bytes per page
+    final int maxtuples;      // Maximum number of tuples per page
+
+    ByteBuffer page;          // Page currently being filled
+    int numPage = 0;          // Number of pages written
+    int numTuple = 0;         // Number of tuples added
+    long stamp;               // Stamp written in the header of the file
+    FileChannel out;          // Output file channel
+
+    // filename: Filename of the output file to write to
+    // schema: Schema of the tuples to be written
+    // pagesize: Number of bytes per page
+    public PageWriter(String filename, Schema schema, int pagesize) {
+        this.filename = filename;
+        this.schema = schema;
+        this.pagesize = pagesize;
+        this.maxtuples = PageFormat.tuplesPerPage(schema, pagesize);
+    }
+
+    public int getNumPage() {
+        return numPage;
+    }
+
+    public int getNumTuple() {
+        return numTuple;
+    }
+
+    public String getFileName() {
+        return filename;
+    }
+
+    public long getStamp() {
+        return stamp;
+    }
+
+    // Opens the file and writes the header of the page file with a new stamp
+    // Pages of an older file of the same name that are still cached are dropped
+    public boolean open() {
+        BufferManager.invalidate(filename);
+        try {
+            out = new FileOutputStream(filename).getChannel();
+            stamp = PageFormat.newStamp();
+            ByteBuffer header = ByteBuffer.allocate(PageFormat.HEADER_SIZE);
+            PageFormat.writeHeader(header, pagesize, stamp);
+            header.flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+        } catch (IOException io) {
+            System.out.printf("%s:writing the page file error\n", filename);
+            return false;
+        }
+        page = ByteBuffer.allocate(pagesize);
+        PageFormat.initPage(page);
+        numPage = 0;
+        numTuple = 0;
+        return true;
+    }
+
+    // Adds a tuple to the current page, the page is written to the file once it is full
+    public boolean next(Tuple tuple) {
+        if (PageFormat.numTuples(page) == maxtuples || !PageFormat.addTuple(page, tuple, schema)) {
+            writePage();
+            if (!PageFormat.addTuple(page, tuple, schema)) {
+                System.out.printf("%s:tuple does not fit in a page of %d bytes\n", filename, pagesize);
+                return false;
+            }
+        }
+        ++numTuple;
+        return true;
+    }
+
+    // Helper method to write the current page to the file and start a new one
+    private void writePage() {
+        try {
+            page.clear();
+            while (page.hasRemaining()) {
+                out.write(page);
+            }
+            ++numPage;
+        } catch (IOException io) {
+            System.out.printf("%s:writing the page file error\n", filename);
+            System.out.println(io);
+            System.exit(1);
+        }
+        PageFormat.initPage(page);
+    }
+
+    // Writes the last unfilled page (if any) and closes the file
+    public boolean close() {
+        if (page != null && PageFormat.numTuples(page) > 0) writePage();
+        page = null;
+        if (out != null) {
+            try {
+                out.close();
+                out = null;
+            } catch (IOException io) {
+                System.out.printf("%s:writing the page file error\n", filename);
+                System.out.println(io);
+                return false;
+            }
+        }
+        return true;
+    }
+}
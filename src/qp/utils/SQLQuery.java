@@ -23,6 +23,7 @@ public class SQLQuery {
 
     boolean isDistinct = false;          // Whether distinct key word appeared in select clause
     boolean isDesc = false;              // Whether orderby output should be in descending order
+    int limit = -1;                      // Number of result tuples given by the limit clause, -1 if there is none
     
     public SQLQuery(ArrayList<Attribute> list1, ArrayList<String> list2, ArrayList<Condition> list3) {
         projectList = list1;
@@ -85,6 +86,18 @@ public class SQLQuery {
         return isDesc;
     }
 
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isLimit() {
+        return limit >= 0;
+    }
+
 
     public ArrayList<Attribute> getProjectList() {
         return projectList;
@@ -141,4 +154,17 @@ public class SQLQuery {
         }
         return true;
     }
+
+    /**
+     * true if the select list has an aggregate, a query without GROUPBY then forms a single group
+     **/
+    public boolean hasAggregates() {
+        if (projectList == null) return false;
+        for (Attribute attr : projectList) {
+            if (attr.getAggType() != Attribute.NONE) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
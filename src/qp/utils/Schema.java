@@ -8,8 +8,11 @@ import java.io.Serializable;
 import java.util.ArrayList;
 
 public class Schema implements Serializable {
+
+    private static final long serialVersionUID = 2779193728130899404L;  // As computed for the older versions, keeps the .md files readable
     ArrayList<Attribute> attset;  // The attributes belong to this schema
     int tupleSize;                // Number of bytes required for this tuple (size of record)
+    transient TupleLayout layout; // Row layout of the tuples of this schema, built on first use
 
     public Schema(ArrayList<Attribute> colset) {
         attset = new ArrayList<>();
@@ -32,6 +35,14 @@ public class Schema implements Serializable {
 
     public void add(Attribute attr) {
         attset.add(attr);
+        layout = null;
+    }
+
+    public TupleLayout getLayout() {
+        if (layout == null) {
+            layout = TupleLayout.of(this);
+        }
+        return layout;
     }
 
     public ArrayList<Attribute> getAttList() {
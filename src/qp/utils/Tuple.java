@@ -8,25 +8,136 @@ import java.util.*;
 import java.io.*;
 
 /**
- * Tuple - a simple object which holds an ArrayList of data
+ * Tuple - holds the INT and REAL values of a row in primitive arrays and the
+ * strings in an object array, placed according to the TupleLayout of the row.
+ * The typed accessors read the arrays directly, dataAt boxes the value and is
+ * kept as the slow path for code that works on Objects.
  */
 public class Tuple implements Serializable {
 
-    public ArrayList<Object> _data;
+    /** Serialized with the same form as the older ArrayList based tuples, so old table files stay readable **/
+    private static final long serialVersionUID = 1928781161746223552L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("_data", ArrayList.class)
+    };
+
+    transient TupleLayout layout;   // Which array and slot each column is kept in
+    transient int[] ints;           // Values of the INT columns
+    transient float[] floats;       // Values of the REAL columns
+    transient Object[] objects;     // Values of the other (STRING) columns
 
     public Tuple(ArrayList<Object> d) {
-        _data = d;
+        setData(d);
+    }
+
+    /**
+     * Builds a tuple straight from its arrays, which are not copied
+     **/
+    public Tuple(TupleLayout layout, int[] ints, float[] floats, Object[] objects) {
+        this.layout = layout;
+        this.ints = ints;
+        this.floats = floats;
+        this.objects = objects;
+    }
+
+    private void setData(List<Object> d) {
+        layout = TupleLayout.of(d);
+        ints = new int[layout.numInts];
+        floats = new float[layout.numFloats];
+        objects = new Object[layout.numObjects];
+        for (int i = 0; i < d.size(); ++i) {
+            int slot = layout.slots[i];
+            switch (layout.kinds[i]) {
+                case TupleLayout.INT:
+                    ints[slot] = (Integer) d.get(i);
+                    break;
+                case TupleLayout.REAL:
+                    floats[slot] = (Float) d.get(i);
+                    break;
+                default:
+                    objects[slot] = d.get(i);
+            }
+        }
     }
 
     /**
-     * Accessor for data
+     * Accessor for data, boxes every value into a new list
      */
     public ArrayList<Object> data() {
-        return _data;
+        int numcols = layout.getNumCols();
+        ArrayList<Object> d = new ArrayList<>(numcols);
+        for (int i = 0; i < numcols; ++i) {
+            d.add(dataAt(i));
+        }
+        return d;
     }
 
     public Object dataAt(int index) {
-        return _data.get(index);
+        int slot = layout.slots[index];
+        switch (layout.kinds[index]) {
+            case TupleLayout.INT:
+                return ints[slot];
+            case TupleLayout.REAL:
+                return floats[slot];
+            default:
+                return objects[slot];
+        }
+    }
+
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    public int getNumCols() {
+        return layout.getNumCols();
+    }
+
+    /** Value of an INT column **/
+    public int getInt(int index) {
+        return ints[layout.slots[index]];
+    }
+
+    /** Value of a REAL column **/
+    public float getFloat(int index) {
+        return floats[layout.slots[index]];
+    }
+
+    /** Value of a STRING column **/
+    public String getString(int index) {
+        return (String) objects[layout.slots[index]];
+    }
+
+    /** Same hash code as the boxed value of the column **/
+    public int hashCodeAt(int index) {
+        int slot = layout.slots[index];
+        switch (layout.kinds[index]) {
+            case TupleLayout.INT:
+                return Integer.hashCode(ints[slot]);
+            case TupleLayout.REAL:
+                return Float.hashCode(floats[slot]);
+            default:
+                return objects[slot].hashCode();
+        }
+    }
+
+    /**
+     * Whether the value at leftindex of this tuple equals the value at rightindex of the other
+     **/
+    private boolean equalsAt(int leftindex, Tuple right, int rightindex) {
+        byte kind = layout.kinds[leftindex];
+        if (kind != right.layout.kinds[rightindex]) {
+            return dataAt(leftindex).equals(right.dataAt(rightindex));
+        }
+        int leftslot = layout.slots[leftindex];
+        int rightslot = right.layout.slots[rightindex];
+        switch (kind) {
+            case TupleLayout.INT:
+                return ints[leftslot] == right.ints[rightslot];
+            case TupleLayout.REAL:
+                return Float.floatToIntBits(floats[leftslot]) == Float.floatToIntBits(right.floats[rightslot]);
+            default:
+                return objects[leftslot].equals(right.objects[rightslot]);
+        }
     }
 
     /**
@@ -34,12 +145,7 @@ public class Tuple implements Serializable {
      * * before performing actual join operation
      **/
     public boolean checkJoin(Tuple right, int leftindex, int rightindex) {
-        Object leftData = dataAt(leftindex);
-        Object rightData = right.dataAt(rightindex);
-        if (leftData.equals(rightData))
-            return true;
-        else
-            return false;
+        return equalsAt(leftindex, right, rightindex);
     }
 
     /**
@@ -50,9 +156,7 @@ public class Tuple implements Serializable {
         if (leftindex.size() != rightindex.size())
             return false;
         for (int i = 0; i < leftindex.size(); ++i) {
-            Object leftData = dataAt(leftindex.get(i));
-            Object rightData = right.dataAt(rightindex.get(i));
-            if (!leftData.equals(rightData)) {
+            if (!equalsAt(leftindex.get(i), right, rightindex.get(i))) {
                 return false;
             }
         }
@@ -63,9 +167,26 @@ public class Tuple implements Serializable {
      * Joining two tuples without duplicate column elimination
      **/
     public Tuple joinWith(Tuple right) {
-        ArrayList<Object> newData = new ArrayList<>(this.data());
-        newData.addAll(right.data());
-        return new Tuple(newData);
+        TupleLayout newLayout = layout.joinWith(right.layout);
+        return new Tuple(newLayout, concat(ints, right.ints), concat(floats, right.floats), concat(objects, right.objects));
+    }
+
+    private static int[] concat(int[] left, int[] right) {
+        int[] result = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, result, left.length, right.length);
+        return result;
+    }
+
+    private static float[] concat(float[] left, float[] right) {
+        float[] result = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, result, left.length, right.length);
+        return result;
+    }
+
+    private static Object[] concat(Object[] left, Object[] right) {
+        Object[] result = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, result, left.length, right.length);
+        return result;
     }
 
     /**
@@ -79,19 +200,21 @@ public class Tuple implements Serializable {
      * Comparing tuples in different tables, used for join condition checking
      **/
     public static int compareTuples(Tuple left, Tuple right, int leftIndex, int rightIndex) {
-        Object leftdata = left.dataAt(leftIndex);
-        Object rightdata = right.dataAt(rightIndex);
-        if (leftdata instanceof Integer) {
-            return ((Integer) leftdata).compareTo((Integer) rightdata);
-        } else if (leftdata instanceof String) {
-            return ((String) leftdata).compareTo((String) rightdata);
-        } else if (leftdata instanceof Float) {
-            return ((Float) leftdata).compareTo((Float) rightdata);
-        } else {
-            System.out.println("Tuple: Unknown comparision of the tuples");
-            System.exit(1);
-            return 0;
+        byte kind = left.layout.kinds[leftIndex];
+        int leftslot = left.layout.slots[leftIndex];
+        int rightslot = right.layout.slots[rightIndex];
+        if (kind == right.layout.kinds[rightIndex]) {
+            if (kind == TupleLayout.INT) {
+                return Integer.compare(left.ints[leftslot], right.ints[rightslot]);
+            } else if (kind == TupleLayout.REAL) {
+                return Float.compare(left.floats[leftslot], right.floats[rightslot]);
+            } else if (left.objects[leftslot] instanceof String) {
+                return ((String) left.objects[leftslot]).compareTo((String) right.objects[rightslot]);
+            }
         }
+        System.out.println("Tuple: Unknown comparision of the tuples");
+        System.exit(1);
+        return 0;
     }
 
     /**
@@ -104,21 +227,23 @@ public class Tuple implements Serializable {
             return 0;
         }
         for (int i = 0; i < leftIndex.size(); ++i) {
-            Object leftdata = left.dataAt(leftIndex.get(i));
-            Object rightdata = right.dataAt(rightIndex.get(i));
-            if (leftdata.equals(rightdata)) continue;
-            if (leftdata instanceof Integer) {
-                return ((Integer) leftdata).compareTo((Integer) rightdata);
-            } else if (leftdata instanceof String) {
-                return ((String) leftdata).compareTo((String) rightdata);
-            } else if (leftdata instanceof Float) {
-                return ((Float) leftdata).compareTo((Float) rightdata);
-            } else {
-                System.out.println("Tuple: Unknown comparision of the tuples");
-                System.exit(1);
-                return 0;
+            int result = compareTuples(left, right, leftIndex.get(i), rightIndex.get(i));
+            if (result != 0) {
+                return result;
             }
         }
         return 0;
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("_data", data());
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        setData((ArrayList<Object>) fields.get("_data", null));
+    }
 }
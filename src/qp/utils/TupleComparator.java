@@ -0,0 +1,193 @@
+/**
+ * Typed comparator of the tuples of one schema
+ **/
+
+package qp.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * TupleComparator - orders tuples on a list of sort attributes. The kind and slot
+ * of every sort attribute are looked up once from the layout of the schema, so
+ * comparing two tuples reads their primitive arrays without boxing any value.
+ *
+ * The sort attributes of a tuple can also be encoded into a normalized key: a long
+ * whose unsigned order is the order of the tuples, as far as the first 64 bits of
+ * the attributes go. INT and REAL values take 32 bits each and strings 16 bits per
+ * leading character, DESC attributes are inverted. Tuples with different keys are
+ * ordered by the keys alone, equal keys need the full comparison unless the key
+ * holds every sort attribute whole.
+ */
+public class TupleComparator implements Comparator<Tuple> {
+
+    final TupleLayout layout;   // Layout of the tuples of the schema
+    final int[] indices;        // Indices of the sort attributes
+    final byte[] kinds;         // Kind of each sort attribute
+    final int[] slots;          // Slot of each sort attribute in the array of its kind
+    final boolean isDesc;       // Whether the order is reversed
+    final boolean isKeyExact;   // Whether equal normalized keys mean equal sort attributes
+
+    public TupleComparator(Schema schema, List<Integer> attributeIndices, boolean isDesc) {
+        this.layout = schema.getLayout();
+        this.isDesc = isDesc;
+        int numkeys = attributeIndices.size();
+        indices = new int[numkeys];
+        kinds = new byte[numkeys];
+        slots = new int[numkeys];
+        for (int k = 0; k < numkeys; ++k) {
+            indices[k] = attributeIndices.get(k);
+            kinds[k] = layout.kindOf(indices[k]);
+            slots[k] = layout.slotOf(indices[k]);
+        }
+        int keybits = 0;
+        boolean exact = true;
+        for (byte kind : kinds) {
+            exact = exact && kind != TupleLayout.OBJECT;
+            keybits += 32;
+        }
+        isKeyExact = exact && keybits <= 64;
+    }
+
+    public int compare(Tuple t1, Tuple t2) {
+        /** tuples that were built with another layout take the generic comparison **/
+        if (t1.layout != layout || t2.layout != layout) {
+            for (int index : indices) {
+                int result = Tuple.compareTuples(t1, t2, index);
+                if (result != 0) {
+                    return isDesc ? -result : result;
+                }
+            }
+            return 0;
+        }
+        for (int k = 0; k < kinds.length; ++k) {
+            int slot = slots[k];
+            int result;
+            if (kinds[k] == TupleLayout.INT) {
+                result = Integer.compare(t1.ints[slot], t2.ints[slot]);
+            } else if (kinds[k] == TupleLayout.REAL) {
+                result = Float.compare(t1.floats[slot], t2.floats[slot]);
+            } else {
+                result = ((String) t1.objects[slot]).compareTo((String) t2.objects[slot]);
+            }
+            if (result != 0) {
+                return isDesc ? -result : result;
+            }
+        }
+        return 0;
+    }
+
+    public boolean isKeyExact() {
+        return isKeyExact;
+    }
+
+    /**
+     * Normalized key of a tuple of the layout of the schema, compare keys with Long.compareUnsigned
+     **/
+    public long normalizedKey(Tuple t) {
+        long key = 0;
+        int bitsleft = 64;
+        for (int k = 0; k < kinds.length && bitsleft > 0; ++k) {
+            int slot = slots[k];
+            if (kinds[k] == TupleLayout.OBJECT) {
+                /** leading characters as 16 bit units, a shorter string is padded with zeros **/
+                String value = (String) t.objects[slot];
+                for (int c = 0; bitsleft > 0; ++c) {
+                    long part = c < value.length() ? value.charAt(c) : 0;
+                    if (isDesc) part = ~part & 0xFFFFL;
+                    key |= part << (bitsleft - 16);
+                    bitsleft -= 16;
+                }
+            } else {
+                int bits;
+                if (kinds[k] == TupleLayout.INT) {
+                    bits = t.ints[slot] ^ Integer.MIN_VALUE;
+                } else {
+                    /** flips the sign bit of positive floats and every bit of negative ones **/
+                    bits = Float.floatToIntBits(t.floats[slot]);
+                    bits ^= (bits >> 31) | Integer.MIN_VALUE;
+                }
+                long part = (isDesc ? ~bits : bits) & 0xFFFFFFFFL;
+                key |= bitsleft >= 32 ? part << (bitsleft - 32) : part >>> (32 - bitsleft);
+                bitsleft -= 32;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Compares two tuples given their normalized keys, the full comparison only runs on equal keys
+     **/
+    public int compare(long key1, Tuple t1, long key2, Tuple t2) {
+        int result = Long.compareUnsigned(key1, key2);
+        if (result != 0 || isKeyExact) {
+            return result;
+        }
+        return compare(t1, t2);
+    }
+
+    /**
+     * Sorts the tuples, stable like List.sort. Tuples of the layout of the schema are
+     * * sorted by an LSD radix sort on their normalized keys, after which only the runs
+     * * of equal keys are sorted with the full comparison
+     **/
+    public void sort(ArrayList<Tuple> tuples) {
+        int num = tuples.size();
+        for (Tuple t : tuples) {
+            if (t.layout != layout) {
+                tuples.sort(this);
+                return;
+            }
+        }
+        long[] keys = new long[num];
+        Tuple[] sorted = tuples.toArray(new Tuple[num]);
+        for (int i = 0; i < num; ++i) {
+            keys[i] = normalizedKey(sorted[i]);
+        }
+
+        /** one counting pass per byte of the keys, bytes that are the same in every key are skipped **/
+        long[] keybuffer = new long[num];
+        Tuple[] tuplebuffer = new Tuple[num];
+        int[] counts = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < num; ++i) {
+                counts[(int) ((keys[i] >>> shift) & 0xFF) + 1]++;
+            }
+            if (num == 0 || counts[(int) ((keys[0] >>> shift) & 0xFF) + 1] == num) {
+                continue;
+            }
+            for (int b = 0; b < 256; ++b) {
+                counts[b + 1] += counts[b];
+            }
+            for (int i = 0; i < num; ++i) {
+                int pos = counts[(int) ((keys[i] >>> shift) & 0xFF)]++;
+                keybuffer[pos] = keys[i];
+                tuplebuffer[pos] = sorted[i];
+            }
+            long[] swapkeys = keys;
+            keys = keybuffer;
+            keybuffer = swapkeys;
+            Tuple[] swaptuples = sorted;
+            sorted = tuplebuffer;
+            tuplebuffer = swaptuples;
+        }
+
+        if (!isKeyExact) {
+            for (int start = 0, end; start < num; start = end) {
+                end = start + 1;
+                while (end < num && keys[end] == keys[start]) {
+                    ++end;
+                }
+                if (end - start > 1) {
+                    Arrays.sort(sorted, start, end, this);
+                }
+            }
+        }
+        for (int i = 0; i < num; ++i) {
+            tuples.set(i, sorted[i]);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Row layout of the tuples of a schema
+ **/
+
+package qp.utils;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TupleLayout - says for every column of a tuple whether its value is kept in the
+ * int array, the float array or the object array of the tuple, and at which slot.
+ * Layouts are shared: all tuples with the same column kinds use the same layout object,
+ * so comparing slots built for one schema works for every tuple of that schema.
+ */
+public class TupleLayout {
+
+    public static final byte INT = 0;       // Column kept in the int array
+    public static final byte REAL = 1;      // Column kept in the float array
+    public static final byte OBJECT = 2;    // Column kept in the object array (strings)
+
+    static final ConcurrentHashMap<String, TupleLayout> layouts = new ConcurrentHashMap<>();
+
+    final String signature;    // One character per column, the key the layout is shared under
+    final byte[] kinds;        // Kind of each column
+    final int[] slots;         // Index of each column in the array of its kind
+    final int numInts;         // Length of the int array
+    final int numFloats;       // Length of the float array
+    final int numObjects;      // Length of the object array
+    final ConcurrentHashMap<TupleLayout, TupleLayout> joined = new ConcurrentHashMap<>();  // Layouts of joinWith
+
+    private TupleLayout(String signature) {
+        this.signature = signature;
+        int numcols = signature.length();
+        kinds = new byte[numcols];
+        slots = new int[numcols];
+        int ints = 0, floats = 0, objects = 0;
+        for (int i = 0; i < numcols; ++i) {
+            char c = signature.charAt(i);
+            if (c == 'I') {
+                kinds[i] = INT;
+                slots[i] = ints++;
+            } else if (c == 'F') {
+                kinds[i] = REAL;
+                slots[i] = floats++;
+            } else {
+                kinds[i] = OBJECT;
+                slots[i] = objects++;
+            }
+        }
+        numInts = ints;
+        numFloats = floats;
+        numObjects = objects;
+    }
+
+    /** Returns the shared layout with the given column kinds **/
+    static TupleLayout of(String signature) {
+        TupleLayout layout = layouts.get(signature);
+        if (layout == null) {
+            layout = layouts.computeIfAbsent(signature, TupleLayout::new);
+        }
+        return layout;
+    }
+
+    /** Layout of the tuples of the schema, from the types of its attributes **/
+    public static TupleLayout of(Schema schema) {
+        StringBuilder signature = new StringBuilder(schema.getNumCols());
+        for (int i = 0; i < schema.getNumCols(); ++i) {
+            int type = schema.getAttribute(i).getProjectedType();
+            if (type == Attribute.INT) {
+                signature.append('I');
+            } else if (type == Attribute.REAL) {
+                signature.append('F');
+            } else {
+                signature.append('O');
+            }
+        }
+        return of(signature.toString());
+    }
+
+    /** Layout matching the classes of the given values **/
+    public static TupleLayout of(List<Object> values) {
+        StringBuilder signature = new StringBuilder(values.size());
+        for (Object value : values) {
+            if (value instanceof Integer) {
+                signature.append('I');
+            } else if (value instanceof Float) {
+                signature.append('F');
+            } else {
+                signature.append('O');
+            }
+        }
+        return of(signature.toString());
+    }
+
+    /** Layout of a tuple of this layout joined with a tuple of the right layout **/
+    public TupleLayout joinWith(TupleLayout right) {
+        TupleLayout layout = joined.get(right);
+        if (layout == null) {
+            layout = of(signature + right.signature);
+            joined.put(right, layout);
+        }
+        return layout;
+    }
+
+    public int getNumCols() {
+        return kinds.length;
+    }
+
+    public byte kindOf(int index) {
+        return kinds[index];
+    }
+
+    public int slotOf(int index) {
+        return slots[index];
+    }
+}
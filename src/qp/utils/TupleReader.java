@@ -4,14 +4,10 @@
 
 package qp.utils;
 
-import qp.utils.*;
-
-import java.util.*;
-import java.io.*;
-
 public class TupleReader {
 
     final String filename;    // Filename to write to
+    final Schema schema;        // Schema of the tuples in the file
     final int batchsize;        // Number of tuples per out batch
 
     Batch inBatch;                            // Currently buffered input
@@ -20,12 +16,14 @@ public class TupleReader {
     int numBatch = 0;                        // Number of batch read
     int numTuple = 0;                        // Number of tuples read
     Tuple peekTuple = null;            // The next tuple of the batch (if peeked)
-    ObjectInputStream in;                // Input file stream
+    PageReader in;                // Input page file
 
     // filename: Filename of the output file to read from
+    // schema: Schema of the tuples in the file
     // batchsize: Number of tuples per batch
-    public TupleReader(String filename, int batchsize) {
+    public TupleReader(String filename, Schema schema, int batchsize) {
         this.filename = filename;
+        this.schema = schema;
         this.batchsize = batchsize;
     }
 
@@ -53,10 +51,10 @@ public class TupleReader {
 
     // Opens the input file and initializes the class for reading
     public boolean open() {
-        try {
-            in = new ObjectInputStream(new FileInputStream(filename));
-        } catch (IOException io) {
+        in = new PageReader(filename, schema);
+        if (!in.open()) {
             System.out.printf("%s:reading the temporary file error", filename);
+            in = null;
             return false;
         }
         inBatch = null;
@@ -77,24 +75,17 @@ public class TupleReader {
 
         // If the next tuple is in the next batch, we have to read from the file
         if (inBatch == null) {
-            try {
-                while (true) {
-                    inBatch = (Batch) in.readObject();
-                    numBatch++;
-                    if (inBatch.size() > 0) break;
+            while (true) {
+                inBatch = in.nextPage();
+                if (inBatch == null) {
+                    // No more batch in the file
+                    peekTuple = null;
+                    completed = true;
+                    this.close();
+                    return null;
                 }
-            } catch (EOFException e) {
-                // No more batch in the file
-                peekTuple = null;
-                completed = true;
-                this.close();
-                return null;
-            } catch (ClassNotFoundException c) {
-                System.out.printf("%s:Some error in deserialization\n", filename);
-                System.exit(1);
-            } catch (IOException io) {
-                System.out.printf("%s:temporary file reading error\n", filename);
-                System.exit(1);
+                numBatch++;
+                if (inBatch.size() > 0) break;
             }
         }
 
@@ -131,12 +122,10 @@ public class TupleReader {
         peekTuple = null;
         completed = true;
         if (in != null) {
-            try {
-                in.close();
-                in = null;
-            } catch (IOException io) {
+            boolean closed = in.close();
+            in = null;
+            if (!closed) {
                 System.out.printf("%s:reading the temporary file error", filename);
-                System.out.println(io);
                 return false;
             }
         }
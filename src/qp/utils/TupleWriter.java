@@ -4,30 +4,27 @@
 
 package qp.utils;
 
-import qp.utils.*;
-
-import java.util.*;
-import java.io.*;
-
 public class TupleWriter {
 
     final String filename;    // Filename to write to
+    final Schema schema;        // Schema of the tuples written
     final int batchsize;        // Number of tuples per out batch
 
-    Batch outBatch;
-    int numBatch = 0;                        // Number of batch written
     int numTuple = 0;                        // Number of tuples added
-    ObjectOutputStream out;            // Output file stream
+    PageWriter out;                // Output page file
 
     // filename: Filename of the output file to write to
+    // schema: Schema of the tuples to be written
     // batchsize: Number of tuples per batch
-    public TupleWriter(String filename, int batchsize) {
+    public TupleWriter(String filename, Schema schema, int batchsize) {
         this.filename = filename;
+        this.schema = schema;
         this.batchsize = batchsize;
     }
 
     public int getNumBatch() {
-        return numBatch;
+        if (out == null) return 0;
+        return out.getNumPage();
     }
 
     public int getNumTuple() {
@@ -43,15 +40,14 @@ public class TupleWriter {
     }
 
     // Opens the file and initializes the class for writing
+    // The tuples are written in the binary page format, one page of Batch.getPageSize() bytes at a time
     public boolean open() {
-        try {
-            out = new ObjectOutputStream(new FileOutputStream(filename));
-        } catch (IOException io) {
+        out = new PageWriter(filename, schema, Batch.getPageSize());
+        if (!out.open()) {
             System.out.printf("%s:writing the temporary file error", filename);
+            out = null;
             return false;
         }
-        outBatch = null;
-        numBatch = 0;
         numTuple = 0;
         return true;
     }
@@ -59,39 +55,19 @@ public class TupleWriter {
     // Supplies a tuple to the tuple writer
     // Tuple writer will store the tuples and writes to the file on Batch at a time
     public boolean next(Tuple nextTuple) {
-        if (outBatch == null) {
-            outBatch = new Batch(batchsize);
-        }
-        outBatch.add(nextTuple);
-        ++numTuple;
-        if (outBatch.isFull())
-            writeBatch();        // Immediately writes to file when we have enough tuples to fill a BAtch
-        return true;
-    }
-
-    // Helper method to write a single batch to the output file
-    private void writeBatch() {
-        try {
-            out.writeObject(outBatch);
-            outBatch = null;        // deallocate output buffer --> saves memory
-            ++numBatch;
-        } catch (IOException io) {
+        if (!out.next(nextTuple)) {
             System.out.printf("%s:writing the temporary file error", filename);
-            System.out.println(io);
             System.exit(1);
         }
+        ++numTuple;
+        return true;
     }
 
     // Signals the TupleWriter to finish writing all the tuples to the file
     public boolean close() {
-        if (outBatch != null) writeBatch();  // Unfilled batch (if any) will be flushed to the file
         if (out != null) {
-            try {
-                out.close();
-                out = null;
-            } catch (IOException io) {
-                System.out.printf("%s:writing the temporary file error", filename);
-                System.out.println(io);
+            boolean closed = out.close();  // Unfilled page (if any) will be flushed to the file
+            if (!closed) {
                 System.exit(1);
             }
         }